@@ -18,6 +18,7 @@ package de.sfuhrm.radiobrowser4j.demo;
 import de.sfuhrm.radiobrowser4j.ConnectionParams;
 import de.sfuhrm.radiobrowser4j.EndpointDiscovery;
 import de.sfuhrm.radiobrowser4j.FieldName;
+import de.sfuhrm.radiobrowser4j.Limit;
 import de.sfuhrm.radiobrowser4j.ListParameter;
 import de.sfuhrm.radiobrowser4j.RadioBrowser;
 
@@ -50,8 +51,8 @@ public final class ListDemo {
         RadioBrowser radioBrowser = new RadioBrowser(
                 ConnectionParams.builder().apiUrl(endpoint.get()).userAgent(myAgent).timeout(TIMEOUT_DEFAULT).build());
         radioBrowser
-                .listStations(ListParameter.create().order(FieldName.NAME))
-                .limit(LIMIT_DEFAULT)
+                .listStations(Limit.of(LIMIT_DEFAULT),
+                        ListParameter.create().order(FieldName.NAME))
                 .forEach(s -> System.out.printf("%s: %s%n",
                         s.getName(), s.getUrl()
                         ));
@@ -0,0 +1,326 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.reactivestreams.Publisher;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/** Asynchronous API facade for the RadioBrowser.
+ * Each call is delegated to a {@link RadioBrowser} instance and
+ * runs on the caller-supplied {@link Executor}. The returned futures
+ * complete exceptionally if the synchronous call would have thrown
+ * a {@link RadioBrowserException}. The exception is the cause of the
+ * {@link java.util.concurrent.CompletionException} thrown by
+ * {@link CompletableFuture#join()} and of the
+ * {@link java.util.concurrent.ExecutionException} thrown by
+ * {@link CompletableFuture#get()}.
+ * The paged stream calls are available as
+ * {@link Publisher Reactive Streams publishers} that only fetch
+ * the next page when the subscriber demands its elements.
+ * On Java 9 and later they can be adapted to
+ * {@code java.util.concurrent.Flow.Publisher} using
+ * {@code org.reactivestreams.FlowAdapters}.
+ * You usually obtain an instance by calling
+ * {@link RadioBrowser#async(Executor)}.
+ * @author Stephan Fuhrmann
+ * */
+public class AsyncRadioBrowser {
+
+    /** The synchronous facade to delegate to. */
+    @Getter
+    private final RadioBrowser radioBrowser;
+
+    /** The executor to run the calls on. */
+    private final Executor executor;
+
+    /**
+     * Creates a new asynchronous API client.
+     * @param myRadioBrowser the synchronous API client to delegate to.
+     * @param myExecutor the executor to run the blocking calls on.
+     * */
+    public AsyncRadioBrowser(@NonNull final RadioBrowser myRadioBrowser,
+                             @NonNull final Executor myExecutor) {
+        this.radioBrowser = myRadioBrowser;
+        this.executor = myExecutor;
+    }
+
+    /** List the known country codes.
+     * @return a future of the ISO-3166-1 country codes (keys)
+     * and country usages (values).
+     * @see RadioBrowser#listCountryCodes()
+     * */
+    public CompletableFuture<Map<String, Integer>> listCountryCodes() {
+        return CompletableFuture.supplyAsync(
+                radioBrowser::listCountryCodes, executor);
+    }
+
+    /** List the known codecs.
+     * @return a future of the codecs (keys) and codec usages (values).
+     * @see RadioBrowser#listCodecs()
+     * */
+    public CompletableFuture<Map<String, Integer>> listCodecs() {
+        return CompletableFuture.supplyAsync(
+                radioBrowser::listCodecs, executor);
+    }
+
+    /** List the known languages.
+     * @return a future of the languages (keys)
+     * and language usages (values).
+     * @see RadioBrowser#listLanguages()
+     * */
+    public CompletableFuture<Map<String, Integer>> listLanguages() {
+        return CompletableFuture.supplyAsync(
+                radioBrowser::listLanguages, executor);
+    }
+
+    /** List the known tags.
+     * @return a future of the tags (keys) and tag usages (values).
+     * @see RadioBrowser#listTags()
+     * */
+    public CompletableFuture<Map<String, Integer>> listTags() {
+        return CompletableFuture.supplyAsync(
+                radioBrowser::listTags, executor);
+    }
+
+    /** Get a list of all stations. Will return a single batch.
+     * @param paging the offset and limit of the page to retrieve.
+     * @param listParam the optional listing parameters.
+     * @return a future of the partial list of the stations.
+     * @see RadioBrowser#listStations(Paging, Parameter...)
+     */
+    public CompletableFuture<List<Station>> listStations(
+            @NonNull final Paging paging,
+            final Parameter...listParam) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.listStations(paging, listParam),
+                executor);
+    }
+
+    /** Publish all stations.
+     * Pages are fetched when the subscriber demands their elements.
+     * @param listParam the optional listing parameters.
+     * @return a publisher of the full list of stations.
+     * @see RadioBrowser#listStations(Parameter...)
+     */
+    public Publisher<Station> publishStations(final Parameter...listParam) {
+        return new PagingPublisher<>(
+                () -> radioBrowser.listStations(listParam),
+                executor);
+    }
+
+    /** Get a list of all broken stations. Will return a single batch.
+     * @param limit the limit of the page to retrieve.
+     * @return a future of the partial list of the broken stations.
+     * @see RadioBrowser#listBrokenStations(Limit)
+     */
+    public CompletableFuture<List<Station>> listBrokenStations(
+            @NonNull final Limit limit) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.listBrokenStations(limit), executor);
+    }
+
+    /** Get a list of the top click stations. Will return a single batch.
+     * @param limit the limit of the page to retrieve.
+     * @return a future of the partial list of the top click stations.
+     * @see RadioBrowser#listTopClickStations(Limit)
+     */
+    public CompletableFuture<List<Station>> listTopClickStations(
+            @NonNull final Limit limit) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.listTopClickStations(limit), executor);
+    }
+
+    /** Get a list of the top vote stations. Will return a single batch.
+     * @param limit the limit of the page to retrieve.
+     * @return a future of the partial list of the top vote stations.
+     * @see RadioBrowser#listTopVoteStations(Limit)
+     */
+    public CompletableFuture<List<Station>> listTopVoteStations(
+            @NonNull final Limit limit) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.listTopVoteStations(limit), executor);
+    }
+
+    /** Get a list of the last clicked stations. Will return a single batch.
+     * @param limit the limit of the page to retrieve.
+     * @return a future of the partial list of the last clicked stations.
+     * @see RadioBrowser#listLastClickStations(Limit)
+     */
+    public CompletableFuture<List<Station>> listLastClickStations(
+            @NonNull final Limit limit) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.listLastClickStations(limit), executor);
+    }
+
+    /** Get a list of the last changed stations. Will return a single batch.
+     * @param limit the limit of the page to retrieve.
+     * @return a future of the partial list of the last changed stations.
+     * @see RadioBrowser#listLastChangedStations(Limit)
+     */
+    public CompletableFuture<List<Station>> listLastChangedStations(
+            @NonNull final Limit limit) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.listLastChangedStations(limit), executor);
+    }
+
+    /** Get a station referenced by its UUID.
+     * @param uuid the UUID of the station to retrieve.
+     * @return a future of an optional containing either the station
+     * or nothing.
+     * @see RadioBrowser#getStationByUUID(UUID)
+     */
+    public CompletableFuture<Optional<Station>> getStationByUUID(
+            @NonNull final UUID uuid) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.getStationByUUID(uuid), executor);
+    }
+
+    /** Get the stations referenced by their UUIDs.
+     * @param uuids the UUIDs of the stations to retrieve.
+     * @return a future of the found stations by their UUID.
+     * @see RadioBrowser#getStationsByUUIDs(Collection)
+     */
+    public CompletableFuture<Map<UUID, Station>> getStationsByUUIDs(
+            @NonNull final Collection<UUID> uuids) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.getStationsByUUIDs(uuids), executor);
+    }
+
+    /** Get a list of stations matching a certain search criteria.
+     * Will return a single batch.
+     * @param paging the offset and limit of the page to retrieve.
+     * @param searchMode the field to match.
+     * @param searchTerm the term to search for.
+     * @param listParam the optional listing parameters.
+     * @return a future of the partial list of the stations.
+     * @see RadioBrowser#listStationsBy(Paging, SearchMode, String, Parameter...)
+     */
+    public CompletableFuture<List<Station>> listStationsBy(
+            @NonNull final Paging paging,
+            @NonNull final SearchMode searchMode,
+            @NonNull final String searchTerm,
+            final Parameter...listParam) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.listStationsBy(
+                        paging, searchMode, searchTerm, listParam),
+                executor);
+    }
+
+    /** Publish the stations matching a certain search criteria.
+     * Pages are fetched when the subscriber demands their elements.
+     * @param searchMode the field to match.
+     * @param searchTerm the term to search for.
+     * @param listParam the optional listing parameters.
+     * @return a publisher of the matching stations.
+     * @see RadioBrowser#listStationsBy(SearchMode, String, Parameter...)
+     */
+    public Publisher<Station> publishStationsBy(
+            @NonNull final SearchMode searchMode,
+            @NonNull final String searchTerm,
+            final Parameter...listParam) {
+        return new PagingPublisher<>(
+                () -> radioBrowser.listStationsBy(
+                        searchMode, searchTerm, listParam),
+                executor);
+    }
+
+    /** Get a list of stations matching a certain search criteria.
+     * @param paging the paging offset and limit of the station
+     *               sublist to fetch.
+     * @param advancedSearch the advanced search query object.
+     * @param listParam the optional listing parameters.
+     * @return a future of the list of matching stations.
+     * @see RadioBrowser#listStationsWithAdvancedSearch(Paging, AdvancedSearch, Parameter...)
+     */
+    public CompletableFuture<List<Station>> listStationsWithAdvancedSearch(
+            @NonNull final Paging paging,
+            @NonNull final AdvancedSearch advancedSearch,
+            final Parameter...listParam) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.listStationsWithAdvancedSearch(
+                        paging, advancedSearch, listParam),
+                executor);
+    }
+
+    /** Publish the stations matching a certain search criteria.
+     * Pages are fetched when the subscriber demands their elements.
+     * @param advancedSearch the advanced search query object.
+     * @param listParam the optional listing parameters.
+     * @return a publisher of the matching stations.
+     * @see RadioBrowser#listStationsWithAdvancedSearch(AdvancedSearch, Parameter...)
+     */
+    public Publisher<Station> publishStationsWithAdvancedSearch(
+            @NonNull final AdvancedSearch advancedSearch,
+            final Parameter...listParam) {
+        return new PagingPublisher<>(
+                () -> radioBrowser.listStationsWithAdvancedSearch(
+                        advancedSearch, listParam),
+                executor);
+    }
+
+    /** Resolves the streaming URL for the given station.
+     * @param stationUUID the station UUID to retrieve the stream URL for.
+     * @return a future of the URL of the stream.
+     * @see RadioBrowser#resolveStreamUrl(UUID)
+     */
+    public CompletableFuture<URL> resolveStreamUrl(
+            @NonNull final UUID stationUUID) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.resolveStreamUrl(stationUUID), executor);
+    }
+
+    /** Posts a new station to the server.
+     * @param station the station to add to the REST service.
+     * @return a future of the uuid of the new station.
+     * @see RadioBrowser#postNewStation(Station)
+     */
+    public CompletableFuture<UUID> postNewStation(
+            @NonNull final Station station) {
+        return CompletableFuture.supplyAsync(
+                () -> radioBrowser.postNewStation(station), executor);
+    }
+
+    /** Votes for a station.
+     * @param stationUUID The uuid of the station to vote for.
+     * @return a future that completes when the vote was accepted.
+     * @see RadioBrowser#voteForStation(UUID)
+     */
+    public CompletableFuture<Void> voteForStation(
+            @NonNull final UUID stationUUID) {
+        return CompletableFuture.runAsync(
+                () -> radioBrowser.voteForStation(stationUUID), executor);
+    }
+
+    /** Get the server statistics.
+     * @return a future of the statistics for the configured server
+     * endpoint.
+     * @see RadioBrowser#getServerStats()
+     * */
+    public CompletableFuture<Stats> getServerStats() {
+        return CompletableFuture.supplyAsync(
+                radioBrowser::getServerStats, executor);
+    }
+}
@@ -0,0 +1,431 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import com.google.gson.stream.MalformedJsonException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/** RestDelegate that spreads the requests over several API endpoints.
+ * The endpoint of each request is chosen by an {@link EndpointBalancer}
+ * and the response time is fed back into it.
+ *
+ * <p>Reads can be hedged: if the chosen endpoint did not answer within a
+ * percentile of its recent response times, the same request is sent to
+ * another endpoint. The first answer wins, the connection of the other
+ * request is disconnected. A {@link RequestBudget} bounds the number of
+ * hedged requests.
+ *
+ * <p>Endpoints whose {@link CircuitBreaker} is open are skipped. A request
+ * failing on one endpoint is sent to the next available endpoint right
+ * away, without waiting for a retry interval. Once every available
+ * endpoint failed, the request is retried on all of them again after
+ * the retry interval.
+ * @author Stephan Fuhrmann
+ * */
+@Slf4j
+class BalancingRestDelegate implements RestDelegate {
+
+    /** The maximum number of hedged requests that can be saved up. */
+    static final double MAX_HEDGE_TOKENS = 10;
+
+    /** Path prefixes of the requests that change data on the server.
+     * These requests are never sent twice. */
+    private static final String[] WRITE_PATHS = {
+        "json/add", "json/edit", "json/vote", "json/url"
+    };
+
+    /** The balancer choosing the endpoints. */
+    private final EndpointBalancer balancer;
+
+    /** The clock measuring the response times in nanoseconds. */
+    private final LongSupplier clock;
+
+    /** The maximum number of other endpoints a failed request is
+     * sent to. */
+    private final int maxFailovers;
+
+    /** The time in milliseconds to wait before a failed request is
+     * sent to the endpoints that already failed again. */
+    private final long retryInterval;
+
+    /** The percentile of the response times after which a read is
+     * hedged, zero if reads are not hedged. */
+    private final double hedgeQuantile;
+
+    /** The budget of hedged requests, {@code null} if reads are
+     * not hedged. */
+    private final RequestBudget hedgeBudget;
+
+    /** The timer sending the hedged requests. */
+    private final ScheduledExecutorService timer;
+
+    /** The executor running the hedged requests. */
+    private final Executor executor;
+
+    /** Creates a new instance that neither fails over nor hedges.
+     * @param myBalancer the balancer choosing the endpoints.
+     * @param myClock the clock measuring the response times
+     *                in nanoseconds.
+     * */
+    BalancingRestDelegate(final EndpointBalancer myBalancer,
+                          final LongSupplier myClock) {
+        this(myBalancer, myClock, 0, 0, 0, 0, null, null);
+    }
+
+    /** Creates a new instance.
+     * @param myBalancer the balancer choosing the endpoints.
+     * @param myClock the clock measuring the response times
+     *                in nanoseconds.
+     * @param myMaxFailovers the maximum number of other endpoints a
+     *                       failed request is sent to.
+     * @param myRetryInterval the time in milliseconds to wait before
+     *                        a failed request is sent to the endpoints
+     *                        that already failed again.
+     * @param myHedgeQuantile the percentile of the response times after
+     *                        which a read is hedged, for example
+     *                        {@code 0.95}. Zero disables hedging.
+     * @param myHedgeRatio the hedged requests allowed per request.
+     * @param myTimer the timer sending the hedged requests.
+     * @param myExecutor the executor running the hedged requests.
+     * */
+    BalancingRestDelegate(final EndpointBalancer myBalancer,
+                          final LongSupplier myClock,
+                          final int myMaxFailovers,
+                          final long myRetryInterval,
+                          final double myHedgeQuantile,
+                          final double myHedgeRatio,
+                          final ScheduledExecutorService myTimer,
+                          final Executor myExecutor) {
+        this.balancer = myBalancer;
+        this.clock = myClock;
+        this.maxFailovers = myMaxFailovers;
+        this.retryInterval = myRetryInterval;
+        this.hedgeQuantile = myHedgeQuantile;
+        this.hedgeBudget = myHedgeQuantile > 0
+                ? new RequestBudget(myHedgeRatio, MAX_HEDGE_TOKENS) : null;
+        this.timer = myTimer;
+        this.executor = myExecutor;
+    }
+
+    @Override
+    public <T> T get(final String path, final Class<T> resultClass) {
+        return read(path, delegate -> delegate.get(path, resultClass));
+    }
+
+    @Override
+    public List<Station> postWithListOfStation(
+            final String path,
+            final Map<String, String> requestParams) {
+        return read(path, delegate ->
+                delegate.postWithListOfStation(path, requestParams));
+    }
+
+    @Override
+    public void postWithStations(final String path,
+                                 final Map<String, String> requestParams,
+                                 final Consumer<Station> consumer) {
+        boolean idempotent = isIdempotent(path);
+        // not hedged, and not failed over after stations were consumed
+        AtomicBoolean consumed = new AtomicBoolean();
+        Consumer<Station> tracking = station -> {
+            consumed.set(true);
+            consumer.accept(station);
+        };
+        failover(() -> idempotent && !consumed.get(),
+                endpoint -> call(endpoint, delegate -> {
+                    delegate.postWithStations(path, requestParams, tracking);
+                    return null;
+                }));
+    }
+
+    @Override
+    public List<Map<String, String>> postWithListOfMapOfString(
+            final String path,
+            final Map<String, String> requestParams) {
+        return read(path, delegate ->
+                delegate.postWithListOfMapOfString(path, requestParams));
+    }
+
+    @Override
+    public <T> T post(final String path,
+                      final Map<String, String> requestParams,
+                      final Class<T> resultClass) {
+        return read(path, delegate ->
+                delegate.post(path, requestParams, resultClass));
+    }
+
+    /** Whether a request only reads data and can be sent twice.
+     * @param path the path on the web server.
+     * @return {@code true} if the request can be hedged.
+     * */
+    static boolean isIdempotent(final String path) {
+        String relative = path.startsWith("/") ? path.substring(1) : path;
+        for (String writePath : WRITE_PATHS) {
+            if (relative.startsWith(writePath)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Whether a failed request may be sent to another endpoint.
+     * Connection failures are always failed over, the request did not
+     * reach the server. Other I/O failures and server errors are only
+     * failed over for idempotent requests.
+     * @param failure the failure of the request.
+     * @param idempotent whether the request can be sent twice.
+     * @return {@code true} if the request may be sent to another endpoint.
+     * */
+    static boolean canFailOver(final RuntimeException failure,
+                               final boolean idempotent) {
+        if (failure instanceof RestDelegateImpl.HttpException) {
+            return idempotent
+                    && ((RestDelegateImpl.HttpException) failure).getCode()
+                    >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+        }
+        Throwable cause = failure.getCause();
+        if (cause instanceof ConnectException
+                || cause instanceof NoRouteToHostException
+                || cause instanceof UnknownHostException) {
+            return true;
+        }
+        return idempotent && cause instanceof IOException;
+    }
+
+    /** Whether a failed request counts against the endpoint.
+     * Only connection and I/O failures and server errors do. Client
+     * errors, malformed responses and exceptions thrown by the caller,
+     * for example by a consumer of the stations, are no fault of the
+     * endpoint.
+     * @param failure the failure of the request.
+     * @return {@code true} if the endpoint failed.
+     * */
+    static boolean isEndpointFailure(final RuntimeException failure) {
+        if (failure instanceof RestDelegateImpl.HttpException) {
+            return ((RestDelegateImpl.HttpException) failure).getCode()
+                    >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+        }
+        Throwable cause = failure.getCause();
+        return failure instanceof RadioBrowserException
+                && cause instanceof IOException
+                && !(cause instanceof MalformedJsonException);
+    }
+
+    /** Sends a request, hedging it if enabled and possible.
+     * @param path the path on the web server.
+     * @param request sends the request with the delegate of an endpoint.
+     * @param <T> the result type.
+     * @return the result of the first answer.
+     * */
+    private <T> T read(final String path,
+                       final Function<RestDelegate, T> request) {
+        boolean idempotent = isIdempotent(path);
+        boolean hedging = hedgeBudget != null && idempotent;
+        if (hedging) {
+            hedgeBudget.deposit();
+        }
+        return failover(() -> idempotent, lease -> {
+            long delay = hedging
+                    ? lease.getEndpoint().percentile(hedgeQuantile) : -1;
+            return delay >= 0
+                    ? hedged(lease, delay, request)
+                    : call(lease, request);
+        });
+    }
+
+    /** Sends a request to the available endpoints until one answers.
+     * If all available endpoints failed, they are tried again after
+     * the retry interval.
+     * @param idempotent whether the request can be sent twice,
+     *                   queried after each failure.
+     * @param attempt sends the request to an acquired endpoint.
+     * @param <T> the result type.
+     * @return the result of the first answer.
+     * @throws RadioBrowserException if no endpoint is available or
+     * the last tried endpoint failed.
+     * */
+    private <T> T failover(
+            final BooleanSupplier idempotent,
+            final Function<EndpointBalancer.Lease, T> attempt) {
+        List<EndpointBalancer.Endpoint> tried = new ArrayList<>();
+        RuntimeException failure = null;
+        for (int i = 0; i <= maxFailovers; i++) {
+            EndpointBalancer.Lease lease = balancer.acquire(tried);
+            if (lease == null && failure != null) {
+                // every available endpoint failed, retry them
+                tried.clear();
+                sleepRetryInterval();
+                lease = balancer.acquire(tried);
+            }
+            if (lease == null) {
+                break;
+            }
+            tried.add(lease.getEndpoint());
+            try {
+                return attempt.apply(lease);
+            } catch (RuntimeException e) {
+                if (!canFailOver(e, idempotent.getAsBoolean())) {
+                    throw e;
+                }
+                log.debug("Request to {} failed, failing over", lease, e);
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        throw new RadioBrowserException("No API endpoint available");
+    }
+
+    /** Waits for the retry interval before the endpoints that
+     * failed are tried again.
+     * @throws RadioBrowserException if the thread was interrupted.
+     * */
+    private void sleepRetryInterval() {
+        try {
+            log.debug("All endpoints failed, retrying in {} ms",
+                    retryInterval);
+            Thread.sleep(retryInterval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RadioBrowserException(e);
+        }
+    }
+
+    /** Sends a request on the calling thread and the same request to
+     * another endpoint if the first one did not answer in time.
+     * @param primary the lease of the endpoint acquired for the first
+     *                request.
+     * @param delay the time in nanoseconds after which the request is
+     *              sent to another endpoint.
+     * @param request sends the request with the delegate of an endpoint.
+     * @param <T> the result type.
+     * @return the result of the first answer.
+     * */
+    private <T> T hedged(final EndpointBalancer.Lease primary,
+                         final long delay,
+                         final Function<RestDelegate, T> request) {
+        Cancellation primaryCancellation = new Cancellation();
+        Cancellation hedgeCancellation = new Cancellation();
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        // the hedge, or closed once the first request finished without it
+        AtomicReference<CompletableFuture<T>> hedge = new AtomicReference<>();
+        CompletableFuture<T> closed = new CompletableFuture<>();
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+            if (winner.isDone() || !hedgeBudget.tryWithdraw()) {
+                return;
+            }
+            CompletableFuture<T> result = new CompletableFuture<>();
+            if (!hedge.compareAndSet(null, result)) {
+                return;
+            }
+            EndpointBalancer.Lease secondary = balancer.acquire(
+                    Collections.singleton(primary.getEndpoint()));
+            if (secondary == null) {
+                result.completeExceptionally(new RadioBrowserException(
+                        "No API endpoint to hedge with"));
+                return;
+            }
+            log.debug("No answer from {}, hedging with {}",
+                    primary, secondary);
+            try {
+                executor.execute(() -> {
+                    try {
+                        T value = hedgeCancellation.run(
+                                () -> call(secondary, request));
+                        result.complete(value);
+                        if (winner.complete(value)) {
+                            primaryCancellation.cancel();
+                        }
+                    } catch (Throwable e) {
+                        // the first request may be waiting for the result
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // closed or shut down, the hedge was never sent
+                log.debug("Hedging with {} rejected", secondary, e);
+                balancer.release(secondary);
+                result.completeExceptionally(e);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+        try {
+            T value = primaryCancellation.run(() -> call(primary, request));
+            winner.complete(value);
+            timeout.cancel(false);
+            if (!hedge.compareAndSet(null, closed)) {
+                hedgeCancellation.cancel();
+            }
+            return winner.join();
+        } catch (RuntimeException e) {
+            timeout.cancel(false);
+            if (hedge.compareAndSet(null, closed)) {
+                throw e;
+            }
+            try {
+                return hedge.get().join();
+            } catch (CompletionException hedgeFailure) {
+                throw e;
+            }
+        }
+    }
+
+    /** Sends a request to an endpoint.
+     * @param lease the lease of the endpoint acquired for the request.
+     *              It is released afterwards.
+     * @param request sends the request with the delegate of an endpoint.
+     * @param <T> the result type.
+     * @return the result of the request.
+     * */
+    private <T> T call(final EndpointBalancer.Lease lease,
+                       final Function<RestDelegate, T> request) {
+        log.debug("Sending request to {}", lease);
+        long start = clock.getAsLong();
+        boolean failed = false;
+        try {
+            return request.apply(lease.getEndpoint().getDelegate());
+        } catch (RuntimeException e) {
+            failed = isEndpointFailure(e);
+            throw e;
+        } finally {
+            // a request cancelled for a faster answer was only slow
+            balancer.release(lease, clock.getAsLong() - start,
+                    !failed || Cancellation.isCurrentCancelled());
+        }
+    }
+}
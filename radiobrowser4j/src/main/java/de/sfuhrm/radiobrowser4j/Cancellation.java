@@ -0,0 +1,107 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import java.net.HttpURLConnection;
+import java.util.function.Supplier;
+
+/** Handle to abort a request running on another thread.
+ * Blocking reads of a {@link HttpURLConnection} do not react to thread
+ * interruption, so the connection of the request is disconnected instead.
+ * The request is bound to the handle with {@link #run(Supplier)},
+ * {@link RestDelegateImpl} attaches its connections to the handle of
+ * the current thread.
+ * @author Stephan Fuhrmann
+ * */
+final class Cancellation {
+
+    /** The handle of the request running on the current thread. */
+    private static final ThreadLocal<Cancellation> CURRENT =
+            new ThreadLocal<>();
+
+    /** Whether the request was cancelled. Guarded by {@code this}. */
+    private boolean cancelled;
+
+    /** The connection of the request, may be {@code null}.
+     * Guarded by {@code this}. */
+    private HttpURLConnection connection;
+
+    /** Runs a request on the current thread that can be cancelled
+     * with this handle.
+     * @param request the request to run.
+     * @param <T> the result type.
+     * @return the result of the request.
+     * */
+    <T> T run(final Supplier<T> request) {
+        Cancellation previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return request.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /** Attaches a connection to the handle of the current thread,
+     * if there is one.
+     * @param connection the connection the request is sent with.
+     * @throws RadioBrowserException if the request was cancelled.
+     * */
+    static void attach(final HttpURLConnection connection) {
+        Cancellation current = CURRENT.get();
+        if (current != null) {
+            current.attachConnection(connection);
+        }
+    }
+
+    /** Whether the request running on the current thread was cancelled.
+     * @return {@code true} if the current thread runs a request whose
+     * handle was cancelled.
+     * */
+    static boolean isCurrentCancelled() {
+        Cancellation current = CURRENT.get();
+        return current != null && current.isCancelled();
+    }
+
+    /** Attaches a connection to this handle.
+     * @param myConnection the connection the request is sent with.
+     * @throws RadioBrowserException if the request was cancelled.
+     * */
+    private synchronized void attachConnection(
+            final HttpURLConnection myConnection) {
+        if (cancelled) {
+            throw new RadioBrowserException("Request cancelled");
+        }
+        this.connection = myConnection;
+    }
+
+    /** Cancels the request by disconnecting its connection.
+     * The request fails with an exception.
+     * */
+    synchronized void cancel() {
+        cancelled = true;
+        if (connection != null) {
+            connection.disconnect();
+        }
+    }
+
+    /** Whether the request was cancelled.
+     * @return {@code true} if {@link #cancel()} was called.
+     * */
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+}
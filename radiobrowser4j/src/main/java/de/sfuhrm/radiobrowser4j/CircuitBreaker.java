@@ -0,0 +1,187 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import java.util.function.LongSupplier;
+
+/** Circuit breaker of an API endpoint.
+ * The breaker is {@link State#CLOSED closed} while the endpoint works.
+ * After a number of consecutive failures it {@link State#OPEN opens}
+ * and the endpoint is skipped. Once the open time passed, the breaker
+ * is {@link State#HALF_OPEN half open} and lets a single probe request
+ * through. A successful probe closes the breaker, a failed one opens it
+ * again.
+ *
+ * <p>Each passed request gets a permit naming the state it passed in.
+ * Outcomes of requests that passed before the last state change are
+ * ignored, so requests still in flight when the breaker opened neither
+ * close it nor keep it open longer. Only the probe decides about an
+ * open breaker.
+ *
+ * <p>The breaker is thread safe.
+ * @author Stephan Fuhrmann
+ * */
+final class CircuitBreaker {
+
+    /** The default number of consecutive failures opening the breaker. */
+    static final int FAILURE_THRESHOLD_DEFAULT = 3;
+
+    /** The default time in milliseconds the breaker stays open. */
+    static final long OPEN_TIME_DEFAULT = 30_000;
+
+    /** The permit of a request that must not pass. */
+    static final long REJECTED = -1;
+
+    /** The states of the breaker. */
+    enum State {
+        /** Requests pass. */
+        CLOSED,
+        /** Requests are rejected. */
+        OPEN,
+        /** A single probe request passes. */
+        HALF_OPEN
+    }
+
+    /** The number of consecutive failures opening the breaker. */
+    private final int failureThreshold;
+
+    /** The time in milliseconds the breaker stays open. */
+    private final long openTime;
+
+    /** The clock in milliseconds. */
+    private final LongSupplier clock;
+
+    /** The current state. Guarded by {@code this}. */
+    private State state = State.CLOSED;
+
+    /** The number of consecutive failures. Guarded by {@code this}. */
+    private int failures;
+
+    /** The time the breaker opened in milliseconds.
+     * Guarded by {@code this}. */
+    private long openedAt;
+
+    /** Whether the probe request is running. Guarded by {@code this}. */
+    private boolean probing;
+
+    /** The number of state changes, the permit of requests passing
+     * in the current state. Guarded by {@code this}. */
+    private long generation;
+
+    /** Creates a new, closed instance.
+     * @param myFailureThreshold the number of consecutive failures
+     *                           opening the breaker.
+     * @param myOpenTime the time in milliseconds the breaker stays open.
+     * @param myClock the clock in milliseconds.
+     * */
+    CircuitBreaker(final int myFailureThreshold,
+                   final long myOpenTime,
+                   final LongSupplier myClock) {
+        this.failureThreshold = myFailureThreshold;
+        this.openTime = myOpenTime;
+        this.clock = myClock;
+    }
+
+    /** Gets the current state.
+     * @return the state, {@link State#OPEN} turns into
+     * {@link State#HALF_OPEN} with the first request after the open time.
+     * */
+    synchronized State getState() {
+        return state;
+    }
+
+    /** Whether a request would pass without letting it pass.
+     * @return {@code true} if {@link #tryAcquire()} would return
+     * a permit.
+     * */
+    synchronized boolean isAvailable() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return clock.getAsLong() - openedAt >= openTime;
+            default:
+                return !probing;
+        }
+    }
+
+    /** Lets a request pass if the state allows it.
+     * Each passed request must be reported with
+     * {@link #onSuccess(long)}, {@link #onFailure(long)} or
+     * {@link #onCancel(long)}.
+     * @return the permit of the request, or {@link #REJECTED} if the
+     * request must not be sent.
+     * */
+    synchronized long tryAcquire() {
+        if (!isAvailable()) {
+            return REJECTED;
+        }
+        if (state != State.CLOSED) {
+            changeState(State.HALF_OPEN);
+            probing = true;
+        }
+        return generation;
+    }
+
+    /** Reports a successful request. Closes the breaker if the
+     * request was the probe.
+     * @param permit the permit returned by {@link #tryAcquire()}.
+     * */
+    synchronized void onSuccess(final long permit) {
+        if (permit != generation) {
+            return;
+        }
+        if (state != State.CLOSED) {
+            changeState(State.CLOSED);
+        }
+        failures = 0;
+    }
+
+    /** Reports a request that was let pass but not sent.
+     * The state stays, a half open breaker lets the next request probe.
+     * @param permit the permit returned by {@link #tryAcquire()}.
+     * */
+    synchronized void onCancel(final long permit) {
+        if (permit == generation) {
+            probing = false;
+        }
+    }
+
+    /** Reports a failed request. Opens the breaker after too many
+     * consecutive failures or a failed probe.
+     * @param permit the permit returned by {@link #tryAcquire()}.
+     * */
+    synchronized void onFailure(final long permit) {
+        if (permit != generation) {
+            return;
+        }
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            changeState(State.OPEN);
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    /** Changes the state. Permits of requests passed before
+     * become stale. Guarded by {@code this}.
+     * @param newState the new state.
+     * */
+    private void changeState(final State newState) {
+        state = newState;
+        probing = false;
+        generation++;
+    }
+}
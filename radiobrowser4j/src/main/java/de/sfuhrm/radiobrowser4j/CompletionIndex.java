@@ -0,0 +1,200 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.NonNull;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Prefix completion over the values of a facet, for example the
+ * map returned by {@link RadioBrowser#listTags()}, or over station names.
+ * The values are kept in three parallel arrays sorted by their case
+ * folded form: the folded keys, the original values and the station
+ * counts. Keys and prefixes are folded with the same function as the
+ * other station indexes, see {@link StationQuery#normalize(String)}.
+ * A completion finds the range of values starting with the prefix with
+ * two binary searches and picks the values with the highest station
+ * counts from it. Matching ignores the case.
+ *
+ * <p>The index is immutable and can be used by many threads concurrently.
+ * @author Stephan Fuhrmann
+ * */
+public final class CompletionIndex {
+
+    /** The case folded values in ascending order. */
+    private final String[] keys;
+
+    /** The original values in the order of {@link #keys}. */
+    private final String[] values;
+
+    /** The station counts in the order of {@link #keys}. */
+    private final int[] counts;
+
+    /** Creates a new instance.
+     * @param entries the values and their station counts by case
+     *                folded value.
+     * */
+    private CompletionIndex(final TreeMap<String, Map.Entry<String, Integer>>
+                                    entries) {
+        keys = new String[entries.size()];
+        values = new String[entries.size()];
+        counts = new int[entries.size()];
+        int i = 0;
+        for (Map.Entry<String, Map.Entry<String, Integer>> entry
+                : entries.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue().getKey();
+            counts[i] = entry.getValue().getValue();
+            i++;
+        }
+    }
+
+    /** Builds an index over facet values.
+     * Values only differing in case are merged, their counts are added
+     * and the variant with the highest count is kept.
+     * @param facet the values and their station counts, for example
+     *              from {@link RadioBrowser#listTags()}.
+     * @return the index.
+     * */
+    public static CompletionIndex of(@NonNull final Map<String, Integer> facet) {
+        TreeMap<String, Map.Entry<String, Integer>> entries = new TreeMap<>();
+        Map<String, Integer> variantCounts = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : facet.entrySet()) {
+            String value = entry.getKey();
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            String key = StationQuery.normalize(value);
+            int count = entry.getValue() != null ? entry.getValue() : 0;
+            Map.Entry<String, Integer> previous = entries.get(key);
+            int total = count;
+            if (previous != null) {
+                total += previous.getValue();
+                if (variantCounts.get(key) >= count) {
+                    value = previous.getKey();
+                }
+            }
+            variantCounts.merge(key, count, Math::max);
+            entries.put(key, new AbstractMap.SimpleImmutableEntry<>(
+                    value, total));
+        }
+        return new CompletionIndex(entries);
+    }
+
+    /** Builds an index over station names. The count of a name
+     * is the number of stations carrying it.
+     * @param stations the stations to index.
+     * @return the index.
+     * */
+    public static CompletionIndex ofNames(
+            @NonNull final Collection<Station> stations) {
+        Map<String, Integer> names = new HashMap<>();
+        for (Station station : stations) {
+            if (station.getName() != null) {
+                names.merge(station.getName().trim(), 1, Integer::sum);
+            }
+        }
+        return of(names);
+    }
+
+    /** Gets the number of distinct values.
+     * @return the number of values.
+     * */
+    public int size() {
+        return keys.length;
+    }
+
+    /** Completes a prefix.
+     * @param prefix the prefix to complete, ignoring the case.
+     * @param limit the maximum number of completions.
+     * @return the values starting with the prefix, the highest station
+     * count first. Values with equal counts are in alphabetical order.
+     * */
+    public List<String> complete(@NonNull final String prefix,
+                                 final int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException(
+                    "limit must be > 0, but is " + limit);
+        }
+        String folded = StationQuery.normalize(prefix);
+        int from = search(folded, false);
+        int to = search(folded, true);
+        int[] top = new int[Math.min(limit, to - from)];
+        int size = 0;
+        for (int i = from; i < to; i++) {
+            if (size == top.length && counts[i] <= counts[top[size - 1]]) {
+                continue;
+            }
+            int position = size < top.length ? size++ : size - 1;
+            while (position > 0 && counts[top[position - 1]] < counts[i]) {
+                top[position] = top[position - 1];
+                position--;
+            }
+            top[position] = i;
+        }
+        List<String> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(values[top[i]]);
+        }
+        return result;
+    }
+
+    /** Finds a bound of the range of keys starting with a prefix.
+     * @param prefix the case folded prefix.
+     * @param upper {@code false} for the first key starting with
+     *              the prefix, {@code true} for the first key after them.
+     * @return the position of the bound.
+     * */
+    private int search(final String prefix, final boolean upper) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = comparePrefix(keys[mid], prefix);
+            if (cmp < 0 || (upper && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Compares the start of a key with a prefix.
+     * @param key the case folded key.
+     * @param prefix the case folded prefix.
+     * @return zero if the key starts with the prefix, a negative number
+     * if the key is ordered before the keys starting with the prefix and
+     * a positive number if it is ordered after them.
+     * */
+    private static int comparePrefix(final String key, final String prefix) {
+        int length = Math.min(key.length(), prefix.length());
+        for (int i = 0; i < length; i++) {
+            char k = key.charAt(i);
+            char p = prefix.charAt(i);
+            if (k != p) {
+                return k - p;
+            }
+        }
+        return key.length() >= prefix.length() ? 0 : -1;
+    }
+}
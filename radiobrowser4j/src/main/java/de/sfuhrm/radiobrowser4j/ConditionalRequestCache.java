@@ -0,0 +1,174 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Remembers the validators (ETag / Last-Modified) and the decoded
+ * body of responses per request key.
+ * Repeated requests send the validators back, so that the server can
+ * answer with {@code 304 Not Modified} and the remembered body is
+ * parsed again instead of being transferred. Each caller gets freshly
+ * parsed objects, and streaming parsers keep streaming.
+ * The number of remembered responses is bounded, the least recently
+ * used responses are forgotten first.
+ * @author Stephan Fuhrmann
+ * */
+class ConditionalRequestCache {
+
+    /** A remembered response. */
+    static final class Validated {
+        /** The ETag header of the response or {@code null}. */
+        private final String etag;
+
+        /** The Last-Modified header of the response or {@code null}. */
+        private final String lastModified;
+
+        /** The decompressed body of the response. */
+        private final byte[] body;
+
+        /** The charset of the body. */
+        private final Charset charset;
+
+        /** Creates a new instance.
+         * @param myEtag the ETag header of the response or {@code null}.
+         * @param myLastModified the Last-Modified header of the
+         *                       response or {@code null}.
+         * @param myBody the decompressed body of the response.
+         * @param myCharset the charset of the body.
+         * */
+        Validated(final String myEtag,
+                  final String myLastModified,
+                  final byte[] myBody,
+                  final Charset myCharset) {
+            this.etag = myEtag;
+            this.lastModified = myLastModified;
+            this.body = myBody;
+            this.charset = myCharset;
+        }
+    }
+
+    /** The remembered responses in access order. Guarded by itself. */
+    private final LinkedHashMap<String, Validated> entries;
+
+    /** Creates a new instance.
+     * @param maxEntries the maximum number of remembered responses.
+     * */
+    ConditionalRequestCache(final int maxEntries) {
+        this.entries = new LinkedHashMap<String, Validated>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, Validated> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** Calculates the key of a request.
+     * @param method the HTTP method.
+     * @param path the path on the web server.
+     * @param requestParams the request parameters, may be {@code null}.
+     * @param resultType the type of the parsed result.
+     * @return the key identifying the request.
+     * */
+    static String keyOf(final String method,
+                        final String path,
+                        final Map<String, String> requestParams,
+                        final Object resultType) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(method).append(' ').append(path);
+        if (requestParams != null) {
+            sb.append(' ').append(new TreeMap<>(requestParams));
+        }
+        sb.append(' ').append(resultType);
+        return sb.toString();
+    }
+
+    /** Looks up a remembered response.
+     * @param key the request key.
+     * @return the remembered response or {@code null}.
+     * */
+    Validated lookup(final String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    /** Adds the validators of a remembered response as
+     * conditional request headers.
+     * @param connection the connection to configure.
+     * @param validated the remembered response, may be {@code null}.
+     * */
+    static void applyValidators(final HttpURLConnection connection,
+                                final Validated validated) {
+        if (validated == null) {
+            return;
+        }
+        if (validated.etag != null) {
+            connection.setRequestProperty("If-None-Match", validated.etag);
+        }
+        if (validated.lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since",
+                    validated.lastModified);
+        }
+    }
+
+    /** Whether a response carries validators and can be remembered.
+     * @param connection the connection with the response headers.
+     * @return {@code true} if there is an ETag or Last-Modified header.
+     * */
+    static boolean hasValidators(final HttpURLConnection connection) {
+        return connection.getHeaderField("ETag") != null
+                || connection.getHeaderField("Last-Modified") != null;
+    }
+
+    /** Remembers a response if it carries validators.
+     * @param key the request key.
+     * @param connection the connection with the response headers.
+     * @param body the decompressed body of the response.
+     * @param charset the charset of the body.
+     * */
+    void remember(final String key,
+                  final HttpURLConnection connection,
+                  final byte[] body,
+                  final Charset charset) {
+        String etag = connection.getHeaderField("ETag");
+        String lastModified = connection.getHeaderField("Last-Modified");
+        if (etag == null && lastModified == null) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key,
+                    new Validated(etag, lastModified, body, charset));
+        }
+    }
+
+    /** Opens the body of a remembered response for parsing.
+     * @param validated the remembered response.
+     * @return a reader of the remembered body.
+     * */
+    static Reader readerOf(final Validated validated) {
+        return new InputStreamReader(
+                new ByteArrayInputStream(validated.body), validated.charset);
+    }
+}
@@ -3,6 +3,14 @@ package de.sfuhrm.radiobrowser4j;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.Singular;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /** A tuple of parameters for creating API connections to the
  * radio browser API.
@@ -16,6 +24,33 @@ public class ConnectionParams {
      * */
     private final String apiUrl;
 
+    /** Further URLs of the radio browser API. If given, the requests
+     * are spread over {@link #apiUrl} and these endpoints. Each request
+     * goes to the less loaded of two randomly picked endpoints, judged by
+     * their recent response times and their requests in flight.
+     * @see ConnectionParamsBuilder#endpoints(List)
+     * */
+    @Singular("additionalApiUrl")
+    private final List<String> additionalApiUrls;
+
+    /** The percentile of the recent response times of an endpoint
+     * after which a read is hedged, for example {@code 0.95}.
+     * A hedged read is sent to a second endpoint of the
+     * {@link #additionalApiUrls} as well, the first answer wins and the
+     * other request is disconnected. Writes like votes are never hedged.
+     * Zero disables hedging, which is the default.
+     * @see #hedgeBudget
+     * */
+    @Builder.Default
+    private final double hedgePercentile = 0;
+
+    /** The number of hedged reads allowed per read, for example
+     * {@code 0.05} to add at most five percent of extra requests.
+     * @see #hedgePercentile
+     * */
+    @Builder.Default
+    private final double hedgeBudget = 0.05;
+
     /** The timeout for connect and read requests in milliseconds.
      *  Must be greater than zero. */
     private final int timeout;
@@ -41,10 +76,182 @@ public class ConnectionParams {
     @Builder.Default
     private final long retryInterval = 1000;
 
-    /** The number of retries on error. */
+    /** The number of retries on error. With {@link #additionalApiUrls}
+     * a failed request is not retried on the same endpoint, but sent to up
+     * to this number of other endpoints without waiting.
+     * */
     @Builder.Default
     private final int retries = 3;
 
+    /** The number of consecutive failures after which an endpoint of
+     * the {@link #additionalApiUrls} is skipped.
+     * @see #circuitBreakerOpenTime
+     * */
+    @Builder.Default
+    private final int circuitBreakerThreshold =
+            CircuitBreaker.FAILURE_THRESHOLD_DEFAULT;
+
+    /** The time in milliseconds a failing endpoint is skipped. Afterwards
+     * a single request probes whether the endpoint works again.
+     * @see #circuitBreakerThreshold
+     * */
+    @Builder.Default
+    private final long circuitBreakerOpenTime =
+            CircuitBreaker.OPEN_TIME_DEFAULT;
+
+    /** The time in milliseconds a cached response of the facet lists
+     * (countries, codecs, languages, tags) and of the server statistics
+     * stays fresh. A stale response is still returned while it is
+     * refreshed in the background. Cached facet maps are unmodifiable.
+     * Zero disables the cache, which is the default.
+     * @see #cacheTtlPerPath
+     * */
+    @Builder.Default
+    private final long cacheTtl = 0;
+
+    /** The cache time-to-live in milliseconds per API path, for example
+     * {@code "json/tags"}. Overrides {@link #cacheTtl} for the given paths.
+     * @see ConnectionParamsBuilder#cacheTtlForPath(String, long)
+     * */
+    private final Map<String, Long> cacheTtlPerPath;
+
+    /** The maximum total weight of the response cache. The weight
+     * of a facet list is its number of entries, the weight of the
+     * server statistics is one. */
+    @Builder.Default
+    private final long cacheMaxWeight = 100_000;
+
+    /** The number of responses remembered for conditional requests.
+     * Responses of read requests carrying an {@code ETag} or
+     * {@code Last-Modified} header are remembered with their
+     * decompressed body. Repeating the request sends the validators
+     * back and a {@code 304 Not Modified} answer is parsed from the
+     * remembered body instead of downloading it again. Every caller
+     * gets freshly parsed objects.
+     * Zero disables conditional requests, which is the default.
+     * */
+    @Builder.Default
+    private final int conditionalRequestCacheSize = 0;
+
+    /** Whether identical requests in flight are coalesced.
+     * A request is sent only once while it runs, identical requests of
+     * other threads wait for it and share its result. Requests are
+     * identical if the path and the request parameters are equal.
+     * Disabled by default.
+     * */
+    @Builder.Default
+    private final boolean coalesceRequests = false;
+
+    /** The number of pages a station stream fetches ahead in the
+     * background while the current page is consumed. Pages are still
+     * delivered in order. Closing the stream cancels the fetches that
+     * are still pending.
+     * Zero fetches each page only when it is needed, which is the default.
+     * */
+    @Builder.Default
+    private final int prefetchPages = 0;
+
+    /** The number of elements a stream requests with its first page.
+     * Subsequent pages double in size as long as the throughput of
+     * the pages improves, up to {@link #maxPageSize}.
+     * Equal sizes give pages of a constant size.
+     * */
+    @Builder.Default
+    private final int initialPageSize = PagingSpliterator.FETCH_SIZE_DEFAULT;
+
+    /** The maximum number of elements a stream requests per page.
+     * @see #initialPageSize
+     * */
+    @Builder.Default
+    private final int maxPageSize = PagingSpliterator.FETCH_SIZE_DEFAULT;
+
+    /** The maximum number of UUIDs looked up with one request by
+     * {@link RadioBrowser#getStationsByUUIDs(java.util.Collection)}.
+     * Larger lookups are split into several requests.
+     * */
+    @Builder.Default
+    private final int uuidBatchSize = RadioBrowser.UUID_BATCH_SIZE_DEFAULT;
+
+    /** The maximum number of requests one batched lookup runs
+     * concurrently.
+     * @see #uuidBatchSize
+     * */
+    @Builder.Default
+    private final int batchConcurrency = RadioBrowser.BATCH_CONCURRENCY_DEFAULT;
+
+    /** The time window in milliseconds concurrent calls of
+     * {@link RadioBrowser#getStationByUUID(java.util.UUID)} are collected
+     * in and then looked up with a single request. A batch is requested
+     * early once it holds {@link #uuidBatchSize} UUIDs.
+     * Zero requests each station on its own, which is the default.
+     * */
+    @Builder.Default
+    private final long uuidBatchWindow = 0;
+
+    /** Builder for the connection parameters. */
+    public static class ConnectionParamsBuilder {
+        /** The cache time-to-live per API path. Replaced on each change,
+         * so built parameters keep their map. */
+        private Map<String, Long> cacheTtlPerPath = Collections.emptyMap();
+
+        /** Sets the cache time-to-live of an API path.
+         * @param path the API path, for example {@code "json/tags"}.
+         * @param ttl the time-to-live in milliseconds.
+         * @return this builder.
+         * @see ConnectionParams#cacheTtlPerPath
+         * */
+        public ConnectionParamsBuilder cacheTtlForPath(final String path,
+                                                       final long ttl) {
+            Map<String, Long> ttls = cacheTtlPerPath != null
+                    ? new LinkedHashMap<>(cacheTtlPerPath)
+                    : new LinkedHashMap<>();
+            ttls.put(path, ttl);
+            cacheTtlPerPath = Collections.unmodifiableMap(ttls);
+            return this;
+        }
+
+        /** Sets the API endpoints from a discovery. The best performing
+         * endpoint becomes the {@link ConnectionParams#apiUrl}, the
+         * others become the {@link ConnectionParams#additionalApiUrls}.
+         * @param endpoints the discovered endpoints, the best
+         *                  performing first.
+         * @return this builder.
+         * @see EndpointDiscovery#discoverAll()
+         * */
+        public ConnectionParamsBuilder endpoints(
+                final List<EndpointDiscovery.DiscoveryResult> endpoints) {
+            if (endpoints.isEmpty()) {
+                throw new IllegalArgumentException("No endpoints");
+            }
+            apiUrl(endpoints.get(0).getEndpoint());
+            clearAdditionalApiUrls();
+            for (EndpointDiscovery.DiscoveryResult endpoint
+                    : endpoints.subList(1, endpoints.size())) {
+                additionalApiUrl(endpoint.getEndpoint());
+            }
+            return this;
+        }
+    }
+
+    /** Gets all URLs of the radio browser API.
+     * @return {@link #apiUrl} followed by the distinct
+     * {@link #additionalApiUrls}.
+     * */
+    List<String> apiUrls() {
+        LinkedHashSet<String> urls = new LinkedHashSet<>();
+        urls.add(apiUrl);
+        urls.addAll(additionalApiUrls);
+        return new ArrayList<>(urls);
+    }
+
+    /** Whether the response cache is enabled for any path.
+     * @return {@code true} if responses are cached.
+     * */
+    boolean isCacheEnabled() {
+        return cacheTtl > 0
+                || cacheTtlPerPath.values().stream().anyMatch(ttl -> ttl > 0);
+    }
+
     /** Checks the parameters.
      * @throws IllegalArgumentException if the parameters are invalid.
      * */
@@ -53,6 +260,20 @@ public class ConnectionParams {
             throw new IllegalArgumentException(
                     "apiUrl must not be null");
         }
+        if (additionalApiUrls.contains(null)) {
+            throw new IllegalArgumentException(
+                    "additionalApiUrls must not contain null");
+        }
+        if (hedgePercentile < 0 || hedgePercentile > 1) {
+            throw new IllegalArgumentException(
+                    "hedgePercentile must be between 0 and 1, but is "
+                            + getHedgePercentile());
+        }
+        if (hedgeBudget < 0) {
+            throw new IllegalArgumentException(
+                    "hedgeBudget must be >= 0, but is "
+                            + getHedgeBudget());
+        }
         if (timeout <= 0) {
             throw new IllegalArgumentException(
                     "timeout must be > 0, but is "
@@ -68,6 +289,73 @@ public class ConnectionParams {
                     "retryInterval must be > 0, but is "
                             + getRetryInterval());
         }
+        if (circuitBreakerThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "circuitBreakerThreshold must be > 0, but is "
+                            + getCircuitBreakerThreshold());
+        }
+        if (circuitBreakerOpenTime < 0) {
+            throw new IllegalArgumentException(
+                    "circuitBreakerOpenTime must be >= 0, but is "
+                            + getCircuitBreakerOpenTime());
+        }
+        if (cacheTtl < 0) {
+            throw new IllegalArgumentException(
+                    "cacheTtl must be >= 0, but is "
+                            + getCacheTtl());
+        }
+        if (cacheTtlPerPath == null) {
+            throw new IllegalArgumentException(
+                    "cacheTtlPerPath must not be null");
+        }
+        for (Map.Entry<String, Long> entry : cacheTtlPerPath.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() < 0) {
+                throw new IllegalArgumentException(
+                        "cacheTtlPerPath for " + entry.getKey()
+                                + " must be >= 0, but is "
+                                + entry.getValue());
+            }
+        }
+        if (cacheMaxWeight <= 0) {
+            throw new IllegalArgumentException(
+                    "cacheMaxWeight must be > 0, but is "
+                            + getCacheMaxWeight());
+        }
+        if (conditionalRequestCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "conditionalRequestCacheSize must be >= 0, but is "
+                            + getConditionalRequestCacheSize());
+        }
+        if (prefetchPages < 0) {
+            throw new IllegalArgumentException(
+                    "prefetchPages must be >= 0, but is "
+                            + getPrefetchPages());
+        }
+        if (initialPageSize <= 0) {
+            throw new IllegalArgumentException(
+                    "initialPageSize must be > 0, but is "
+                            + getInitialPageSize());
+        }
+        if (maxPageSize < initialPageSize) {
+            throw new IllegalArgumentException(
+                    "maxPageSize must be >= initialPageSize, but is "
+                            + getMaxPageSize());
+        }
+        if (uuidBatchSize <= 0) {
+            throw new IllegalArgumentException(
+                    "uuidBatchSize must be > 0, but is "
+                            + getUuidBatchSize());
+        }
+        if (batchConcurrency <= 0) {
+            throw new IllegalArgumentException(
+                    "batchConcurrency must be > 0, but is "
+                            + getBatchConcurrency());
+        }
+        if (uuidBatchWindow < 0) {
+            throw new IllegalArgumentException(
+                    "uuidBatchWindow must be >= 0, but is "
+                            + getUuidBatchWindow());
+        }
         if (userAgent == null) {
             throw new IllegalArgumentException(
                     "userAgent must not be null");
@@ -0,0 +1,304 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Chooses the API endpoint for each request.
+ * Each endpoint keeps an exponentially weighted moving average (EWMA)
+ * of its response times. The cost of an endpoint is its average times
+ * the number of its requests in flight plus one. A request goes to the
+ * cheaper of two randomly picked endpoints ("power of two choices"),
+ * which avoids slow endpoints without sending all requests to the
+ * single fastest one. Endpoints without measurements cost nothing,
+ * so each endpoint is tried early. Endpoints whose
+ * {@link CircuitBreaker} is open are skipped.
+ *
+ * <p>The balancer is thread safe.
+ * @author Stephan Fuhrmann
+ * */
+final class EndpointBalancer {
+
+    /** The weight of a new response time in the moving average. */
+    static final double EWMA_WEIGHT = 0.2;
+
+    /** The number of recent response times kept per endpoint. */
+    static final int SAMPLES = 64;
+
+    /** The number of response times needed for a percentile. */
+    static final int MIN_SAMPLES = 8;
+
+    /** An API endpoint and its statistics. */
+    static final class Endpoint {
+        /** The URL of the endpoint. */
+        @Getter
+        private final String url;
+
+        /** The delegate sending requests to the endpoint. */
+        @Getter
+        private final RestDelegate delegate;
+
+        /** The circuit breaker skipping the endpoint while it fails. */
+        @Getter
+        private final CircuitBreaker breaker;
+
+        /** The number of requests in flight. */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /** The moving average of the response times in nanoseconds,
+         * zero if there is no measurement yet. Guarded by {@code this}. */
+        private double latency;
+
+        /** The recent response times in nanoseconds as a ring buffer.
+         * Guarded by {@code this}. */
+        private final long[] samples = new long[SAMPLES];
+
+        /** The number of valid entries in {@link #samples}.
+         * Guarded by {@code this}. */
+        private int sampleCount;
+
+        /** The position of the next entry in {@link #samples}.
+         * Guarded by {@code this}. */
+        private int samplePosition;
+
+        /** Creates a new instance.
+         * @param myUrl the URL of the endpoint.
+         * @param myDelegate the delegate sending requests to the endpoint.
+         * */
+        Endpoint(final String myUrl, final RestDelegate myDelegate) {
+            this(myUrl, myDelegate, new CircuitBreaker(
+                    CircuitBreaker.FAILURE_THRESHOLD_DEFAULT,
+                    CircuitBreaker.OPEN_TIME_DEFAULT,
+                    System::currentTimeMillis));
+        }
+
+        /** Creates a new instance.
+         * @param myUrl the URL of the endpoint.
+         * @param myDelegate the delegate sending requests to the endpoint.
+         * @param myBreaker the circuit breaker of the endpoint.
+         * */
+        Endpoint(final String myUrl,
+                 final RestDelegate myDelegate,
+                 final CircuitBreaker myBreaker) {
+            this.url = myUrl;
+            this.delegate = myDelegate;
+            this.breaker = myBreaker;
+        }
+
+        /** Adds a response time to the moving average and to the
+         * recent response times.
+         * @param nanos the response time in nanoseconds.
+         * */
+        synchronized void observe(final long nanos) {
+            if (latency == 0) {
+                latency = Math.max(1, nanos);
+            } else {
+                latency += EWMA_WEIGHT * (nanos - latency);
+            }
+            samples[samplePosition] = nanos;
+            samplePosition = (samplePosition + 1) % SAMPLES;
+            sampleCount = Math.min(SAMPLES, sampleCount + 1);
+        }
+
+        /** Gets a percentile of the recent response times.
+         * @param quantile the quantile between 0 and 1, for example
+         *                 {@code 0.95} for the 95th percentile.
+         * @return the percentile in nanoseconds, or {@code -1} if there
+         * are not enough response times yet.
+         * */
+        synchronized long percentile(final double quantile) {
+            if (sampleCount < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(quantile * sampleCount) - 1;
+            return sorted[Math.max(0, Math.min(sampleCount - 1, index))];
+        }
+
+        /** Gets the moving average of the response times.
+         * @return the average in nanoseconds, zero if unknown.
+         * */
+        synchronized double getLatency() {
+            return latency;
+        }
+
+        /** Gets the number of requests in flight.
+         * @return the number of requests sent and not answered yet.
+         * */
+        int getInFlight() {
+            return inFlight.get();
+        }
+
+        /** Gets the cost of sending one more request to the endpoint.
+         * @return the expected time until the request is answered.
+         * */
+        double cost() {
+            return getLatency() * (inFlight.get() + 1);
+        }
+
+        @Override
+        public String toString() {
+            return url;
+        }
+    }
+
+    /** An endpoint acquired for a single request. */
+    static final class Lease {
+        /** The endpoint the request goes to. */
+        @Getter
+        private final Endpoint endpoint;
+
+        /** The permit of the circuit breaker for the request. */
+        private final long permit;
+
+        /** Creates a new instance.
+         * @param myEndpoint the endpoint the request goes to.
+         * @param myPermit the permit of the circuit breaker.
+         * */
+        private Lease(final Endpoint myEndpoint, final long myPermit) {
+            this.endpoint = myEndpoint;
+            this.permit = myPermit;
+        }
+
+        @Override
+        public String toString() {
+            return endpoint.toString();
+        }
+    }
+
+    /** The endpoints to balance over. */
+    private final List<Endpoint> endpoints;
+
+    /** The response time in nanoseconds a failed request counts
+     * at least. */
+    private final long failurePenalty;
+
+    /** Creates a new instance.
+     * @param myEndpoints the endpoints to balance over.
+     * @param myFailurePenalty the response time in nanoseconds a failed
+     *                         request counts at least.
+     * */
+    EndpointBalancer(final List<Endpoint> myEndpoints,
+                     final long myFailurePenalty) {
+        if (myEndpoints.isEmpty()) {
+            throw new IllegalArgumentException("No endpoints");
+        }
+        this.endpoints = Collections.unmodifiableList(
+                new ArrayList<>(myEndpoints));
+        this.failurePenalty = myFailurePenalty;
+    }
+
+    /** Gets the endpoints.
+     * @return the unmodifiable list of endpoints.
+     * */
+    List<Endpoint> endpoints() {
+        return endpoints;
+    }
+
+    /** Chooses the endpoint for a request and counts the request
+     * as in flight. Each lease must be released.
+     * @return the lease of the chosen endpoint, or {@code null} if the
+     * circuit breakers of all endpoints are open.
+     * @see #release(Lease, long, boolean)
+     * */
+    Lease acquire() {
+        return acquire(Collections.emptySet());
+    }
+
+    /** Chooses the endpoint for a request and counts the request
+     * as in flight. Endpoints with an open circuit breaker are skipped.
+     * Each lease must be released.
+     * @param excluded the endpoints not to choose.
+     * @return the lease of the chosen endpoint, or {@code null} if there
+     * is no available endpoint besides the excluded ones.
+     * @see #release(Lease, long, boolean)
+     * */
+    Lease acquire(final Collection<Endpoint> excluded) {
+        List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (!excluded.contains(endpoint)
+                    && endpoint.breaker.isAvailable()) {
+                candidates.add(endpoint);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            Endpoint chosen = choose(candidates);
+            // another thread may have taken the probe of a half open breaker
+            long permit = chosen.breaker.tryAcquire();
+            if (permit != CircuitBreaker.REJECTED) {
+                chosen.inFlight.incrementAndGet();
+                return new Lease(chosen, permit);
+            }
+            candidates.remove(chosen);
+        }
+        return null;
+    }
+
+    /** Chooses the cheaper of two random candidates.
+     * @param candidates the candidates, not empty.
+     * @return the chosen candidate.
+     * */
+    private static Endpoint choose(final List<Endpoint> candidates) {
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        Endpoint a = candidates.get(first);
+        Endpoint b = candidates.get(second);
+        return b.cost() < a.cost() ? b : a;
+    }
+
+    /** Releases an endpoint after a request.
+     * @param lease the lease of the endpoint the request was sent to.
+     * @param nanos the response time in nanoseconds.
+     * @param success whether the endpoint answered the request.
+     * */
+    void release(final Lease lease,
+                 final long nanos,
+                 final boolean success) {
+        Endpoint endpoint = lease.endpoint;
+        endpoint.inFlight.decrementAndGet();
+        endpoint.observe(success ? nanos : Math.max(nanos, failurePenalty));
+        if (success) {
+            endpoint.breaker.onSuccess(lease.permit);
+        } else {
+            endpoint.breaker.onFailure(lease.permit);
+        }
+    }
+
+    /** Releases an endpoint whose request was not sent. Neither the
+     * response times nor the circuit breaker take it into account.
+     * @param lease the lease of the endpoint acquired for the request.
+     * */
+    void release(final Lease lease) {
+        lease.endpoint.inFlight.decrementAndGet();
+        lease.endpoint.breaker.onCancel(lease.permit);
+    }
+}
@@ -153,7 +153,7 @@ public class EndpointDiscovery {
 
     /** A discovery for one API endpoint. */
     @Value
-    static class DiscoveryResult {
+    public static class DiscoveryResult {
         /** The endpoint address for this result. */
         String endpoint;
         /** The connection and retrieval duration in milliseconds. */
@@ -222,12 +222,25 @@ public class EndpointDiscovery {
      * @throws IOException when there is an IO problem while discovery.
      * */
     public Optional<String> discover() throws IOException {
+        return discoverAll()
+                .stream()
+                .map(DiscoveryResult::getEndpoint)
+                .findFirst();
+    }
+
+    /** Discovers all working endpoints.
+     * @return the reachable endpoints, the best performing first.
+     * Can be passed to
+     * {@link ConnectionParams.ConnectionParamsBuilder#endpoints(List)}
+     * to spread the requests over all of them.
+     * @throws IOException when there is an IO problem while discovery.
+     * */
+    public List<DiscoveryResult> discoverAll() throws IOException {
         List<DiscoveryResult> discoveryResults = discoverApiUrls(apiUrls());
 
         return discoveryResults
                 .stream()
                 .sorted(Comparator.comparingLong(o -> o.duration))
-                .map(DiscoveryResult::getEndpoint)
-                .findFirst();
+                .collect(Collectors.toList());
     }
 }
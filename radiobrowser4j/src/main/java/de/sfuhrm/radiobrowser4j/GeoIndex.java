@@ -0,0 +1,491 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/** Spatial index for finding stations near a location.
+ * The stations with geo coordinates are converted to points on the
+ * unit sphere and stored in a k-d tree. The straight line distance of
+ * two points grows with their distance on the earth's surface, so the
+ * tree finds the nearest stations without special cases at the poles
+ * or the date line.
+ *
+ * <p>The tree is stored implicitly in arrays: the root of a range is
+ * its middle element, the halves left and right of it are the subtrees.
+ * A query only descends into subtrees that can contain a better match.
+ * Stations without geo coordinates are not indexed.
+ * The index is immutable and can be used by many threads concurrently.
+ * @author Stephan Fuhrmann
+ * */
+public final class GeoIndex {
+
+    /** The mean earth radius in kilometers. */
+    static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /** The number of dimensions of the points. */
+    private static final int DIMENSIONS = 3;
+
+    /** The indexed stations in tree order. */
+    private final Station[] stations;
+
+    /** The x, y and z coordinates of the points in tree order. */
+    private final double[] points;
+
+    /** Creates a new index.
+     * @param located the stations with valid geo coordinates.
+     * */
+    private GeoIndex(final List<Station> located) {
+        int size = located.size();
+        double[] unordered = new double[size * DIMENSIONS];
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            Station station = located.get(i);
+            toPoint(station.getGeoLatitude(), station.getGeoLongitude(),
+                    unordered, i * DIMENSIONS);
+            order[i] = i;
+        }
+        build(order, unordered, 0, size, 0);
+        stations = new Station[size];
+        points = new double[size * DIMENSIONS];
+        for (int i = 0; i < size; i++) {
+            stations[i] = located.get(order[i]);
+            System.arraycopy(unordered, order[i] * DIMENSIONS,
+                    points, i * DIMENSIONS, DIMENSIONS);
+        }
+    }
+
+    /** Builds an index over the stations with geo coordinates.
+     * @param stations the stations to index. Stations without or
+     *                 with invalid coordinates are ignored.
+     * @return the index.
+     * */
+    public static GeoIndex of(@NonNull final Collection<Station> stations) {
+        List<Station> located = new ArrayList<>(stations.size());
+        for (Station station : stations) {
+            if (StationQuery.hasGeoInfo(station)
+                    && isValid(station.getGeoLatitude(),
+                    station.getGeoLongitude())) {
+                located.add(station);
+            }
+        }
+        return new GeoIndex(located);
+    }
+
+    /** Gets the number of indexed stations.
+     * @return the number of stations with geo coordinates.
+     * */
+    public int size() {
+        return stations.length;
+    }
+
+    /** Finds the stations nearest to a location.
+     * @param latitude the latitude of the location in degrees.
+     * @param longitude the longitude of the location in degrees.
+     * @param limit the maximum number of stations to return.
+     * @return the nearest stations, the nearest first.
+     * */
+    public List<Station> nearest(final double latitude,
+                                 final double longitude,
+                                 final int limit) {
+        return nearest(latitude, longitude, limit, station -> true);
+    }
+
+    /** Finds the stations nearest to a location that match a filter.
+     * The filter is only evaluated for stations that are closer than
+     * the best matches found so far.
+     * @param latitude the latitude of the location in degrees.
+     * @param longitude the longitude of the location in degrees.
+     * @param limit the maximum number of stations to return.
+     * @param filter the filter the stations must match.
+     * @return the nearest matching stations, the nearest first.
+     * */
+    public List<Station> nearest(final double latitude,
+                                 final double longitude,
+                                 final int limit,
+                                 @NonNull final Predicate<Station> filter) {
+        checkLocation(latitude, longitude);
+        if (limit <= 0) {
+            throw new IllegalArgumentException(
+                    "limit must be > 0, but is " + limit);
+        }
+        double[] query = toPoint(latitude, longitude,
+                new double[DIMENSIONS], 0);
+        Nearest best = new Nearest(Math.min(limit, stations.length));
+        nearest(query, 0, stations.length, 0, filter, best);
+        return best.toList();
+    }
+
+    /** Finds the stations within a distance of a location.
+     * @param latitude the latitude of the location in degrees.
+     * @param longitude the longitude of the location in degrees.
+     * @param radiusKm the maximum distance in kilometers.
+     * @return the stations within the distance, the nearest first.
+     * */
+    public List<Station> within(final double latitude,
+                                final double longitude,
+                                final double radiusKm) {
+        return within(latitude, longitude, radiusKm, station -> true);
+    }
+
+    /** Finds the stations within a distance of a location that match
+     * a filter.
+     * @param latitude the latitude of the location in degrees.
+     * @param longitude the longitude of the location in degrees.
+     * @param radiusKm the maximum distance in kilometers.
+     * @param filter the filter the stations must match.
+     * @return the matching stations within the distance,
+     * the nearest first.
+     * */
+    public List<Station> within(final double latitude,
+                                final double longitude,
+                                final double radiusKm,
+                                @NonNull final Predicate<Station> filter) {
+        checkLocation(latitude, longitude);
+        if (!(radiusKm >= 0)) {
+            throw new IllegalArgumentException(
+                    "radiusKm must be >= 0, but is " + radiusKm);
+        }
+        double angle = Math.min(radiusKm / EARTH_RADIUS_KM, Math.PI);
+        double chord = 2 * Math.sin(angle / 2);
+        double[] query = toPoint(latitude, longitude,
+                new double[DIMENSIONS], 0);
+        List<Integer> found = new ArrayList<>();
+        within(query, 0, stations.length, 0, chord * chord, filter, found);
+        found.sort((a, b) -> Double.compare(
+                squaredDistance(query, a), squaredDistance(query, b)));
+        List<Station> result = new ArrayList<>(found.size());
+        for (int i : found) {
+            result.add(stations[i]);
+        }
+        return result;
+    }
+
+    /** Calculates the great circle distance of two locations.
+     * @param latitude1 the latitude of the first location in degrees.
+     * @param longitude1 the longitude of the first location in degrees.
+     * @param latitude2 the latitude of the second location in degrees.
+     * @param longitude2 the longitude of the second location in degrees.
+     * @return the distance in kilometers.
+     * */
+    public static double distanceKm(final double latitude1,
+                                    final double longitude1,
+                                    final double latitude2,
+                                    final double longitude2) {
+        double[] a = toPoint(latitude1, longitude1, new double[DIMENSIONS], 0);
+        double[] b = toPoint(latitude2, longitude2, new double[DIMENSIONS], 0);
+        double squared = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            squared += (a[i] - b[i]) * (a[i] - b[i]);
+        }
+        double chord = Math.min(Math.sqrt(squared), 2);
+        return 2 * Math.asin(chord / 2) * EARTH_RADIUS_KM;
+    }
+
+    /** Searches a subtree for the nearest matching stations.
+     * @param query the point to search around.
+     * @param from the first position of the subtree.
+     * @param to the position after the subtree.
+     * @param axis the axis the subtree is split at.
+     * @param filter the filter the stations must match.
+     * @param best the best matches found so far.
+     * */
+    private void nearest(final double[] query,
+                         final int from,
+                         final int to,
+                         final int axis,
+                         final Predicate<Station> filter,
+                         final Nearest best) {
+        if (from >= to || best.capacity() == 0) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        double distance = squaredDistance(query, mid);
+        if (best.accepts(distance) && filter.test(stations[mid])) {
+            best.add(distance, mid);
+        }
+        double offset = query[axis] - points[mid * DIMENSIONS + axis];
+        int next = (axis + 1) % DIMENSIONS;
+        if (offset < 0) {
+            nearest(query, from, mid, next, filter, best);
+            if (best.accepts(offset * offset)) {
+                nearest(query, mid + 1, to, next, filter, best);
+            }
+        } else {
+            nearest(query, mid + 1, to, next, filter, best);
+            if (best.accepts(offset * offset)) {
+                nearest(query, from, mid, next, filter, best);
+            }
+        }
+    }
+
+    /** Searches a subtree for the matching stations within a distance.
+     * @param query the point to search around.
+     * @param from the first position of the subtree.
+     * @param to the position after the subtree.
+     * @param axis the axis the subtree is split at.
+     * @param radius the squared straight line distance to search within.
+     * @param filter the filter the stations must match.
+     * @param found the positions of the stations found so far.
+     * */
+    private void within(final double[] query,
+                        final int from,
+                        final int to,
+                        final int axis,
+                        final double radius,
+                        final Predicate<Station> filter,
+                        final List<Integer> found) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        if (squaredDistance(query, mid) <= radius
+                && filter.test(stations[mid])) {
+            found.add(mid);
+        }
+        double offset = query[axis] - points[mid * DIMENSIONS + axis];
+        int next = (axis + 1) % DIMENSIONS;
+        if (offset < 0 || offset * offset <= radius) {
+            within(query, from, mid, next, radius, filter, found);
+        }
+        if (offset >= 0 || offset * offset <= radius) {
+            within(query, mid + 1, to, next, radius, filter, found);
+        }
+    }
+
+    /** Calculates the squared straight line distance to a point.
+     * @param query the point to measure from.
+     * @param position the position of the indexed point.
+     * @return the squared distance.
+     * */
+    private double squaredDistance(final double[] query, final int position) {
+        double sum = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            double d = query[i] - points[position * DIMENSIONS + i];
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    /** Arranges a range of points as a k-d tree.
+     * @param order the point indexes to arrange.
+     * @param coordinates the coordinates of the points.
+     * @param from the first position of the range.
+     * @param to the position after the range.
+     * @param axis the axis to split the range at.
+     * */
+    private static void build(final int[] order,
+                              final double[] coordinates,
+                              final int from,
+                              final int to,
+                              final int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        select(order, coordinates, axis, from, to - 1, mid);
+        int next = (axis + 1) % DIMENSIONS;
+        build(order, coordinates, from, mid, next);
+        build(order, coordinates, mid + 1, to, next);
+    }
+
+    /** Partially sorts a range of points so that the point at a
+     * position is the one a full sort would put there, the points
+     * before it are not greater and the points after it are not less.
+     * @param order the point indexes to arrange.
+     * @param coordinates the coordinates of the points.
+     * @param axis the axis to compare.
+     * @param first the first position of the range.
+     * @param last the last position of the range.
+     * @param position the position to select.
+     * */
+    private static void select(final int[] order,
+                               final double[] coordinates,
+                               final int axis,
+                               final int first,
+                               final int last,
+                               final int position) {
+        int low = first;
+        int high = last;
+        while (low < high) {
+            double pivot = coordinates[
+                    order[(low + high) >>> 1] * DIMENSIONS + axis];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (coordinates[order[i] * DIMENSIONS + axis] < pivot) {
+                    i++;
+                }
+                while (coordinates[order[j] * DIMENSIONS + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (position <= j) {
+                high = j;
+            } else if (position >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Converts geo coordinates to a point on the unit sphere.
+     * @param latitude the latitude in degrees.
+     * @param longitude the longitude in degrees.
+     * @param target the array to store the x, y and z coordinates in.
+     * @param offset the position of the x coordinate in the array.
+     * @return the target array.
+     * */
+    private static double[] toPoint(final double latitude,
+                                    final double longitude,
+                                    final double[] target,
+                                    final int offset) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        target[offset] = Math.cos(phi) * Math.cos(lambda);
+        target[offset + 1] = Math.cos(phi) * Math.sin(lambda);
+        target[offset + 2] = Math.sin(phi);
+        return target;
+    }
+
+    /** Whether geo coordinates are within the valid ranges.
+     * @param latitude the latitude in degrees.
+     * @param longitude the longitude in degrees.
+     * @return {@code true} if the coordinates are valid.
+     * */
+    private static boolean isValid(final double latitude,
+                                   final double longitude) {
+        return latitude >= -90 && latitude <= 90
+                && longitude >= -180 && longitude <= 180;
+    }
+
+    /** Checks the coordinates of a query location.
+     * @param latitude the latitude in degrees.
+     * @param longitude the longitude in degrees.
+     * @throws IllegalArgumentException if the coordinates are invalid.
+     * */
+    private static void checkLocation(final double latitude,
+                                      final double longitude) {
+        if (!isValid(latitude, longitude)) {
+            throw new IllegalArgumentException(
+                    "Invalid location " + latitude + "," + longitude);
+        }
+    }
+
+    /** The best matches of a nearest neighbor search, kept as a max heap
+     * on the distance so the worst match can be replaced quickly. */
+    private final class Nearest {
+        /** The squared distances of the matches in heap order. */
+        private final double[] distances;
+
+        /** The positions of the matches in heap order. */
+        private final int[] positions;
+
+        /** The number of matches. */
+        private int size;
+
+        /** Creates a new instance.
+         * @param capacity the maximum number of matches.
+         * */
+        Nearest(final int capacity) {
+            distances = new double[capacity];
+            positions = new int[capacity];
+        }
+
+        /** Gets the maximum number of matches.
+         * @return the maximum number of matches.
+         * */
+        int capacity() {
+            return distances.length;
+        }
+
+        /** Whether a match at a distance would be kept.
+         * @param distance the squared distance.
+         * @return {@code true} if there is room or the distance is
+         * less than the distance of the worst match.
+         * */
+        boolean accepts(final double distance) {
+            return size < distances.length || distance < distances[0];
+        }
+
+        /** Adds a match, replacing the worst match if full.
+         * @param distance the squared distance of the match.
+         * @param position the position of the match.
+         * */
+        void add(final double distance, final int position) {
+            int i;
+            if (size < distances.length) {
+                i = size++;
+                while (i > 0 && distances[(i - 1) / 2] < distance) {
+                    distances[i] = distances[(i - 1) / 2];
+                    positions[i] = positions[(i - 1) / 2];
+                    i = (i - 1) / 2;
+                }
+            } else {
+                i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size
+                            && distances[child + 1] > distances[child]) {
+                        child++;
+                    }
+                    if (distances[child] <= distance) {
+                        break;
+                    }
+                    distances[i] = distances[child];
+                    positions[i] = positions[child];
+                    i = child;
+                }
+            }
+            distances[i] = distance;
+            positions[i] = position;
+        }
+
+        /** Gets the matched stations.
+         * @return the matched stations, the nearest first.
+         * */
+        List<Station> toList() {
+            Integer[] sorted = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = i;
+            }
+            Arrays.sort(sorted,
+                    (a, b) -> Double.compare(distances[a], distances[b]));
+            List<Station> result = new ArrayList<>(size);
+            for (int i : sorted) {
+                result.add(stations[positions[i]]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/** RestDelegate that answers station reads from a {@link StationMirror}.
+ * The station list, the search mode paths and the advanced search
+ * are served locally if the mirror is loaded. All other requests are
+ * passed to the network delegate.
+ * @author Stephan Fuhrmann
+ * */
+@Slf4j
+class MirrorRestDelegate implements RestDelegate {
+
+    /** Path prefix of the station endpoints. */
+    private static final String STATIONS = "json/stations";
+
+    /** The mirror to answer from. */
+    private final StationMirror mirror;
+
+    /** The delegate for requests the mirror can not answer. */
+    private final RestDelegate network;
+
+    /** Creates a new instance.
+     * @param myMirror the mirror to answer from.
+     * @param myNetwork the delegate for requests the mirror
+     *                  can not answer.
+     * */
+    MirrorRestDelegate(final StationMirror myMirror,
+                       final RestDelegate myNetwork) {
+        this.mirror = myMirror;
+        this.network = myNetwork;
+    }
+
+    @Override
+    public <T> T get(final String path, final Class<T> resultClass) {
+        return network.get(path, resultClass);
+    }
+
+    @Override
+    public List<Station> postWithListOfStation(
+            final String path,
+            final Map<String, String> requestParams) {
+        List<Station> result = queryMirror(path, requestParams);
+        if (result != null) {
+            return result;
+        }
+        return network.postWithListOfStation(path, requestParams);
+    }
+
+    @Override
+    public void postWithStations(final String path,
+                                 final Map<String, String> requestParams,
+                                 final Consumer<Station> consumer) {
+        List<Station> result = queryMirror(path, requestParams);
+        if (result != null) {
+            result.forEach(consumer);
+        } else {
+            network.postWithStations(path, requestParams, consumer);
+        }
+    }
+
+    @Override
+    public List<Map<String, String>> postWithListOfMapOfString(
+            final String path,
+            final Map<String, String> requestParams) {
+        return network.postWithListOfMapOfString(path, requestParams);
+    }
+
+    @Override
+    public <T> T post(final String path,
+                      final Map<String, String> requestParams,
+                      final Class<T> resultClass) {
+        return network.post(path, requestParams, resultClass);
+    }
+
+    /** Answers a station request from the mirror.
+     * @param path the path on the web server.
+     * @param requestParams the request parameters.
+     * @return the matching stations or {@code null} if the
+     * mirror can not answer the request.
+     * */
+    private List<Station> queryMirror(final String path,
+                                      final Map<String, String> requestParams) {
+        if (!mirror.isLoaded()) {
+            return null;
+        }
+        String relative = path.startsWith("/") ? path.substring(1) : path;
+        try {
+            if (relative.equals(STATIONS)
+                    || relative.equals(STATIONS + "/search")) {
+                return mirror.query(null, null, requestParams);
+            }
+            if (relative.equals(STATIONS + "/byuuid")
+                    && requestParams.containsKey("uuids")) {
+                List<Station> result = new ArrayList<>();
+                for (String uuid : requestParams.get("uuids").split(",")) {
+                    mirror.getStationByUUID(UUID.fromString(uuid.trim()))
+                            .ifPresent(result::add);
+                }
+                return result;
+            }
+            if (!relative.startsWith(STATIONS + "/")) {
+                return null;
+            }
+            String[] components = relative.substring(STATIONS.length() + 1)
+                    .split("/");
+            if (components.length != 2) {
+                return null;
+            }
+            SearchMode searchMode = SearchMode.valueOf(
+                    components[0].toUpperCase(Locale.ROOT));
+            return mirror.query(searchMode,
+                    URLDecoder.decode(components[1], "UTF-8"),
+                    requestParams);
+        } catch (IllegalArgumentException e) {
+            log.debug("Mirror can not answer {}: {}", path, e.getMessage());
+            return null;
+        } catch (UnsupportedEncodingException e) {
+            throw new RadioBrowserException(e);
+        }
+    }
+}
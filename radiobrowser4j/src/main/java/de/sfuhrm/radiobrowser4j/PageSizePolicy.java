@@ -0,0 +1,115 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.Getter;
+
+/** Decides the size of the pages a paged stream requests.
+ * The first page is small so the first elements arrive quickly.
+ * After each complete page the throughput in elements per time is
+ * compared with the one of the previous page. As long as it improves
+ * noticeably, the page size doubles, up to the maximum page size.
+ * A constant round trip time per request makes larger pages faster,
+ * while a saturated connection stops the growth.
+ * @author Stephan Fuhrmann
+ * */
+final class PageSizePolicy {
+
+    /** The factor the throughput has to improve by for the
+     * page size to grow. */
+    private static final double MIN_IMPROVEMENT = 1.1;
+
+    /** The size of the first page. */
+    @Getter
+    private final int initialPageSize;
+
+    /** The maximum page size. */
+    @Getter
+    private final int maxPageSize;
+
+    /** The size of the next page. */
+    private int pageSize;
+
+    /** The throughput of the previous page in elements per nanosecond,
+     * zero if there was none. */
+    private double lastThroughput;
+
+    /** Creates a new instance.
+     * @param myInitialPageSize the size of the first page.
+     * @param myMaxPageSize the maximum page size.
+     * @throws IllegalArgumentException if the sizes are invalid.
+     * */
+    PageSizePolicy(final int myInitialPageSize, final int myMaxPageSize) {
+        if (myInitialPageSize <= 0) {
+            throw new IllegalArgumentException(
+                    "initialPageSize must be > 0, but is "
+                            + myInitialPageSize);
+        }
+        if (myMaxPageSize < myInitialPageSize) {
+            throw new IllegalArgumentException(
+                    "maxPageSize must be >= initialPageSize, but is "
+                            + myMaxPageSize);
+        }
+        this.initialPageSize = myInitialPageSize;
+        this.maxPageSize = myMaxPageSize;
+        this.pageSize = myInitialPageSize;
+    }
+
+    /** Creates a policy with a constant page size.
+     * @param pageSize the size of all pages.
+     * @return the policy.
+     * */
+    static PageSizePolicy fixed(final int pageSize) {
+        return new PageSizePolicy(pageSize, pageSize);
+    }
+
+    /** Creates a policy with the limits of this policy that starts with
+     * the current page size of this one.
+     * @return the new policy.
+     * */
+    synchronized PageSizePolicy copy() {
+        PageSizePolicy copy = new PageSizePolicy(pageSize, maxPageSize);
+        copy.lastThroughput = lastThroughput;
+        return copy;
+    }
+
+    /** Gets the size of the next page to request.
+     * @return the page size.
+     * */
+    synchronized int nextPageSize() {
+        return pageSize;
+    }
+
+    /** Records the outcome of a page request.
+     * @param requested the number of elements requested.
+     * @param received the number of elements received.
+     * @param nanos the time the request took in nanoseconds.
+     * */
+    synchronized void observe(final int requested,
+                              final int received,
+                              final long nanos) {
+        if (received < requested || requested != pageSize
+                || pageSize >= maxPageSize) {
+            // the end of the list or an outdated request
+            return;
+        }
+        double throughput = received / (double) Math.max(1, nanos);
+        if (throughput >= lastThroughput * MIN_IMPROVEMENT) {
+            pageSize = (int) Math.min(maxPageSize, 2L * pageSize);
+        }
+        lastThroughput = throughput;
+    }
+}
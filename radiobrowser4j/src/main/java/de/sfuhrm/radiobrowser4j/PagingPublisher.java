@@ -0,0 +1,263 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/** A cold publisher that emits the elements of a paged stream
+ * on demand.
+ * Every subscription opens a new stream and pulls elements from it
+ * only while the subscriber has outstanding demand, plus one element
+ * ahead. The element ahead tells the end of the stream apart, so
+ * {@link Subscriber#onComplete()} follows the last element even if
+ * the subscriber requested exactly the number of elements. Since the
+ * underlying {@link PagingSpliterator} loads a page only when
+ * the previous one is consumed, no page is fetched before
+ * {@link Subscription#request(long)} asks for one of its elements or
+ * for the element before it.
+ * All signals for one subscription are emitted serially on the
+ * given executor. Exceptions thrown by the subscriber cancel the
+ * subscription and are logged, they are not signalled back.
+ * @param <T> the element type to publish.
+ * @author Stephan Fuhrmann
+ * */
+@Slf4j
+class PagingPublisher<T> implements Publisher<T> {
+
+    /** Creates the stream to publish for each subscription. */
+    private final Supplier<Stream<T>> streamSupplier;
+
+    /** The executor to pull the stream on. */
+    private final Executor executor;
+
+    /** Creates a new instance.
+     * @param myStreamSupplier supplies a new stream for each subscription.
+     * @param myExecutor the executor to pull the stream on.
+     * */
+    PagingPublisher(@NonNull final Supplier<Stream<T>> myStreamSupplier,
+                    @NonNull final Executor myExecutor) {
+        this.streamSupplier = myStreamSupplier;
+        this.executor = myExecutor;
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber is null");
+        }
+        PagingSubscription subscription = new PagingSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /** The subscription for one subscriber. */
+    private final class PagingSubscription implements Subscription, Runnable {
+        /** The subscriber to signal to. */
+        private final Subscriber<? super T> subscriber;
+
+        /** The outstanding demand of the subscriber. */
+        private final AtomicLong demand = new AtomicLong();
+
+        /** Work-in-progress counter serializing the drain loop. */
+        private final AtomicInteger wip = new AtomicInteger();
+
+        /** Whether the subscriber cancelled. */
+        private volatile boolean cancelled;
+
+        /** Whether a non-positive request needs to be signalled. */
+        private volatile boolean illegalRequest;
+
+        /** The value of the non-positive request. */
+        private volatile long illegalRequestValue;
+
+        /** Whether a terminal signal was sent. Only accessed
+         * in the drain loop. */
+        private boolean done;
+
+        /** The stream being published, created lazily
+         * in the drain loop. */
+        private Stream<T> stream;
+
+        /** The spliterator of {@link #stream}. */
+        private Spliterator<T> spliterator;
+
+        /** The element pulled ahead of the demand, {@code null} if there
+         * is none. The stream has no {@code null} elements. */
+        private T next;
+
+        /** Creates a new instance.
+         * @param mySubscriber the subscriber to signal to.
+         * */
+        PagingSubscription(final Subscriber<? super T> mySubscriber) {
+            this.subscriber = mySubscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                illegalRequestValue = n;
+                illegalRequest = true;
+            } else {
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!demand.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        /** Schedules the drain loop if it is not already running. */
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /** Emits elements while there is demand. */
+        private void drain() {
+            if (done) {
+                return;
+            }
+            if (cancelled) {
+                terminate();
+                return;
+            }
+            if (illegalRequest) {
+                signalError(new IllegalArgumentException(
+                        "Request must be > 0, but is "
+                                + illegalRequestValue));
+                return;
+            }
+            try {
+                if (spliterator == null) {
+                    stream = streamSupplier.get();
+                    spliterator = stream.spliterator();
+                }
+                while (!cancelled && demand.get() > 0) {
+                    if (!pullNext()) {
+                        signalComplete();
+                        return;
+                    }
+                    T element = next;
+                    next = null;
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    if (!emit(element)) {
+                        return;
+                    }
+                }
+                if (cancelled) {
+                    terminate();
+                } else if (!pullNext()) {
+                    // complete without waiting for more demand
+                    signalComplete();
+                }
+            } catch (RuntimeException e) {
+                log.debug("Publishing failed", e);
+                signalError(e);
+            }
+        }
+
+        /** Pulls the next element ahead if there is none yet.
+         * @return {@code true} if there is a next element,
+         * {@code false} at the end of the stream.
+         * */
+        private boolean pullNext() {
+            if (next == null) {
+                spliterator.tryAdvance(element -> next = element);
+            }
+            return next != null;
+        }
+
+        /** Passes an element to the subscriber. If the subscriber
+         * throws, the subscription is cancelled.
+         * @param element the element to pass.
+         * @return {@code false} if the subscriber threw.
+         * */
+        private boolean emit(final T element) {
+            try {
+                subscriber.onNext(element);
+                return true;
+            } catch (RuntimeException e) {
+                log.warn("Subscriber failed in onNext, cancelling", e);
+                cancelled = true;
+                terminate();
+                return false;
+            }
+        }
+
+        /** Terminates and signals the completion. */
+        private void signalComplete() {
+            terminate();
+            try {
+                subscriber.onComplete();
+            } catch (RuntimeException e) {
+                log.warn("Subscriber failed in onComplete", e);
+            }
+        }
+
+        /** Terminates and signals an error.
+         * @param error the error to signal.
+         * */
+        private void signalError(final Throwable error) {
+            terminate();
+            try {
+                subscriber.onError(error);
+            } catch (RuntimeException e) {
+                log.warn("Subscriber failed in onError", e);
+            }
+        }
+
+        /** Marks this subscription as done and closes the stream. */
+        private void terminate() {
+            done = true;
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+}
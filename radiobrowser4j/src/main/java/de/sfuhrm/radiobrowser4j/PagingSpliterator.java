@@ -17,19 +17,73 @@ package de.sfuhrm.radiobrowser4j;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 /** A spliterator that iterates over a paged set of entities.
+ * The size of the pages is decided by a {@link PageSizePolicy}.
+ * Optionally a number of following pages is fetched in the background
+ * while the current page is consumed.
+ * The spliterator has to be {@linkplain #close() closed} to cancel the
+ * outstanding background fetches.
+ *
+ * <p>If the range of the list is bounded, either by a view or by a
+ * hint on the size of the list, {@link #trySplit()} divides it into
+ * halves aligned to the maximum page size that fetch their pages
+ * independently.
+ * This allows parallel streams to fetch multiple pages concurrently.
+ * The size hint is only an estimate, so the spliterator is
+ * {@link Spliterator#ORDERED} and {@link Spliterator#NONNULL},
+ * but not {@link Spliterator#SIZED}.
+ *
+ * <p>Pages that are not fetched ahead are passed to
+ * {@link #forEachRemaining(Consumer)} element by element while the
+ * {@link PageReader} reads them, so bulk operations like
+ * {@link java.util.stream.Stream#forEach(Consumer)} do not hold a
+ * whole page in memory. Short-circuiting operations advance with
+ * {@link #tryAdvance(Consumer)} and fetch each page as a list.
  * @param <T> the element type to return in the spliteration.
  * @author Stephan Fuhrmann
  * */
 @Slf4j
 class PagingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
     /** Default page size. */
-    private static final int FETCH_SIZE_DEFAULT = 128;
+    static final int FETCH_SIZE_DEFAULT = 128;
+
+    /** Fetches a page as a list, or reads it and passes its
+     * elements on while they are read.
+     * @param <T> the element type of the page.
+     * */
+    @FunctionalInterface
+    interface PageReader<T> {
+        /** Fetches the specified page.
+         * @param page the physical page to fetch.
+         * @return the elements of the page.
+         * */
+        List<T> fetch(Paging page);
+
+        /** Reads the specified page. Unless overridden, the page is
+         * fetched as a list.
+         * @param page the physical page to read.
+         * @param consumer the consumer of the elements in the order
+         *                 they are read.
+         * */
+        default void read(final Paging page,
+                          final Consumer<? super T> consumer) {
+            fetch(page).forEach(consumer);
+        }
+    }
 
     /** The current paging. */
     private Paging logicalPage;
@@ -40,17 +94,54 @@ class PagingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
     /** Current index to {@linkplain #currentData}. */
     private int currentDataIndex = 0;
 
-    /** The function for getting the specified page. */
-    private final Function<Paging, List<T>> fetchPage;
+    /** The reader of the specified page. */
+    private final PageReader<T> readPage;
 
     /** The optional view boundary of the paging. Paging will happen in this
      * range if it is set.
      * */
     private Paging view;
 
+    /** The offset the unbounded range starts at if there is no view. */
+    private int origin;
+
+    /** Supplies the total number of elements of the unbounded list,
+     * {@code null} if unknown. */
+    private final LongSupplier sizeHint;
+
+    /** The total number of elements of the unbounded list,
+     * negative if unknown. Only valid if {@link #sizeHintQueried}. */
+    private long expectedSize;
+
+    /** Whether the {@link #sizeHint} was queried. */
+    private boolean sizeHintQueried;
+
     /** Whether this spliterator is at the end of the list. */
     private boolean endOfList;
 
+    /** The number of pages to fetch ahead of the current page. */
+    private final int prefetchPages;
+
+    /** The executor to fetch pages ahead on,
+     * {@code null} if {@link #prefetchPages} is zero. */
+    private final Executor executor;
+
+    /** Decides the size of the pages to request. */
+    private final PageSizePolicy pageSizePolicy;
+
+    /** The pages fetched ahead, following the current page in order. */
+    private final Deque<FutureTask<List<T>>> prefetched = new ArrayDeque<>();
+
+    /** The logical pages of {@link #prefetched} in the same order. */
+    private final Deque<Paging> prefetchedPages = new ArrayDeque<>();
+
+    /** The logical page of the last page loaded or fetched ahead. */
+    private Paging lastRequested;
+
+    /** Whether this spliterator or the one it was split from was
+     * closed. */
+    private final AtomicBoolean closed;
+
     /** Creates a new instance.
      * @param fetchPageFunction the function for fetching the specified
      *                          page.
@@ -58,54 +149,372 @@ class PagingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
      *                 what the spliterator is returning elements.
      * */
     PagingSpliterator(final Function<Paging, List<T>> fetchPageFunction, final Paging view) {
-        super(Long.MAX_VALUE, 0);
-        logicalPage = Paging.at(0, FETCH_SIZE_DEFAULT);
-        this.fetchPage = fetchPageFunction;
+        this(fetchPageFunction, view, 0, null);
+    }
+
+    /** Creates a new instance.
+     * @param fetchPageFunction the function for fetching the specified
+     *                          page.
+     * @param view optional view boundary of the spliterator. This is the offset and limit range in
+     *                 what the spliterator is returning elements.
+     * @param myPrefetchPages the number of pages to fetch ahead of the
+     *                        current page, zero to fetch on demand only.
+     * @param myExecutor the executor to fetch pages ahead on. May be
+     *                   {@code null} if no pages are fetched ahead.
+     * */
+    PagingSpliterator(final Function<Paging, List<T>> fetchPageFunction,
+                      final Paging view,
+                      final int myPrefetchPages,
+                      final Executor myExecutor) {
+        this(fetchPageFunction, view, myPrefetchPages, myExecutor, null);
+    }
+
+    /** Creates a new instance.
+     * @param fetchPageFunction the function for fetching the specified
+     *                          page.
+     * @param view optional view boundary of the spliterator. This is the offset and limit range in
+     *                 what the spliterator is returning elements.
+     * @param myPrefetchPages the number of pages to fetch ahead of the
+     *                        current page, zero to fetch on demand only.
+     * @param myExecutor the executor to fetch pages ahead on. May be
+     *                   {@code null} if no pages are fetched ahead.
+     * @param mySizeHint supplies the approximate total number of elements
+     *                   of the list, {@code null} if unknown.
+     *                   Only queried when the size is needed,
+     *                   a negative value means unknown.
+     * */
+    PagingSpliterator(final Function<Paging, List<T>> fetchPageFunction,
+                      final Paging view,
+                      final int myPrefetchPages,
+                      final Executor myExecutor,
+                      final LongSupplier mySizeHint) {
+        this(fetchPageFunction, view, myPrefetchPages, myExecutor,
+                mySizeHint, PageSizePolicy.fixed(FETCH_SIZE_DEFAULT));
+    }
+
+    /** Creates a new instance.
+     * @param fetchPageFunction the function for fetching the specified
+     *                          page.
+     * @param view optional view boundary of the spliterator. This is the offset and limit range in
+     *                 what the spliterator is returning elements.
+     * @param myPrefetchPages the number of pages to fetch ahead of the
+     *                        current page, zero to fetch on demand only.
+     * @param myExecutor the executor to fetch pages ahead on. May be
+     *                   {@code null} if no pages are fetched ahead.
+     * @param mySizeHint supplies the approximate total number of elements
+     *                   of the list, {@code null} if unknown.
+     *                   Only queried when the size is needed,
+     *                   a negative value means unknown.
+     * @param myPageSizePolicy decides the size of the pages to request.
+     * */
+    PagingSpliterator(final Function<Paging, List<T>> fetchPageFunction,
+                      final Paging view,
+                      final int myPrefetchPages,
+                      final Executor myExecutor,
+                      final LongSupplier mySizeHint,
+                      final PageSizePolicy myPageSizePolicy) {
+        this((PageReader<T>) fetchPageFunction::apply,
+                view, myPrefetchPages, myExecutor,
+                mySizeHint, myPageSizePolicy);
+    }
+
+    /** Creates a new instance.
+     * @param pageReader the reader of the specified page.
+     * @param view optional view boundary of the spliterator. This is the offset and limit range in
+     *                 what the spliterator is returning elements.
+     * @param myPrefetchPages the number of pages to fetch ahead of the
+     *                        current page, zero to fetch on demand only.
+     * @param myExecutor the executor to fetch pages ahead on. May be
+     *                   {@code null} if no pages are fetched ahead.
+     * @param mySizeHint supplies the approximate total number of elements
+     *                   of the list, {@code null} if unknown.
+     *                   Only queried when the size is needed,
+     *                   a negative value means unknown.
+     * @param myPageSizePolicy decides the size of the pages to request.
+     * */
+    PagingSpliterator(final PageReader<T> pageReader,
+                      final Paging view,
+                      final int myPrefetchPages,
+                      final Executor myExecutor,
+                      final LongSupplier mySizeHint,
+                      final PageSizePolicy myPageSizePolicy) {
+        this(pageReader, view, 0, myPrefetchPages, myExecutor,
+                mySizeHint, myPageSizePolicy, new AtomicBoolean());
+    }
+
+    /** Creates a new instance.
+     * @param pageReader the reader of the specified page.
+     * @param view optional view boundary of the spliterator.
+     * @param myOrigin the offset of the unbounded range if there is no view.
+     * @param myPrefetchPages the number of pages to fetch ahead of the
+     *                        current page, zero to fetch on demand only.
+     * @param myExecutor the executor to fetch pages ahead on.
+     * @param mySizeHint supplies the approximate total number of elements
+     *                   of the list, {@code null} if unknown.
+     * @param myPageSizePolicy decides the size of the pages to request.
+     * @param myClosed the closed flag shared with the spliterators split
+     *                 from the same stream.
+     * */
+    private PagingSpliterator(final PageReader<T> pageReader,
+                              final Paging view,
+                              final int myOrigin,
+                              final int myPrefetchPages,
+                              final Executor myExecutor,
+                              final LongSupplier mySizeHint,
+                              final PageSizePolicy myPageSizePolicy,
+                              final AtomicBoolean myClosed) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        if (myPrefetchPages < 0) {
+            throw new IllegalArgumentException(
+                    "prefetchPages must be >= 0, but is " + myPrefetchPages);
+        }
+        if (myPrefetchPages > 0 && myExecutor == null) {
+            throw new IllegalArgumentException(
+                    "executor must be given when prefetching pages");
+        }
+        logicalPage = Paging.at(0, myPageSizePolicy.nextPageSize());
+        this.readPage = pageReader;
         this.currentData = null;
         this.view = view;
+        this.origin = myOrigin;
         this.endOfList = false;
+        this.prefetchPages = myPrefetchPages;
+        this.executor = myExecutor;
+        this.sizeHint = mySizeHint;
+        this.pageSizePolicy = myPageSizePolicy;
+        this.closed = myClosed;
+    }
+
+    /** Gets the logical page following a page.
+     * @param page the logical page.
+     * @return the following page with the current page size.
+     * */
+    private Paging following(final Paging page) {
+        return Paging.at(page.getOffset() + page.getLimit(),
+                pageSizePolicy.nextPageSize());
+    }
+
+    /** Fetches a page and reports the time it took to the
+     * {@link #pageSizePolicy}.
+     * @param physicalPage the page to fetch.
+     * @return the elements of the page.
+     * */
+    private List<T> fetch(final Paging physicalPage) {
+        long start = System.nanoTime();
+        List<T> data = readPage.fetch(physicalPage);
+        pageSizePolicy.observe(physicalPage.getLimit(), data.size(),
+                System.nanoTime() - start);
+        return data;
+    }
+
+    /** Reads a page and reports the time it took to the
+     * {@link #pageSizePolicy}. The time spent in the consumer is not
+     * counted, so a slow consumer does not shrink the pages.
+     * @param physicalPage the page to read.
+     * @param consumer the consumer of the elements while they are read.
+     * @return the number of elements of the page.
+     * */
+    private int read(final Paging physicalPage,
+                     final Consumer<? super T> consumer) {
+        long start = System.nanoTime();
+        int[] count = new int[1];
+        long[] consuming = new long[1];
+        readPage.read(physicalPage, element -> {
+            count[0]++;
+            long consumeStart = System.nanoTime();
+            try {
+                consumer.accept(element);
+            } finally {
+                consuming[0] += System.nanoTime() - consumeStart;
+            }
+        });
+        pageSizePolicy.observe(physicalPage.getLimit(), count[0],
+                System.nanoTime() - start - consuming[0]);
+        return count[0];
+    }
+
+    /** Maps a logical page to the physical page to fetch.
+     * @param logical the logical page relative to the view.
+     * @return the physical page or {@code null} if the logical
+     * page is past the end of the view.
+     * */
+    private Paging physicalPageOf(final Paging logical) {
+        // do we have a view?
+        if (view == null) {
+            return Paging.at(origin + logical.getOffset(), logical.getLimit());
+        }
+        // last page has a hard restriction
+        int fetchLimit = Math.min(logical.getLimit(),
+                view.getLimit() - logical.getOffset());
+        if (fetchLimit <= 0) {
+            return null;
+        }
+        return Paging.at(view.getOffset() + logical.getOffset(), fetchLimit);
     }
 
     /** Loads the page given in {@link #logicalPage}. */
     private void loadPage() {
+        Paging physicalPage = physicalPageOf(logicalPage);
+        log.debug("Loading logical page {}, physical page {}, view {}", logicalPage, physicalPage, view);
+        if (physicalPage == null) {
+            endOfList = true;
+            return;
+        }
+        FutureTask<List<T>> ahead = prefetched.poll();
+        if (ahead != null) {
+            prefetchedPages.poll();
+            currentData = await(ahead);
+        } else {
+            currentData = fetch(physicalPage);
+            lastRequested = logicalPage;
+        }
+        log.debug("Elements in loaded page: {}", currentData.size());
+        currentDataIndex = 0;
+        if (currentData.size() < physicalPage.getLimit()) {
+            endOfList = true;
+            cancelPrefetches();
+        } else {
+            prefetch();
+        }
+    }
 
-        Paging physicalPage = null;
-        // do we have a view?
-        if (view != null) {
-            boolean lastPage = logicalPage.getOffset() + FETCH_SIZE_DEFAULT >= view.getLimit();
-
-            int fetchLimit = FETCH_SIZE_DEFAULT;
-            // last page has a hard restriction
-            if (lastPage) {
-                fetchLimit = Math.min(FETCH_SIZE_DEFAULT, view.getLimit() - logicalPage.getOffset());
-                if (fetchLimit <= 0) {
-                    fetchLimit = 0;
-                    endOfList = true;
-                }
+    /** Fetches pages ahead until {@link #prefetchPages} are pending
+     * or the end of the view is reached. */
+    private void prefetch() {
+        while (prefetched.size() < prefetchPages) {
+            Paging next = following(lastRequested);
+            Paging physicalPage = physicalPageOf(next);
+            if (physicalPage == null) {
+                break;
             }
+            FutureTask<List<T>> task = new FutureTask<>(
+                    () -> closed.get()
+                            ? Collections.emptyList()
+                            : fetch(physicalPage));
+            prefetched.add(task);
+            prefetchedPages.add(next);
+            lastRequested = next;
+            log.debug("Fetching physical page {} ahead", physicalPage);
+            executor.execute(task);
+        }
+    }
 
-            if (fetchLimit > 0) {
-                physicalPage = Paging.at(
-                        view.getOffset() + logicalPage.getOffset(), fetchLimit);
+    /** Waits for a page fetched ahead.
+     * @param task the fetch of the page.
+     * @return the elements of the page.
+     * @throws RadioBrowserException if the fetch failed or the
+     * thread was interrupted while waiting.
+     * */
+    private List<T> await(final FutureTask<List<T>> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelPrefetches();
+            throw new RadioBrowserException(e);
+        } catch (ExecutionException e) {
+            cancelPrefetches();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
-        } else {
-            physicalPage = logicalPage;
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RadioBrowserException(cause);
         }
+    }
 
-        log.debug("Loading logical page {}, physical page {}, view {}", logicalPage, physicalPage, view);
-        if (physicalPage != null) {
-            currentData = fetchPage.apply(physicalPage);
-            log.debug("Elements in loaded page: {}", currentData.size());
-            currentDataIndex = 0;
-            if (currentData.size() < physicalPage.getLimit()) {
-                endOfList = true;
+    /** Cancels the pages fetched ahead. */
+    private void cancelPrefetches() {
+        FutureTask<List<T>> task;
+        while ((task = prefetched.poll()) != null) {
+            task.cancel(true);
+        }
+        prefetchedPages.clear();
+    }
+
+    /** Stops the iteration and cancels the pages fetched ahead.
+     * Pages that are already being transferred are read to their end
+     * by the background thread, but their elements are dropped.
+     * Spliterators split from this one stop at their next page.
+     * */
+    void close() {
+        closed.set(true);
+        endOfList = true;
+        cancelPrefetches();
+    }
+
+    /** Gets the number of elements of the list remaining for this
+     * spliterator before it started. This is the smaller of the view
+     * limit and the size hint.
+     * @return the number of elements, or {@code -1} if unknown.
+     * */
+    private long rangeSize() {
+        long hinted = -1;
+        if (sizeHint != null) {
+            if (!sizeHintQueried) {
+                expectedSize = sizeHint.getAsLong();
+                sizeHintQueried = true;
             }
+            if (expectedSize >= 0) {
+                int start = view != null ? view.getOffset() : origin;
+                hinted = Math.max(0, expectedSize - start);
+            }
+        }
+        if (view != null) {
+            return hinted >= 0
+                    ? Math.min(view.getLimit(), hinted) : view.getLimit();
+        }
+        return hinted;
+    }
+
+    @Override
+    public long estimateSize() {
+        long size = rangeSize();
+        if (size < 0) {
+            return Long.MAX_VALUE;
+        }
+        if (currentData == null) {
+            return endOfList ? 0 : size;
+        }
+        return Math.max(0, size - logicalPage.getOffset() - currentDataIndex);
+    }
+
+    /** Splits off the first half of the pages if the range is bounded
+     * and the iteration did not start yet.
+     * Otherwise a batch of elements is split off like in
+     * {@link Spliterators.AbstractSpliterator#trySplit()}.
+     * @return the spliterator for the first half of the range.
+     * */
+    @Override
+    public Spliterator<T> trySplit() {
+        long size = currentData == null && !endOfList ? rangeSize() : -1;
+        int pageSize = pageSizePolicy.getMaxPageSize();
+        long pages = (size + pageSize - 1) / pageSize;
+        if (pages < 2) {
+            return super.trySplit();
+        }
+        int half = (int) (pages / 2) * pageSize;
+        int start = view != null ? view.getOffset() : origin;
+        PagingSpliterator<T> prefix = new PagingSpliterator<>(readPage,
+                Paging.at(start, half), 0, prefetchPages, executor,
+                null, pageSizePolicy.copy(), closed);
+        if (view != null) {
+            view = Paging.at(start + half, view.getLimit() - half);
+        } else {
+            origin = start + half;
         }
+        log.debug("Split off range {}, remaining view {}, origin {}",
+                prefix.view, view, origin);
+        return prefix;
     }
 
     @Override
     public boolean tryAdvance(final Consumer<? super T> action) {
-        boolean hasMore = ! endOfList;
+        if (closed.get()) {
+            return false;
+        }
 
         // has no data -> load
         if (currentData == null && !endOfList) {
@@ -113,21 +522,65 @@ class PagingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
         }
 
         // end of page -> increment, load
-        if (currentData != null &&
+        while (currentData != null &&
                 ! endOfList &&
                 currentDataIndex >= currentData.size()) {
-            logicalPage = logicalPage.next();
+            logicalPage = prefetchedPages.isEmpty()
+                    ? following(logicalPage) : prefetchedPages.peek();
             loadPage();
         }
 
         // in page -> return element
         if (currentData != null &&  currentDataIndex < currentData.size()) {
             T element = currentData.get(currentDataIndex);
-            action.accept(element);
             currentDataIndex++;
-            hasMore = true;
+            action.accept(element);
+            return true;
         }
 
-        return hasMore;
+        return false;
+    }
+
+    /** Passes the remaining elements to an action. Pages that are not
+     * fetched ahead are passed while they are read instead of being
+     * loaded into a list first. After {@link #close()} the rest of
+     * the page being read is dropped.
+     * @param action the action to perform on each element.
+     * */
+    @Override
+    public void forEachRemaining(final Consumer<? super T> action) {
+        if (prefetchPages > 0) {
+            // pages fetched ahead arrive as lists anyway
+            super.forEachRemaining(action);
+            return;
+        }
+        // the rest of a page loaded by tryAdvance
+        if (currentData != null) {
+            while (!closed.get() && currentDataIndex < currentData.size()) {
+                action.accept(currentData.get(currentDataIndex++));
+            }
+            logicalPage = following(logicalPage);
+        }
+        currentData = Collections.emptyList();
+        currentDataIndex = 0;
+        while (!closed.get() && !endOfList) {
+            Paging physicalPage = physicalPageOf(logicalPage);
+            log.debug("Reading logical page {}, physical page {}, view {}",
+                    logicalPage, physicalPage, view);
+            if (physicalPage == null) {
+                break;
+            }
+            int count = read(physicalPage, element -> {
+                if (!closed.get()) {
+                    action.accept(element);
+                }
+            });
+            if (count < physicalPage.getLimit()) {
+                break;
+            }
+            logicalPage = following(logicalPage);
+        }
+        currentData = null;
+        endOfList = true;
     }
 }
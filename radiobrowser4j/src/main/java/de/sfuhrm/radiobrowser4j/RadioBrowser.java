@@ -21,14 +21,31 @@ import lombok.extern.slf4j.Slf4j;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -36,19 +53,66 @@ import java.util.stream.StreamSupport;
 /** API facade for the RadioBrowser.
  * You usually create a new {@linkplain #RadioBrowser(ConnectionParams) instance}
  * and then use the methods to invoke API calls.
+ * An instance {@linkplain #close() closes} the background threads it
+ * started, it must not be used after closing.
  * @author Stephan Fuhrmann
  * */
 @Slf4j
-public class RadioBrowser {
+public class RadioBrowser implements AutoCloseable {
 
     /** The base URL of the REST service. */
     @Deprecated
     static final String DEFAULT_API_URL =
             "https://at1.api.radio-browser.info/";
 
+    /** The default maximum number of UUIDs per lookup request. */
+    static final int UUID_BATCH_SIZE_DEFAULT = 100;
+
+    /** The default maximum number of concurrent requests of a
+     * batched lookup. */
+    static final int BATCH_CONCURRENCY_DEFAULT = 4;
+
     /** REST implementation. */
     private final RestDelegate rest;
 
+    /** Optional cache for facet lists and statistics.
+     * Is {@code null} if caching is disabled. */
+    private final ResponseCache cache;
+
+    /** The number of pages streams fetch ahead. */
+    private final int prefetchPages;
+
+    /** The size of the first page of streams. */
+    private final int initialPageSize;
+
+    /** The maximum size of the pages of streams. */
+    private final int maxPageSize;
+
+    /** The maximum number of UUIDs per lookup request. */
+    private final int uuidBatchSize;
+
+    /** The maximum number of concurrent requests of a batched lookup. */
+    private final int batchConcurrency;
+
+    /** Combines concurrent station lookups by UUID.
+     * Is {@code null} if each lookup is requested on its own. */
+    private final StationBatcher batcher;
+
+    /** The executor pages are fetched ahead and batches are looked up
+     * on. Is {@code null} until first used.
+     * @see #workers()
+     * */
+    private Executor workerExecutor;
+
+    /** The executors started by this instance. Guarded by
+     * {@code this}.
+     * @see #close()
+     * */
+    private final List<ExecutorService> ownedExecutors = new ArrayList<>();
+
+    /** Whether {@link #close()} was called. Guarded by {@code this}. */
+    private boolean closed;
+
     /**
      * Creates a new API client using a proxy.
      * @param connectionParams the parameters for creating an API connection.
@@ -56,7 +120,172 @@ public class RadioBrowser {
      * */
     public RadioBrowser(@NonNull final ConnectionParams connectionParams) {
         connectionParams.check();
-        rest = new RestDelegateImpl(connectionParams);
+        RestDelegate network = networkOf(connectionParams);
+        rest = connectionParams.isCoalesceRequests()
+                ? new SingleFlightRestDelegate(network) : network;
+        if (connectionParams.isCacheEnabled()) {
+            cache = new ResponseCache(
+                    connectionParams.getCacheTtl(),
+                    connectionParams.getCacheTtlPerPath(),
+                    connectionParams.getCacheMaxWeight(),
+                    own(Executors.newSingleThreadExecutor(
+                            daemonThreads("radiobrowser4j-cache-refresh"))),
+                    System::currentTimeMillis);
+        } else {
+            cache = null;
+        }
+        initialPageSize = connectionParams.getInitialPageSize();
+        maxPageSize = connectionParams.getMaxPageSize();
+        prefetchPages = connectionParams.getPrefetchPages();
+        uuidBatchSize = connectionParams.getUuidBatchSize();
+        batchConcurrency = connectionParams.getBatchConcurrency();
+        if (connectionParams.getUuidBatchWindow() > 0) {
+            batcher = new StationBatcher(this::fetchStationsByUUIDs,
+                    connectionParams.getUuidBatchWindow(),
+                    uuidBatchSize,
+                    own(Executors.newSingleThreadScheduledExecutor(
+                            daemonThreads("radiobrowser4j-batch-timer"))),
+                    runnable -> workers().execute(runnable));
+        } else {
+            batcher = null;
+        }
+    }
+
+    /** Creates the REST implementation talking to the API endpoints.
+     * @param connectionParams the parameters for creating an API connection.
+     * @return the REST implementation for the API URL, or balancing
+     * over all API URLs if there are several.
+     * */
+    private RestDelegate networkOf(final ConnectionParams connectionParams) {
+        List<String> apiUrls = connectionParams.apiUrls();
+        if (apiUrls.size() == 1) {
+            return new RestDelegateImpl(connectionParams);
+        }
+        List<EndpointBalancer.Endpoint> endpoints = new ArrayList<>();
+        for (String apiUrl : apiUrls) {
+            // failed requests go to the next endpoint, and are retried
+            // on all endpoints once every endpoint failed
+            endpoints.add(new EndpointBalancer.Endpoint(apiUrl,
+                    new RestDelegateImpl(connectionParams, apiUrl, 0),
+                    new CircuitBreaker(
+                            connectionParams.getCircuitBreakerThreshold(),
+                            connectionParams.getCircuitBreakerOpenTime(),
+                            System::currentTimeMillis)));
+        }
+        EndpointBalancer balancer = new EndpointBalancer(endpoints,
+                TimeUnit.MILLISECONDS.toNanos(connectionParams.getTimeout()));
+        boolean hedging = connectionParams.getHedgePercentile() > 0;
+        return new BalancingRestDelegate(balancer, System::nanoTime,
+                connectionParams.getRetries(),
+                connectionParams.getRetryInterval(),
+                connectionParams.getHedgePercentile(),
+                connectionParams.getHedgeBudget(),
+                hedging ? own(Executors.newSingleThreadScheduledExecutor(
+                        daemonThreads("radiobrowser4j-hedge-timer"))) : null,
+                runnable -> workers().execute(runnable));
+    }
+
+    /** Creates a factory for daemon threads.
+     * @param name the name of the threads.
+     * @return the thread factory.
+     * */
+    private static ThreadFactory daemonThreads(final String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** Registers an executor to be shut down on {@link #close()}.
+     * @param executor the executor started by this instance.
+     * @param <T> the executor type.
+     * @return the executor.
+     * @throws IllegalStateException if this instance is closed.
+     * */
+    private synchronized <T extends ExecutorService> T own(final T executor) {
+        if (closed) {
+            executor.shutdownNow();
+            throw new IllegalStateException("RadioBrowser is closed");
+        }
+        ownedExecutors.add(executor);
+        return executor;
+    }
+
+    /** Gets the executors started by this instance.
+     * @return a copy of the executors.
+     * */
+    synchronized List<ExecutorService> ownedExecutors() {
+        return new ArrayList<>(ownedExecutors);
+    }
+
+    /** Shuts down the background threads of this instance.
+     * Queued background tasks are discarded, running ones are
+     * interrupted. Station lookups waiting for their batch fail.
+     * */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (batcher != null) {
+            batcher.close();
+        }
+        for (ExecutorService executor : ownedExecutors) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates a new API client on top of a REST implementation.
+     * @param myRest the REST implementation to use.
+     * */
+    RadioBrowser(@NonNull final RestDelegate myRest) {
+        rest = myRest;
+        cache = null;
+        initialPageSize = PagingSpliterator.FETCH_SIZE_DEFAULT;
+        maxPageSize = PagingSpliterator.FETCH_SIZE_DEFAULT;
+        prefetchPages = 0;
+        uuidBatchSize = UUID_BATCH_SIZE_DEFAULT;
+        batchConcurrency = BATCH_CONCURRENCY_DEFAULT;
+        batcher = null;
+    }
+
+    /** Gets the executor for background requests and creates it if needed.
+     * @return the executor running its tasks on daemon threads.
+     * @throws IllegalStateException if this instance is closed.
+     * */
+    private synchronized Executor workers() {
+        if (workerExecutor == null) {
+            workerExecutor = own(Executors.newCachedThreadPool(
+                    daemonThreads("radiobrowser4j-worker")));
+        }
+        return workerExecutor;
+    }
+
+    /** Gets the REST implementation.
+     * @return the REST implementation of this client.
+     * */
+    RestDelegate getRest() {
+        return rest;
+    }
+
+    /**
+     * Creates a mirror of the station catalog that is downloaded
+     * with this API client.
+     * @return a new, not yet loaded mirror.
+     * @see StationMirror#load()
+     * */
+    public StationMirror mirror() {
+        return new StationMirror(this);
+    }
+
+    /**
+     * Creates an asynchronous view of this API client.
+     * @param executor the executor to run the blocking calls on.
+     * @return an asynchronous API client delegating to this instance.
+     * @see AsyncRadioBrowser
+     * */
+    public AsyncRadioBrowser async(@NonNull final Executor executor) {
+        return new AsyncRadioBrowser(this, executor);
     }
 
     /** Finds the optional paging parameter, or returns null.
@@ -77,6 +306,162 @@ public class RadioBrowser {
         return nonPagingParameters;
     }
 
+    /** Creates a stream over a paged list.
+     * Closing the stream cancels the pages fetched ahead.
+     * @param reader the reader of a physical page.
+     * @param view the optional range of the list to stream,
+     *             {@code null} for the whole list.
+     * @param <T> the element type.
+     * @return the stream of all elements in the view.
+     * @see ConnectionParams#getPrefetchPages()
+     * */
+    private <T> Stream<T> pagedStream(
+            final PagingSpliterator.PageReader<T> reader,
+            final Paging view) {
+        return pagedStream(reader, view, null);
+    }
+
+    /** Creates a stream over a paged list whose pages are passed on
+     * while they are read. Bulk operations on the stream get the
+     * elements of a page before the page is read completely.
+     * Closing the stream cancels the pages fetched ahead.
+     * @param reader the reader of a physical page.
+     * @param view the optional range of the list to stream,
+     *             {@code null} for the whole list.
+     * @param sizeHint supplies the approximate size of the whole list,
+     *                 {@code null} if unknown. Parallel streams split
+     *                 the list into page ranges with it.
+     * @param <T> the element type.
+     * @return the stream of all elements in the view.
+     * @see ConnectionParams#getPrefetchPages()
+     * @see ConnectionParams#getInitialPageSize()
+     * */
+    private <T> Stream<T> pagedStream(
+            final PagingSpliterator.PageReader<T> reader,
+            final Paging view,
+            final LongSupplier sizeHint) {
+        PagingSpliterator<T> spliterator = new PagingSpliterator<>(
+                reader, view, prefetchPages,
+                prefetchPages > 0 ? workers() : null, sizeHint,
+                new PageSizePolicy(initialPageSize, maxPageSize));
+        return StreamSupport.stream(spliterator, false)
+                .onClose(spliterator::close);
+    }
+
+    /** Gets the number of stations from the server statistics.
+     * @return the number of stations, or {@code -1} if unknown.
+     * */
+    private long stationCount() {
+        try {
+            Stats stats = getServerStats();
+            return stats != null && stats.getStations() != null
+                    ? stats.getStations() : -1;
+        } catch (RadioBrowserException e) {
+            log.debug("Could not get the number of stations", e);
+            return -1;
+        }
+    }
+
+    /** Creates a size hint for all stations from the server statistics.
+     * @param listParam the listing parameters of the stream.
+     * @return the size hint, or {@code null} if the parameters filter
+     * the stations so that the statistics do not tell their number.
+     * */
+    private LongSupplier stationCountHint(final Parameter...listParam) {
+        return isUnfiltered(listParam) ? this::stationCount : null;
+    }
+
+    /** Whether listing parameters only order and page a list.
+     * @param listParam the listing parameters.
+     * @return {@code true} if the parameters select all elements.
+     * */
+    private static boolean isUnfiltered(final Parameter...listParam) {
+        Map<String, String> requestParams = new HashMap<>();
+        exceptPaging(listParam).forEach(lp -> lp.apply(requestParams));
+        requestParams.remove("order");
+        requestParams.remove("reverse");
+        return requestParams.isEmpty();
+    }
+
+    /** Creates a size hint for the stations matching a search mode.
+     * The exact country code, codec, language and tag searches are
+     * looked up in the facet list filtered by the search term.
+     * @param searchMode the field to match.
+     * @param searchTerm the term to search for.
+     * @param listParam the listing parameters of the stream.
+     * @return the size hint, or {@code null} if the number of matching
+     * stations can not be derived from a facet list.
+     * */
+    private LongSupplier searchModeCount(final SearchMode searchMode,
+                                         final String searchTerm,
+                                         final Parameter...listParam) {
+        if (!isUnfiltered(listParam)) {
+            return null;
+        }
+        switch (searchMode) {
+            case BYCOUNTRYCODEEXACT:
+                return () -> facetCount("countrycodes", searchTerm);
+            case BYCODECEXACT:
+                return () -> facetCount("codecs", searchTerm);
+            case BYLANGUAGEEXACT:
+                return () -> facetCount("languages", searchTerm);
+            case BYTAGEXACT:
+                return () -> facetCount("tags", searchTerm);
+            default:
+                return null;
+        }
+    }
+
+    /** Gets the station count of a facet value. Only the facet values
+     * containing the value are requested, not the whole facet list.
+     * @param facet the facet list, for example "tags".
+     * @param value the value to look up, ignoring the case.
+     * @return the number of stations with the value,
+     * or {@code -1} if unknown.
+     * */
+    private long facetCount(final String facet, final String value) {
+        try {
+            List<Map<String, String>> counts = rest.postWithListOfMapOfString(
+                    paths("json", facet, value), new HashMap<>());
+            if (counts == null) {
+                return -1;
+            }
+            long count = 0;
+            for (Map<String, String> entry : counts) {
+                String name = entry.get("name");
+                String stationCount = entry.get("stationcount");
+                if (stationCount == null || !value.equalsIgnoreCase(name)) {
+                    continue;
+                }
+                if (value.equals(name)) {
+                    return Long.parseLong(stationCount);
+                }
+                count += Long.parseLong(stationCount);
+            }
+            return count;
+        } catch (RadioBrowserException | NumberFormatException e) {
+            log.debug("Could not get the station count of {}", value, e);
+            return -1;
+        }
+    }
+
+    /** Combines a limit with an optional paging parameter to
+     * the view of a stream.
+     * @param limit the maximum number of elements.
+     * @param listParam the list parameters that might contain a Paging.
+     * @return the view starting at the offset of the paging, if any,
+     * with the smaller of both limits.
+     * */
+    private static Paging limitedView(final Limit limit,
+                                      final Parameter...listParam) {
+        Paging paging = findPaging(listParam);
+        if (paging == null) {
+            return Paging.at(0, limit.getSize());
+        }
+        return Paging.at(paging.getOffset(),
+                Math.min(paging.getLimit(), limit.getSize()));
+    }
+
     /** Composes URI path components with '/' separators.
      * @param components the components to compose.
      * @return the joint path.
@@ -114,20 +499,43 @@ public class RadioBrowser {
     /** Retrieve a generic list containing a value/stationcount mapping.
      * @param keyFieldName the API key name in the list of results. Usually 'name'.
      * @param subPath the API sub path to use for the call.
-     * @return map of value and stationcount pairs.
+     * @return map of value and stationcount pairs. The map is
+     * unmodifiable if the response cache is enabled.
+     * @see ConnectionParams#getCacheTtl()
      * */
     private Map<String, Integer> retrieveValueStationCountList(
             final String keyFieldName,
             final String subPath) {
+        if (cache != null) {
+            return cache.get(subPath,
+                    subPath + "#" + keyFieldName,
+                    () -> Collections.unmodifiableMap(
+                            fetchValueStationCountList(keyFieldName, subPath)),
+                    Map::size);
+        }
+        return fetchValueStationCountList(keyFieldName, subPath);
+    }
 
-        List<Map<String,  String>> maps = StreamSupport.stream(
-                new PagingSpliterator<>(
-                        p -> {
-                            Map<String, String> params = new HashMap<>();
-                            p.apply(params);
-                            return rest.postWithListOfMapOfString(subPath, params);
-                        }, null),
-                false).collect(Collectors.toList());
+    /** Fetch a generic list containing a value/stationcount mapping
+     * from the server.
+     * @param keyFieldName the API key name in the list of results. Usually 'name'.
+     * @param subPath the API sub path to use for the call.
+     * @return map of value and stationcount pairs.
+     * */
+    private Map<String, Integer> fetchValueStationCountList(
+            final String keyFieldName,
+            final String subPath) {
+
+        List<Map<String,  String>> maps;
+        try (Stream<Map<String, String>> stream = pagedStream(
+                p -> {
+                    Map<String, String> params = new HashMap<>();
+                    p.apply(params);
+                    return rest.postWithListOfMapOfString(subPath, params);
+                },
+                null)) {
+            maps = stream.collect(Collectors.toList());
+        }
 
         return maps.stream()
                 .collect(Collectors.toMap(
@@ -208,6 +616,53 @@ public class RadioBrowser {
         return rest.postWithListOfStation(path, requestParams);
     }
 
+    /** Creates the reader of the pages of all stations on a certain
+     * API path.
+     * @param path the path to retrieve, for example "json/stations".
+     * @param listParam the optional listing parameters.
+     * @return the reader of a page.
+     */
+    private PagingSpliterator.PageReader<Station> stationPageReader(
+            final String path,
+            final Parameter...listParam) {
+        return stationPageReader(path, page -> {
+            Map<String, String> requestParams =
+                    new HashMap<>();
+
+            page.apply(requestParams);
+            Arrays.stream(listParam).forEach(lp -> lp.apply(requestParams));
+            return requestParams;
+        });
+    }
+
+    /** Creates the reader of the pages of all stations on a certain
+     * API path. Pages fetched as a list go through
+     * {@link RestDelegate#postWithListOfStation(String, Map)}, so they
+     * can be coalesced and hedged. Pages read by bulk operations pass
+     * the stations on while they are read from the response.
+     * @param path the path to retrieve, for example "json/stations".
+     * @param requestParamsOf creates the request parameters of a page.
+     * @return the reader of a page.
+     */
+    private PagingSpliterator.PageReader<Station> stationPageReader(
+            final String path,
+            final Function<Paging, Map<String, String>> requestParamsOf) {
+        return new PagingSpliterator.PageReader<Station>() {
+            @Override
+            public List<Station> fetch(final Paging page) {
+                return rest.postWithListOfStation(path,
+                        requestParamsOf.apply(page));
+            }
+
+            @Override
+            public void read(final Paging page,
+                             final Consumer<? super Station> consumer) {
+                rest.postWithStations(path, requestParamsOf.apply(page),
+                        consumer::accept);
+            }
+        };
+    }
+
     /** Get a list of all stations on a certain API path.
      * @param limit the limit of the page to retrieve.
      * @param path the path to retrieve, for example "json/stations".
@@ -223,13 +678,46 @@ public class RadioBrowser {
                 new HashMap<>();
 
         Arrays.stream(listParam).forEach(lp -> lp.apply(requestParams));
+
+        return rest.postWithListOfStation(limitedPath(limit, path),
+                requestParams);
+    }
+
+    /** Pass all stations on a certain API path to a consumer.
+     * Each station is passed as soon as it has been read from the
+     * response.
+     * @param limit the limit of the page to retrieve.
+     * @param path the path to retrieve, for example "json/stations".
+     * @param consumer the consumer of the stations.
+     * @param listParam the optional listing parameters.
+     */
+    private void listStationsPathWithLimit(
+                                final Optional<Limit> limit,
+                                final String path,
+                                final Consumer<Station> consumer,
+                                final Parameter...listParam) {
+        Map<String, String> requestParams =
+                new HashMap<>();
+
+        Arrays.stream(listParam).forEach(lp -> lp.apply(requestParams));
+
+        rest.postWithStations(limitedPath(limit, path),
+                requestParams,
+                consumer);
+    }
+
+    /** Appends an optional limit to an API path.
+     * @param limit the limit of the page to retrieve.
+     * @param path the path to retrieve, for example "json/stations".
+     * @return the path with the limit.
+     */
+    private static String limitedPath(final Optional<Limit> limit,
+                                      final String path) {
         String myPath = path;
         if (limit.isPresent()) {
             myPath = myPath + '/' + limit.get().getSize();
         }
-
-        return rest.postWithListOfStation(myPath,
-                requestParams);
+        return myPath;
     }
 
     /** Get a list of all stations. Will return a single batch.
@@ -252,10 +740,28 @@ public class RadioBrowser {
      */
     public Stream<Station> listStations(final Parameter...listParam) {
         Parameter[] nonPaging = exceptPaging(listParam).toArray(new Parameter[0]);
-        return StreamSupport.stream(
-                new PagingSpliterator<>(
-                        p -> listStations(p, nonPaging), findPaging(listParam)),
-                false);
+        return pagedStream(
+                stationPageReader("json/stations", nonPaging),
+                findPaging(listParam),
+                stationCountHint(nonPaging));
+    }
+
+    /** Get a stream of at most a number of stations.
+     * Other than with {@link Stream#limit(long)} on the full stream,
+     * the limit is known when requesting pages, so no page asks the
+     * server for more stations than the stream will return.
+     * @param limit the maximum number of stations to stream.
+     * @param listParam the optional listing parameters. A {@link Paging}
+     *                  parameter restricts the stream further.
+     * @return the stream of at most {@code limit} stations.
+     */
+    public Stream<Station> listStations(@NonNull final Limit limit,
+                                        final Parameter...listParam) {
+        Parameter[] nonPaging = exceptPaging(listParam).toArray(new Parameter[0]);
+        return pagedStream(
+                stationPageReader("json/stations", nonPaging),
+                limitedView(limit, listParam),
+                stationCountHint(nonPaging));
     }
 
     /** Get a list of all broken stations. Will return a single batch.
@@ -269,16 +775,26 @@ public class RadioBrowser {
                 );
     }
 
+    /** Pass the broken stations to a consumer. Each station is passed
+     * as soon as it has been read from the response, without holding
+     * the whole batch in memory.
+     * @param limit the limit of the page to retrieve.
+     * @param consumer the consumer of the stations.
+     */
+    public void listBrokenStations(
+            @NonNull final Limit limit,
+            @NonNull final Consumer<Station> consumer) {
+        listStationsPathWithLimit(Optional.of(limit),
+                "json/stations/broken", consumer);
+    }
+
     /** Get a list of all broken stations as one continuous stream.
      * @return the continuous stream of all broken stations.
      */
     public Stream<Station> listBrokenStations() {
-        return StreamSupport.stream(
-                new PagingSpliterator<>(
-                        p -> listStationsPathWithPaging(Optional.of(p),
-                                "json/stations/broken"),
-                        null),
-                false);
+        return pagedStream(
+                stationPageReader("json/stations/broken"),
+                null, null);
     }
 
     /** Get a list of the top click stations. Will return a single batch.
@@ -292,16 +808,26 @@ public class RadioBrowser {
                 "json/stations/topclick");
     }
 
+    /** Pass the top click stations to a consumer. Each station is passed
+     * as soon as it has been read from the response, without holding
+     * the whole batch in memory.
+     * @param limit the limit of the page to retrieve.
+     * @param consumer the consumer of the stations.
+     */
+    public void listTopClickStations(
+            @NonNull final Limit limit,
+            @NonNull final Consumer<Station> consumer) {
+        listStationsPathWithLimit(Optional.of(limit),
+                "json/stations/topclick", consumer);
+    }
+
     /** Get a stream of all top click stations.
      * @return the complete stream of all top click stations.
      */
     public Stream<Station> listTopClickStations() {
-        return StreamSupport.stream(
-                new PagingSpliterator<>(
-                        p -> listStationsPathWithPaging(Optional.of(p),
-                                "json/stations/topclick"),
-                        null),
-                false);
+        return pagedStream(
+                stationPageReader("json/stations/topclick"),
+                null, null);
     }
 
     /** Get a list of the top vote stations. Will return a single batch.
@@ -315,16 +841,26 @@ public class RadioBrowser {
                 "json/stations/topvote");
     }
 
+    /** Pass the top vote stations to a consumer. Each station is passed
+     * as soon as it has been read from the response, without holding
+     * the whole batch in memory.
+     * @param limit the limit of the page to retrieve.
+     * @param consumer the consumer of the stations.
+     */
+    public void listTopVoteStations(
+            @NonNull final Limit limit,
+            @NonNull final Consumer<Station> consumer) {
+        listStationsPathWithLimit(Optional.of(limit),
+                "json/stations/topvote", consumer);
+    }
+
     /** Get a stream of the top vote stations.
      * @return the complete stream of the top vote stations.
      */
     public Stream<Station> listTopVoteStations() {
-        return StreamSupport.stream(
-                new PagingSpliterator<>(
-                        p -> listStationsPathWithPaging(Optional.of(p),
-                                "json/stations/topvote"),
-                        null),
-                false);
+        return pagedStream(
+                stationPageReader("json/stations/topvote"),
+                null, null);
     }
 
     /** Get a list of the last clicked stations. Will return a single batch.
@@ -338,16 +874,26 @@ public class RadioBrowser {
                 "json/stations/lastclick");
     }
 
+    /** Pass the last clicked stations to a consumer. Each station is passed
+     * as soon as it has been read from the response, without holding
+     * the whole batch in memory.
+     * @param limit the limit of the page to retrieve.
+     * @param consumer the consumer of the stations.
+     */
+    public void listLastClickStations(
+            @NonNull final Limit limit,
+            @NonNull final Consumer<Station> consumer) {
+        listStationsPathWithLimit(Optional.of(limit),
+                "json/stations/lastclick", consumer);
+    }
+
     /** Get a stream of last clicked stations.
      * @return the complete stream of the last clicked stations.
      */
     public Stream<Station> listLastClickStations() {
-        return StreamSupport.stream(
-                new PagingSpliterator<>(
-                        p -> listStationsPathWithPaging(Optional.of(p),
-                                "json/stations/lastclick"),
-                        null),
-                false);
+        return pagedStream(
+                stationPageReader("json/stations/lastclick"),
+                null, null);
     }
 
     /** Get a list of the last changed stations. Will return a single batch.
@@ -361,16 +907,26 @@ public class RadioBrowser {
                 "json/stations/lastchange");
     }
 
+    /** Pass the last changed stations to a consumer. Each station is passed
+     * as soon as it has been read from the response, without holding
+     * the whole batch in memory.
+     * @param limit the limit of the page to retrieve.
+     * @param consumer the consumer of the stations.
+     */
+    public void listLastChangedStations(
+            @NonNull final Limit limit,
+            @NonNull final Consumer<Station> consumer) {
+        listStationsPathWithLimit(Optional.of(limit),
+                "json/stations/lastchange", consumer);
+    }
+
     /** Get a stream of last changed stations.
      * @return the complete stream of the last changed stations.
      */
     public Stream<Station> listLastChangedStations() {
-        return StreamSupport.stream(
-                new PagingSpliterator<>(
-                        p -> listStationsPathWithPaging(Optional.of(p),
-                                "json/stations/lastchange"),
-                        null),
-                false);
+        return pagedStream(
+                stationPageReader("json/stations/lastchange"),
+                null, null);
     }
 
     /** Get a station referenced by its UUID.
@@ -378,8 +934,19 @@ public class RadioBrowser {
      * @return an optional containing either the station or nothing.
      * Nothing is returned if the API didn't find the station by the
      * given ID.
+     * @see ConnectionParams#getUuidBatchWindow()
      */
     public Optional<Station> getStationByUUID(@NonNull final UUID uuid) {
+        if (batcher != null) {
+            try {
+                return batcher.load(uuid).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RadioBrowserException(e.getCause());
+            }
+        }
         List<Station> stationList = listStationsBy(
                 Paging.at(0, 1),
                 SearchMode.BYUUID,
@@ -391,6 +958,74 @@ public class RadioBrowser {
         }
     }
 
+    /** Get the stations referenced by their UUIDs.
+     * Other than calling {@link #getStationByUUID(UUID)} for each UUID,
+     * the UUIDs are looked up in batches of up to
+     * {@link ConnectionParams#getUuidBatchSize()} UUIDs per request.
+     * The batches of large lookups are requested concurrently, at most
+     * {@link ConnectionParams#getBatchConcurrency()} at a time.
+     * @param uuids the UUIDs of the stations to retrieve.
+     *              Duplicates are looked up once.
+     * @return the found stations by their UUID. UUIDs the API didn't
+     * find a station for are missing in the map.
+     * @throws RadioBrowserException if a batch could not be retrieved.
+     */
+    public Map<UUID, Station> getStationsByUUIDs(
+            @NonNull final Collection<UUID> uuids) {
+        Set<UUID> requested = new LinkedHashSet<>(uuids);
+        List<UUID> distinct = new ArrayList<>(requested);
+        Queue<List<UUID>> batches = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < distinct.size(); i += uuidBatchSize) {
+            batches.add(distinct.subList(i,
+                    Math.min(distinct.size(), i + uuidBatchSize)));
+        }
+        Map<UUID, Station> result = new ConcurrentHashMap<>(
+                distinct.size() * 2);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            List<UUID> batch;
+            while (failure.get() == null && (batch = batches.poll()) != null) {
+                try {
+                    for (Station station : fetchStationsByUUIDs(batch)) {
+                        if (station.getStationUUID() != null) {
+                            result.put(station.getStationUUID(), station);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+        // the calling thread works on the batches, too
+        int helpers = Math.min(batchConcurrency, batches.size()) - 1;
+        CompletableFuture<?>[] running = new CompletableFuture<?>[
+                Math.max(0, helpers)];
+        for (int i = 0; i < running.length; i++) {
+            running[i] = CompletableFuture.runAsync(worker, workers());
+        }
+        worker.run();
+        CompletableFuture.allOf(running).join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        // a set, retaining a list would be quadratic
+        result.keySet().retainAll(requested);
+        return new HashMap<>(result);
+    }
+
+    /** Fetches the stations of one batch of UUIDs with a single request.
+     * @param uuids the UUIDs of the stations to retrieve.
+     * @return the found stations.
+     */
+    private List<Station> fetchStationsByUUIDs(final List<UUID> uuids) {
+        Map<String, String> requestParams = new HashMap<>();
+        requestParams.put("uuids", uuids.stream()
+                .map(UUID::toString)
+                .collect(Collectors.joining(",")));
+        return rest.postWithListOfStation("json/stations/byuuid",
+                requestParams);
+    }
+
     /** Get a list of stations matching a certain search criteria.
      * Will return a single batch.
      * @param paging the offset and limit of the page to retrieve.
@@ -427,25 +1062,50 @@ public class RadioBrowser {
             @NonNull final SearchMode searchMode,
             @NonNull final String searchTerm,
             final Parameter...listParam) {
+        return pagedStream(
+                stationsByReader(searchMode, searchTerm, listParam),
+                findPaging(listParam),
+                searchModeCount(searchMode, searchTerm, listParam));
+    }
 
-        Function<Paging, List<Station>> fetcher = p -> {
-            Map<String, String> requestParams =
-                    new HashMap<>();
-            p.apply(requestParams);
-            exceptPaging(listParam).stream().forEach(l -> l.apply(requestParams));
-
-            String path = paths("json","stations",
-                    searchMode.name().toLowerCase(),
-                    searchTerm);
-
-            return rest.postWithListOfStation(path,
-                    requestParams);
-        };
+    /** Get a stream of at most a number of stations matching a certain
+     * search criteria. Other than with {@link Stream#limit(long)} on the
+     * full stream, the limit is known when requesting pages, so no page
+     * asks the server for more stations than the stream will return.
+     * @param limit the maximum number of stations to stream.
+     * @param searchMode the field to match.
+     * @param searchTerm the term to search for.
+     * @param listParam the optional listing parameters. A {@link Paging}
+     *                  parameter restricts the stream further.
+     * @return the stream of at most {@code limit} matching stations.
+     */
+    public Stream<Station> listStationsBy(
+            @NonNull final Limit limit,
+            @NonNull final SearchMode searchMode,
+            @NonNull final String searchTerm,
+            final Parameter...listParam) {
+        return pagedStream(
+                stationsByReader(searchMode, searchTerm, listParam),
+                limitedView(limit, listParam),
+                searchModeCount(searchMode, searchTerm, listParam));
+    }
 
-        return StreamSupport.stream(
-                new PagingSpliterator<>(
-                        fetcher,
-                        findPaging(listParam)), false);
+    /** Creates the reader of the pages of stations matching a
+     * certain search criteria.
+     * @param searchMode the field to match.
+     * @param searchTerm the term to search for.
+     * @param listParam the optional listing parameters.
+     * @return the reader of a page.
+     */
+    private PagingSpliterator.PageReader<Station> stationsByReader(
+            final SearchMode searchMode,
+            final String searchTerm,
+            final Parameter...listParam) {
+        String path = paths("json","stations",
+                searchMode.name().toLowerCase(),
+                searchTerm);
+        return stationPageReader(path,
+                exceptPaging(listParam).toArray(new Parameter[0]));
     }
 
     /** Resolves the streaming URL for the given station.
@@ -500,9 +1160,16 @@ public class RadioBrowser {
 
     /** Get the server statistics.
      * @return the statistics for the configured server
-     * endpoint.
+     * endpoint. If the response cache is enabled, the returned
+     * instance is shared and must not be modified.
+     * @see ConnectionParams#getCacheTtl()
      * */
     public Stats getServerStats() {
+        if (cache != null) {
+            return cache.get("json/stats", "json/stats",
+                    () -> rest.get("json/stats", Stats.class),
+                    stats -> 1);
+        }
         return rest.get("json/stats", Stats.class);
     }
 
@@ -544,26 +1211,49 @@ public class RadioBrowser {
     public Stream<Station> listStationsWithAdvancedSearch(
             @NonNull final AdvancedSearch advancedSearch,
             final Parameter...listParam) {
+        return pagedStream(
+                advancedSearchReader(advancedSearch, listParam),
+                findPaging(listParam), null);
+    }
 
-        Function<Paging, List<Station>> fetcher = p -> {
+    /** Get a stream of at most a number of stations matching a certain
+     * search criteria. Other than with {@link Stream#limit(long)} on the
+     * full stream, the limit is known when requesting pages, so no page
+     * asks the server for more stations than the stream will return.
+     * @param limit the maximum number of stations to stream.
+     * @param advancedSearch the advanced search query object.
+     * @param listParam the optional listing parameters. A {@link Paging}
+     *                  parameter restricts the stream further.
+     * @return the stream of at most {@code limit} matching stations.
+     */
+    public Stream<Station> listStationsWithAdvancedSearch(
+            @NonNull final Limit limit,
+            @NonNull final AdvancedSearch advancedSearch,
+            final Parameter...listParam) {
+        return pagedStream(
+                advancedSearchReader(advancedSearch, listParam),
+                limitedView(limit, listParam), null);
+    }
+
+    /** Creates the reader of the pages of stations matching an
+     * advanced search.
+     * @param advancedSearch the advanced search query object.
+     * @param listParam the optional listing parameters.
+     * @return the reader of a page.
+     */
+    private PagingSpliterator.PageReader<Station> advancedSearchReader(
+            final AdvancedSearch advancedSearch,
+            final Parameter...listParam) {
+        return stationPageReader("/json/stations/search", page -> {
             Map<String, String> requestParams =
                     new HashMap<>();
-            p.apply(requestParams);
+            page.apply(requestParams);
             advancedSearch.apply(requestParams);
             exceptPaging(listParam).stream().forEach(l -> l.apply(requestParams));
-
-            return rest.postWithListOfStation(
-                    "/json/stations/search",
-                    requestParams);
-        };
-
-        return StreamSupport.stream(
-                new PagingSpliterator<>(
-                        fetcher,
-                        findPaging(listParam)), false);
+            return requestParams;
+        });
     }
 
-
     /** Posts a new station to the server.
      * Note: This call only transmits certain fields.
      * The fields are:
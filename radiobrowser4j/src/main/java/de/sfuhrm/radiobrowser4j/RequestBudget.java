@@ -0,0 +1,61 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+/** Bounds the extra requests relative to the regular requests.
+ * Each regular request deposits a fraction of a token, each extra
+ * request withdraws a whole token. The deposits are capped, so a quiet
+ * period does not allow a burst of extra requests later on.
+ * @author Stephan Fuhrmann
+ * */
+final class RequestBudget {
+
+    /** The tokens deposited per regular request. */
+    private final double ratio;
+
+    /** The maximum number of tokens. */
+    private final double maxTokens;
+
+    /** The current number of tokens. Guarded by {@code this}. */
+    private double tokens;
+
+    /** Creates a new instance.
+     * @param myRatio the extra requests allowed per regular request,
+     *                for example {@code 0.05} for five percent.
+     * @param myMaxTokens the maximum number of extra requests that
+     *                    can be saved up.
+     * */
+    RequestBudget(final double myRatio, final double myMaxTokens) {
+        this.ratio = myRatio;
+        this.maxTokens = myMaxTokens;
+    }
+
+    /** Deposits the tokens of a regular request. */
+    synchronized void deposit() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    /** Withdraws the token of an extra request if available.
+     * @return {@code true} if the extra request may be sent.
+     * */
+    synchronized boolean tryWithdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
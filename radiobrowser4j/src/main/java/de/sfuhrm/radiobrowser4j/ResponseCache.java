@@ -0,0 +1,243 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/** Cache for slowly changing API responses like the facet lists.
+ * Entries are fresh for a time-to-live that can be configured per
+ * endpoint path. A stale entry is still returned to the caller while
+ * a refresh runs in the background, so only the very first request of
+ * an entry waits for the network. Concurrent first requests of an
+ * entry share one load. The total weight of the cached
+ * entries is bounded, the least recently used entries are evicted
+ * first.
+ * @author Stephan Fuhrmann
+ * */
+@Slf4j
+class ResponseCache {
+
+    /** A cached value. */
+    private static final class Entry {
+        /** The cached value. */
+        private final Object value;
+
+        /** The weight of the value. */
+        private final int weight;
+
+        /** Time of loading in milliseconds. */
+        private final long loadedAt;
+
+        /** Whether a background refresh is running. */
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        /** Creates a new instance.
+         * @param myValue the value to cache.
+         * @param myWeight the weight of the value.
+         * @param myLoadedAt the time of loading in milliseconds.
+         * */
+        Entry(final Object myValue, final int myWeight, final long myLoadedAt) {
+            this.value = myValue;
+            this.weight = myWeight;
+            this.loadedAt = myLoadedAt;
+        }
+    }
+
+    /** The time-to-live in milliseconds for paths without
+     * an explicit setting. */
+    private final long defaultTtl;
+
+    /** Time-to-live in milliseconds per endpoint path. */
+    private final Map<String, Long> ttls;
+
+    /** The maximum total weight of all entries. */
+    private final long maxWeight;
+
+    /** The executor for background refreshes. */
+    private final Executor refreshExecutor;
+
+    /** Clock in milliseconds. */
+    private final LongSupplier clock;
+
+    /** The cached entries in access order. Guarded by itself. */
+    private final LinkedHashMap<String, Entry> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /** The total weight of {@link #entries}. Guarded by
+     * {@link #entries}. */
+    private long totalWeight;
+
+    /** The loads of missing entries in flight by key. */
+    private final Map<String, CompletableFuture<Object>> loading =
+            new ConcurrentHashMap<>();
+
+    /** Creates a new instance.
+     * @param myDefaultTtl the time-to-live in milliseconds for
+     *                     paths without an explicit setting.
+     * @param myTtls the time-to-live in milliseconds per endpoint path.
+     * @param myMaxWeight the maximum total weight of all entries.
+     * @param myRefreshExecutor the executor for background refreshes.
+     * @param myClock clock in milliseconds.
+     * */
+    ResponseCache(final long myDefaultTtl,
+                  final Map<String, Long> myTtls,
+                  final long myMaxWeight,
+                  final Executor myRefreshExecutor,
+                  final LongSupplier myClock) {
+        this.defaultTtl = myDefaultTtl;
+        this.ttls = myTtls == null ? Collections.emptyMap() : myTtls;
+        this.maxWeight = myMaxWeight;
+        this.refreshExecutor = myRefreshExecutor;
+        this.clock = myClock;
+    }
+
+    /** Gets a value from the cache or loads it.
+     * @param path the endpoint path used for the time-to-live lookup.
+     * @param key the cache key, usually the path plus the variant
+     *            of the response.
+     * @param loader the loader for the value.
+     * @param weigher calculates the weight of a value.
+     * @param <T> the type of the value.
+     * @return the cached or loaded value.
+     * */
+    @SuppressWarnings("unchecked")
+    <T> T get(final String path,
+              final String key,
+              final Supplier<T> loader,
+              final ToIntFunction<T> weigher) {
+        long ttl = ttls.getOrDefault(path, defaultTtl);
+        if (ttl <= 0) {
+            return loader.get();
+        }
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            return load(key, loader, weigher);
+        }
+        if (clock.getAsLong() - entry.loadedAt >= ttl
+                && entry.refreshing.compareAndSet(false, true)) {
+            log.debug("Refreshing stale entry {}", key);
+            final Entry staleEntry = entry;
+            refreshExecutor.execute(() -> {
+                try {
+                    T value = loader.get();
+                    put(key, new Entry(value, weigher.applyAsInt(value),
+                            clock.getAsLong()));
+                } catch (RuntimeException e) {
+                    log.warn("Refresh of " + key + " failed", e);
+                    staleEntry.refreshing.set(false);
+                }
+            });
+        }
+        return (T) entry.value;
+    }
+
+    /** Loads a missing entry unless a load of it is in flight.
+     * @param key the cache key.
+     * @param loader the loader for the value.
+     * @param weigher calculates the weight of a value.
+     * @param <T> the type of the value.
+     * @return the loaded value.
+     * */
+    @SuppressWarnings("unchecked")
+    private <T> T load(final String key,
+                       final Supplier<T> loader,
+                       final ToIntFunction<T> weigher) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        CompletableFuture<Object> running = loading.putIfAbsent(key, result);
+        if (running != null) {
+            log.debug("Joining load of {}", key);
+            try {
+                return (T) running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new RadioBrowserException(e.getCause());
+            }
+        }
+        try {
+            Entry entry;
+            synchronized (entries) {
+                entry = entries.get(key);
+            }
+            // a load may have finished since the entry was looked up
+            T value = entry != null ? (T) entry.value : loader.get();
+            if (entry == null) {
+                put(key, new Entry(value, weigher.applyAsInt(value),
+                        clock.getAsLong()));
+            }
+            result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, result);
+        }
+    }
+
+    /** Puts an entry and evicts the least recently used entries
+     * if the weight limit is exceeded.
+     * @param key the cache key.
+     * @param entry the entry to put.
+     * */
+    private void put(final String key, final Entry entry) {
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalWeight -= previous.weight;
+            }
+            totalWeight += entry.weight;
+            Iterator<Map.Entry<String, Entry>> iterator =
+                    entries.entrySet().iterator();
+            while (totalWeight > maxWeight && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                if (eldest.getValue() == entry) {
+                    continue;
+                }
+                totalWeight -= eldest.getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    /** Removes all entries. */
+    void clear() {
+        synchronized (entries) {
+            entries.clear();
+            totalWeight = 0;
+        }
+    }
+}
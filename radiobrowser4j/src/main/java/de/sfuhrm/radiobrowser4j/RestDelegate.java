@@ -2,6 +2,7 @@ package de.sfuhrm.radiobrowser4j;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /** Interface towards the implementation of the REST
  * client.
@@ -28,6 +29,25 @@ interface RestDelegate {
     List<Station> postWithListOfStation(String path,
                     Map<String, String> requestParams);
 
+    /** Sends a POST request to the remote server and passes
+     * each station of the resulting list to the consumer.
+     * Implementations that can read the response incrementally
+     * pass each station as soon as it has been read, without
+     * holding the whole list in memory.
+     * The body gets transferred as
+     *  "application/x-www-form-urlencoded" encoded data.
+     * @param path the path on the web server.
+     * @param requestParams the request parameters to send as the POST body in
+     *                       "application/x-www-form-urlencoded" encoding.
+     * @param consumer the consumer of the stations in the response.
+     * @throws RadioBrowserException if the sever sent a non-OK response.
+     * */
+    default void postWithStations(String path,
+                    Map<String, String> requestParams,
+                    Consumer<Station> consumer) {
+        postWithListOfStation(path, requestParams).forEach(consumer);
+    }
+
     /** Sends a POST request to the remote server. The
      * body gets transferred as
      *  "application/x-www-form-urlencoded" encoded data.
@@ -3,10 +3,14 @@ package de.sfuhrm.radiobrowser4j;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
@@ -23,18 +27,33 @@ import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.zip.GZIPInputStream;
 
 /** URLConnection implementation of the RestDelegate.
+ * Connections are not disconnected after a successful exchange, but
+ * their response bodies are read completely. This way the JDK can hand
+ * the socket and TLS session back to its keep-alive cache
+ * and reuse it for the next request to the same endpoint. The size of
+ * the keep-alive cache per destination can be tuned with the
+ * {@code http.maxConnections} system property.
+ * If {@link ConnectionParams#getConditionalRequestCacheSize()} is set,
+ * read requests send the validators of a previous response and a
+ * {@code 304 Not Modified} answer is parsed from the remembered body
+ * of the previous response.
  * @see HttpURLConnection
  * @author Stephan Fuhrmann
  * */
 @Slf4j
 class RestDelegateImpl implements RestDelegate {
 
+    /** Buffer size for draining response bodies. */
+    private static final int DRAIN_BUFFER_SIZE = 4096;
+
     /** The URI of the API endpoint. All paths are relative to this one. */
     private final URI endpoint;
 
@@ -44,16 +63,42 @@ class RestDelegateImpl implements RestDelegate {
     /** The GSON adapter. */
     private final Gson gson;
 
+    /** The validators and bodies of previous responses.
+     * {@code null} if conditional requests are disabled. */
+    private final ConditionalRequestCache conditionalCache;
+
+    /** The number of retries of a request on HTTP errors. */
+    private final int retries;
+
     /** Create a new instance.
      * @param inConnectionParams the connection parameters to use.
      * */
     RestDelegateImpl(final ConnectionParams inConnectionParams) {
-        this.endpoint = URI.create(inConnectionParams.getApiUrl());
+        this(inConnectionParams, inConnectionParams.getApiUrl(),
+                inConnectionParams.getRetries());
+    }
+
+    /** Create a new instance for one of the API endpoints.
+     * @param inConnectionParams the connection parameters to use.
+     * @param apiUrl the URL of the API endpoint to send requests to.
+     * @param inRetries the number of retries of a request on HTTP
+     *                  errors, zero to fail on the first error.
+     * */
+    RestDelegateImpl(final ConnectionParams inConnectionParams,
+                     final String apiUrl,
+                     final int inRetries) {
+        this.endpoint = URI.create(apiUrl);
+        this.retries = inRetries;
         this.connectionParams = inConnectionParams;
         this.gson = new GsonBuilder()
-                .registerTypeAdapter(Stats.class, new StatsDeserializer())
-                .registerTypeAdapter(Station.class, new StationDeserializer())
+                .registerTypeAdapterFactory(StatsTypeAdapter.FACTORY)
+                .registerTypeAdapterFactory(StationTypeAdapter.FACTORY)
                 .create();
+        this.conditionalCache =
+                inConnectionParams.getConditionalRequestCacheSize() > 0
+                ? new ConditionalRequestCache(
+                        inConnectionParams.getConditionalRequestCacheSize())
+                : null;
     }
 
     static class HttpException extends RadioBrowserException {
@@ -129,6 +174,7 @@ class RestDelegateImpl implements RestDelegate {
 
         connection.setConnectTimeout(connectionParams.getTimeout());
         connection.setReadTimeout(connectionParams.getTimeout());
+        Cancellation.attach(connection);
 
         return connection;
     }
@@ -162,21 +208,204 @@ class RestDelegateImpl implements RestDelegate {
         return StandardCharsets.UTF_8;
     }
 
-    private static Reader readerFor(
-            final HttpURLConnection connection) throws IOException {
+    private static InputStream decoded(
+            final HttpURLConnection connection,
+            final InputStream inputStream) throws IOException {
         String encoding = connection.getContentEncoding();
-        String contentType = connection.getContentType();
-        Charset charset = guessCharsetFor(contentType);
-
-        checkResponseStatus(connection);
 
         if (encoding != null && encoding.equalsIgnoreCase("gzip")) {
-            return new InputStreamReader(
-                    new GZIPInputStream(connection.getInputStream()),
-                    charset);
+            return new GZIPInputStream(inputStream);
         } else {
-            return new InputStreamReader(connection.getInputStream(),
-                    charset);
+            return inputStream;
+        }
+    }
+
+    /** Stream that keeps a copy of the bytes read through it.
+     * The body of a response is remembered this way while it is
+     * being parsed.
+     * */
+    private static final class CapturingInputStream
+            extends FilterInputStream {
+        /** The bytes read so far. */
+        private final ByteArrayOutputStream captured =
+                new ByteArrayOutputStream();
+
+        /** Creates a new instance.
+         * @param in the stream to read from.
+         * */
+        CapturingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                captured.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len)
+                throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                captured.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, DRAIN_BUFFER_SIZE)];
+            int count = read(buffer, 0, buffer.length);
+            return Math.max(0, count);
+        }
+
+        /** Gets the bytes read so far.
+         * @return a copy of the bytes read.
+         * */
+        byte[] toByteArray() {
+            return captured.toByteArray();
+        }
+    }
+
+    /** Reads the remains of a response body so the underlying
+     * connection can be reused by the keep-alive cache.
+     * @param inputStream the stream to drain, may be {@code null}.
+     * */
+    private static void drain(final InputStream inputStream)
+            throws IOException {
+        if (inputStream == null) {
+            return;
+        }
+        byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+        while (inputStream.read(buffer) != -1) {
+            // discard
+        }
+    }
+
+    /** Parser for a response body.
+     * @param <T> the type of the parsed result.
+     * */
+    @FunctionalInterface
+    private interface ResponseParser<T> {
+        /** Parses the response body.
+         * @param reader the reader of the response body.
+         * @return the parsed result.
+         * @throws IOException if reading fails.
+         * */
+        T parse(Reader reader) throws IOException;
+    }
+
+    /** Looks up the previous response of a read request and
+     * adds its validators to the connection.
+     * @param connection the connection to send the request with.
+     * @param key the conditional request key,
+     *            {@code null} if conditional requests are disabled.
+     * @return the previous response or {@code null}.
+     * */
+    private ConditionalRequestCache.Validated applyValidators(
+            final HttpURLConnection connection,
+            final String key) {
+        if (key == null) {
+            return null;
+        }
+        ConditionalRequestCache.Validated validated =
+                conditionalCache.lookup(key);
+        ConditionalRequestCache.applyValidators(connection, validated);
+        return validated;
+    }
+
+    /** Calculates the conditional request key of a read request.
+     * Requests that change data on the server, like votes and clicks,
+     * are never sent conditionally, a remembered answer would hide
+     * that the action did not happen.
+     * @param method the HTTP method.
+     * @param path the path on the web server.
+     * @param requestParams the request parameters, may be {@code null}.
+     * @param resultType the type of the parsed result.
+     * @return the key or {@code null} if conditional requests are disabled
+     * or not applicable to the request.
+     * @see BalancingRestDelegate#isIdempotent(String)
+     * */
+    private String conditionalKey(final String method,
+                                  final String path,
+                                  final Map<String, String> requestParams,
+                                  final Object resultType) {
+        if (conditionalCache == null
+                || !BalancingRestDelegate.isIdempotent(path)) {
+            return null;
+        }
+        return ConditionalRequestCache.keyOf(method, path,
+                requestParams, resultType);
+    }
+
+    /** Parses the response of a connection. The connection is
+     * released to the keep-alive cache if the response was consumed
+     * completely and disconnected otherwise.
+     * @param connection the connection to read the response from.
+     * @param parser the function to parse the response body with.
+     * @param key the conditional request key, {@code null} if the
+     *            response shall not be remembered. The body is only
+     *            kept if the response carries validators.
+     * @param validated the previous response the validators were
+     *                  sent for, may be {@code null}.
+     * @param <T> the expected return type.
+     * @return the parsed result.
+     * @throws HttpException if the server sent a non-OK response.
+     * */
+    private <T> T readResponse(
+            final HttpURLConnection connection,
+            final ResponseParser<T> parser,
+            final String key,
+            final ConditionalRequestCache.Validated validated)
+            throws IOException {
+        boolean reusable = false;
+        try {
+            if (validated != null && connection.getResponseCode()
+                    == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                log.debug("HTTP response status=304, reusing body");
+                try (InputStream inputStream = connection.getInputStream()) {
+                    drain(inputStream);
+                }
+                reusable = true;
+                try (Reader reader = ConditionalRequestCache.readerOf(
+                        validated)) {
+                    return parser.parse(reader);
+                }
+            }
+            try {
+                checkResponseStatus(connection);
+            } catch (HttpException e) {
+                try (InputStream errorStream = connection.getErrorStream()) {
+                    drain(errorStream);
+                }
+                reusable = true;
+                throw e;
+            }
+            Charset charset = guessCharsetFor(connection.getContentType());
+            InputStream inputStream = connection.getInputStream();
+            InputStream body = decoded(connection, inputStream);
+            CapturingInputStream capture = key != null
+                    && ConditionalRequestCache.hasValidators(connection)
+                    ? new CapturingInputStream(body) : null;
+            try (Reader reader = new InputStreamReader(
+                    capture != null ? capture : body, charset)) {
+                T result = parser.parse(reader);
+                drain(inputStream);
+                reusable = true;
+                if (capture != null) {
+                    conditionalCache.remember(key, connection,
+                            capture.toByteArray(), charset);
+                }
+                return result;
+            }
+        } finally {
+            if (!reusable) {
+                connection.disconnect();
+            }
         }
     }
 
@@ -184,13 +413,15 @@ class RestDelegateImpl implements RestDelegate {
     public <T> T get(final String path, final Class<T> resultClass) {
             return retryLoop(() -> {
                 try {
+                    String key = conditionalKey("GET", path,
+                            null, resultClass);
                     HttpURLConnection connection = newClient(path);
                     configure(connection);
-                    try (Reader reader = readerFor(connection)) {
-                        return gson.fromJson(reader, resultClass);
-                    } finally {
-                        connection.disconnect();
-                    }
+                    ConditionalRequestCache.Validated validated =
+                            applyValidators(connection, key);
+                    return readResponse(connection,
+                            reader -> gson.fromJson(reader, resultClass),
+                            key, validated);
                 } catch (IOException e) {
                     throw new RadioBrowserException(e);
                 }
@@ -199,13 +430,13 @@ class RestDelegateImpl implements RestDelegate {
 
     /** Retries on HTTP errors. */
     private <T> T retryLoop(final Supplier<T> supplier) {
-        int retries = connectionParams.getRetries();
+        int retriesLeft = retries;
         long retryInterval = connectionParams.getRetryInterval();
         while (true) {
             try {
                 return supplier.get();
             } catch (HttpException e) {
-                if (retries-- <= 0) {
+                if (retriesLeft-- <= 0) {
                     throw e;
                 }
                 try {
@@ -232,17 +463,46 @@ class RestDelegateImpl implements RestDelegate {
     public List<Station> postWithListOfStation(final String path,
                final Map<String,
                String> requestParams) {
-        return post(path,
-                requestParams,
-                new TypeToken<List<Station>>() { });    }
+        List<Station> result = new ArrayList<>();
+        postWithStations(path, requestParams, result::add);
+        return result;
+    }
+
+    @Override
+    public void postWithStations(final String path,
+                                 final Map<String, String> requestParams,
+                                 final Consumer<Station> consumer) {
+        postConditionally(path, requestParams, reader -> {
+            readStations(reader, consumer);
+            return null;
+        }, Station.class);
+    }
+
+    /** Reads a JSON array of stations.
+     * @param reader the reader of the response body.
+     * @param consumer the consumer for each station read.
+     * @throws IOException if reading fails.
+     * */
+    private void readStations(final Reader reader,
+                              final Consumer<Station> consumer)
+            throws IOException {
+        JsonReader jsonReader = gson.newJsonReader(reader);
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            Station station = gson.fromJson(jsonReader, Station.class);
+            consumer.accept(station);
+        }
+        jsonReader.endArray();
+    }
 
     @Override
     public List<Map<String, String>> postWithListOfMapOfString(
             final String path,
             final Map<String, String> requestParams) {
-        return post(path,
-                requestParams,
-                new TypeToken<List<Map<String, String>>>() { });
+        TypeToken<List<Map<String, String>>> type =
+                new TypeToken<List<Map<String, String>>>() { };
+        return postConditionally(path, requestParams,
+                reader -> gson.fromJson(reader, type), type);
     }
 
     /** Get the request body as "application/json". */
@@ -285,10 +545,53 @@ class RestDelegateImpl implements RestDelegate {
     private <T> T post(final String path,
                        final Map<String, String> requestParams,
                        final TypeToken<T> resultClass) {
+        return post(path, requestParams,
+                reader -> gson.fromJson(reader, resultClass), null);
+    }
+
+    /** Sends a POST request for reading to the remote server.
+     * If conditional requests are enabled, the validators of a previous
+     * response for the same request are sent along.
+     * @param path the path on the web server.
+     * @param requestParams the request parameters to send as the POST body in
+     *                       "application/x-www-form-urlencoded" encoding.
+     * @param parser the parser for the response body.
+     * @param resultType the type of the parsed result.
+     * @param <T> the expected return type.
+     * @return the parsed response.
+     * @throws RadioBrowserException if the sever sent a non-OK response.
+     * */
+    private <T> T postConditionally(final String path,
+                                    final Map<String, String> requestParams,
+                                    final ResponseParser<T> parser,
+                                    final Object resultType) {
+        return post(path, requestParams, parser,
+                conditionalKey("POST", path, requestParams, resultType));
+    }
+
+    /** Sends a POST request to the remote server. The
+     * body gets transferred as
+     *  "application/x-www-form-urlencoded" encoded data.
+     * @param path the path on the web server.
+     * @param requestParams the request parameters to send as the POST body in
+     *                       "application/x-www-form-urlencoded" encoding.
+     * @param parser the parser for the response body.
+     * @param key the conditional request key, {@code null} for
+     *            an unconditional request.
+     * @param <T> the expected return type.
+     * @return the parsed response.
+     * @throws RadioBrowserException if the sever sent a non-OK response.
+     * */
+    private <T> T post(final String path,
+                       final Map<String, String> requestParams,
+                       final ResponseParser<T> parser,
+                       final String key) {
         return retryLoop(() -> {
             try {
                 HttpURLConnection connection = newClient(path);
                 configure(connection);
+                ConditionalRequestCache.Validated validated =
+                        applyValidators(connection, key);
                 connection.setRequestMethod("POST");
                 connection.setDoOutput(true);
                 if (false) {
@@ -296,11 +599,7 @@ class RestDelegateImpl implements RestDelegate {
                 } else {
                     sendXWWWFormUrlencodedRequest(connection, requestParams);
                 }
-                try (Reader reader = readerFor(connection)) {
-                    return gson.fromJson(reader, resultClass);
-                } finally {
-                    connection.disconnect();
-                }
+                return readResponse(connection, parser, key, validated);
             } catch (IOException e) {
                 throw new RadioBrowserException(e);
             }
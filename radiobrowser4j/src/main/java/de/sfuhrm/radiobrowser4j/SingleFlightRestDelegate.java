@@ -0,0 +1,164 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/** RestDelegate that coalesces identical requests in flight.
+ * A request is identical to another one if the method, the path, the
+ * request parameters and the result type are equal.
+ * The first request goes to the network, identical requests arriving
+ * while it runs wait for it and share its result or its exception.
+ * Lists are copied for each caller, the elements are shared.
+ * Requests changing data on the server and streaming requests with a
+ * consumer are passed on unchanged.
+ * @see BalancingRestDelegate#isIdempotent(String)
+ * @author Stephan Fuhrmann
+ * */
+@Slf4j
+class SingleFlightRestDelegate implements RestDelegate {
+
+    /** The delegate doing the requests. */
+    private final RestDelegate network;
+
+    /** The results of the requests in flight by request. */
+    private final Map<List<Object>, CompletableFuture<Object>> inFlight =
+            new ConcurrentHashMap<>();
+
+    /** Creates a new instance.
+     * @param myNetwork the delegate doing the requests.
+     * */
+    SingleFlightRestDelegate(final RestDelegate myNetwork) {
+        this.network = myNetwork;
+    }
+
+    @Override
+    public <T> T get(final String path, final Class<T> resultClass) {
+        return resultClass.cast(coalesce(
+                key("get", path, null, resultClass),
+                () -> network.get(path, resultClass)));
+    }
+
+    @Override
+    public List<Station> postWithListOfStation(
+            final String path,
+            final Map<String, String> requestParams) {
+        return copy(coalesce(
+                key("postWithListOfStation", path, requestParams, null),
+                () -> network.postWithListOfStation(path, requestParams)));
+    }
+
+    @Override
+    public void postWithStations(final String path,
+                                 final Map<String, String> requestParams,
+                                 final Consumer<Station> consumer) {
+        // each caller consumes its own response while it is read
+        network.postWithStations(path, requestParams, consumer);
+    }
+
+    @Override
+    public List<Map<String, String>> postWithListOfMapOfString(
+            final String path,
+            final Map<String, String> requestParams) {
+        return copy(coalesce(
+                key("postWithListOfMapOfString", path, requestParams, null),
+                () -> network.postWithListOfMapOfString(path, requestParams)));
+    }
+
+    @Override
+    public <T> T post(final String path,
+                      final Map<String, String> requestParams,
+                      final Class<T> resultClass) {
+        return resultClass.cast(coalesce(
+                key("post", path, requestParams, resultClass),
+                () -> network.post(path, requestParams, resultClass)));
+    }
+
+    /** Copies a shared list result for one caller.
+     * @param list the shared list, may be {@code null}.
+     * @param <T> the element type.
+     * @return a copy of the list or {@code null}.
+     * */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> copy(final Object list) {
+        return list != null ? new ArrayList<>((List<T>) list) : null;
+    }
+
+    /** Creates the key identifying a request.
+     * @param method the name of the delegate method.
+     * @param path the path on the web server.
+     * @param requestParams the request parameters, may be {@code null}.
+     * @param resultClass the result type, may be {@code null}.
+     * @return the key with the parameters in a canonical order.
+     * */
+    private static List<Object> key(final String method,
+                                    final String path,
+                                    final Map<String, String> requestParams,
+                                    final Class<?> resultClass) {
+        return Arrays.asList(method, path,
+                requestParams != null
+                        ? new TreeMap<>(requestParams) : new TreeMap<>(),
+                resultClass);
+    }
+
+    /** Does a request unless an identical one is in flight.
+     * Requests that are not idempotent are always done.
+     * @param key the key identifying the request.
+     * @param request does the request.
+     * @return the result of the request.
+     * */
+    private Object coalesce(final List<Object> key,
+                            final Supplier<?> request) {
+        // each vote, click or added station must reach the server
+        if (!BalancingRestDelegate.isIdempotent((String) key.get(1))) {
+            return request.get();
+        }
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, result);
+        if (running != null) {
+            log.debug("Joining request in flight {}", key);
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RadioBrowserException(e.getCause());
+            }
+        }
+        try {
+            Object value = request.get();
+            result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, result);
+        }
+    }
+}
@@ -19,6 +19,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -162,6 +163,49 @@ public final class Station extends Parameter {
         languageList = Arrays.asList(commaLanguages.split(","));
     }
 
+    /** Converts an optional date to an instant.
+     * @param date the date to convert, may be {@code null}.
+     * @return the instant or {@code null} if the date was {@code null}.
+     * */
+    private static Instant toInstant(final Date date) {
+        return date == null ? null : date.toInstant();
+    }
+
+    /** Immutable variant of {@link #getLastchecktime()}.
+     * @return the last check time or {@code null} if unknown.
+     * */
+    public Instant getLastchecktimeInstant() {
+        return toInstant(lastchecktime);
+    }
+
+    /** Immutable variant of {@link #getLastcheckoktime()}.
+     * @return the last successful check time or {@code null} if unknown.
+     * */
+    public Instant getLastcheckoktimeInstant() {
+        return toInstant(lastcheckoktime);
+    }
+
+    /** Immutable variant of {@link #getLastlocalchecktime()}.
+     * @return the last local check time or {@code null} if unknown.
+     * */
+    public Instant getLastlocalchecktimeInstant() {
+        return toInstant(lastlocalchecktime);
+    }
+
+    /** Immutable variant of {@link #getClicktimestamp()}.
+     * @return the last click time or {@code null} if unknown.
+     * */
+    public Instant getClicktimestampInstant() {
+        return toInstant(clicktimestamp);
+    }
+
+    /** Immutable variant of {@link #getLastchangetime()}.
+     * @return the last change time or {@code null} if unknown.
+     * */
+    public Instant getLastchangetimeInstant() {
+        return toInstant(lastchangetime);
+    }
+
     @Override
     public String toString() {
         return "Station{" + "name=" + name + ", url=" + url + '}';
@@ -0,0 +1,220 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/** Combines concurrent single station lookups into batched requests.
+ * The first lookup of a batch opens a time window. Lookups arriving
+ * within the window join the batch, which is requested when the window
+ * ends or when the batch is full, whatever comes first. Each lookup
+ * gets its own result, so no caller waits longer than the window plus
+ * one request. Closing the batcher fails the lookups of the collecting
+ * batch, so that no caller waits for a window that never ends.
+ * @author Stephan Fuhrmann
+ * */
+@Slf4j
+final class StationBatcher {
+
+    /** The function requesting the stations of a batch of UUIDs. */
+    private final Function<List<UUID>, List<Station>> fetcher;
+
+    /** The time window of a batch in milliseconds. */
+    private final long windowMillis;
+
+    /** The maximum number of UUIDs of a batch. */
+    private final int maxBatchSize;
+
+    /** The timer ending the windows. */
+    private final ScheduledExecutorService timer;
+
+    /** The executor requesting the batches at the end of a window. */
+    private final Executor executor;
+
+    /** The results of the batch collecting lookups by UUID, or
+     * {@code null} if there is none. Guarded by {@code this}. */
+    private Map<UUID, CompletableFuture<Optional<Station>>> current;
+
+    /** Whether {@link #close()} was called. Guarded by {@code this}. */
+    private boolean closed;
+
+    /** Creates a new instance.
+     * @param myFetcher the function requesting the stations of
+     *                  a batch of UUIDs.
+     * @param myWindowMillis the time window of a batch in milliseconds.
+     * @param myMaxBatchSize the maximum number of UUIDs of a batch.
+     * @param myTimer the timer ending the windows.
+     * @param myExecutor the executor requesting the batches at the
+     *                   end of a window.
+     * */
+    StationBatcher(final Function<List<UUID>, List<Station>> myFetcher,
+                   final long myWindowMillis,
+                   final int myMaxBatchSize,
+                   final ScheduledExecutorService myTimer,
+                   final Executor myExecutor) {
+        this.fetcher = myFetcher;
+        this.windowMillis = myWindowMillis;
+        this.maxBatchSize = myMaxBatchSize;
+        this.timer = myTimer;
+        this.executor = myExecutor;
+    }
+
+    /** Looks up a station. Lookups of a UUID already in the collecting
+     * batch share its result.
+     * @param uuid the UUID of the station to retrieve.
+     * @return the future of an optional containing either the station
+     * or nothing.
+     * */
+    CompletableFuture<Optional<Station>> load(final UUID uuid) {
+        CompletableFuture<Optional<Station>> result;
+        Map<UUID, CompletableFuture<Optional<Station>>> full = null;
+        synchronized (this) {
+            if (closed) {
+                result = new CompletableFuture<>();
+                result.completeExceptionally(
+                        new RadioBrowserException("Batcher is closed"));
+                return result;
+            }
+            if (current == null) {
+                Map<UUID, CompletableFuture<Optional<Station>>> batch =
+                        new LinkedHashMap<>();
+                try {
+                    timer.schedule(() -> endWindow(batch),
+                            windowMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    result = new CompletableFuture<>();
+                    result.completeExceptionally(
+                            new RadioBrowserException(e));
+                    return result;
+                }
+                current = batch;
+            }
+            result = current.get(uuid);
+            if (result == null) {
+                result = new CompletableFuture<>();
+                current.put(uuid, result);
+            }
+            if (current.size() >= maxBatchSize) {
+                full = current;
+                current = null;
+            }
+        }
+        if (full != null) {
+            // the lookup filling the batch requests it right away
+            request(full);
+        }
+        return result;
+    }
+
+    /** Ends the window of a batch by handing it to the executor.
+     * Runs on the timer, where an exception would get lost, so a
+     * rejected batch is failed instead.
+     * @param batch the batch whose window ended.
+     * */
+    private void endWindow(
+            final Map<UUID, CompletableFuture<Optional<Station>>> batch) {
+        try {
+            executor.execute(() -> flush(batch));
+        } catch (RuntimeException e) {
+            log.warn("Could not request batch", e);
+            fail(batch, e instanceof RadioBrowserException
+                    ? e : new RadioBrowserException(e));
+        }
+    }
+
+    /** Fails the lookups of a batch unless it was requested before.
+     * @param batch the batch to fail.
+     * @param failure the failure to complete the lookups with.
+     * */
+    private void fail(
+            final Map<UUID, CompletableFuture<Optional<Station>>> batch,
+            final RuntimeException failure) {
+        synchronized (this) {
+            if (current != batch) {
+                return;
+            }
+            current = null;
+        }
+        batch.values().forEach(
+                result -> result.completeExceptionally(failure));
+    }
+
+    /** Closes the batcher. The lookups of the collecting batch and
+     * all later lookups fail with a {@link RadioBrowserException}.
+     * */
+    void close() {
+        Map<UUID, CompletableFuture<Optional<Station>>> batch;
+        synchronized (this) {
+            closed = true;
+            batch = current;
+        }
+        if (batch != null) {
+            fail(batch, new RadioBrowserException("Batcher is closed"));
+        }
+    }
+
+    /** Requests a batch at the end of its window unless it was
+     * requested before because it was full.
+     * @param batch the batch whose window ended.
+     * */
+    private void flush(
+            final Map<UUID, CompletableFuture<Optional<Station>>> batch) {
+        synchronized (this) {
+            if (current != batch) {
+                return;
+            }
+            current = null;
+        }
+        request(batch);
+    }
+
+    /** Requests a batch and completes the results of its lookups.
+     * @param batch the results of the lookups by UUID.
+     * */
+    private void request(
+            final Map<UUID, CompletableFuture<Optional<Station>>> batch) {
+        log.debug("Looking up a batch of {} stations", batch.size());
+        try {
+            Map<UUID, Station> found = new HashMap<>(batch.size() * 2);
+            for (Station station : fetcher.apply(
+                    new ArrayList<>(batch.keySet()))) {
+                found.put(station.getStationUUID(), station);
+            }
+            batch.forEach((uuid, result) ->
+                    result.complete(Optional.ofNullable(found.get(uuid))));
+        } catch (RuntimeException e) {
+            batch.values().forEach(result -> result.completeExceptionally(e));
+        } catch (Error e) {
+            // the callers must not wait forever
+            batch.values().forEach(result -> result.completeExceptionally(e));
+            throw e;
+        }
+    }
+}
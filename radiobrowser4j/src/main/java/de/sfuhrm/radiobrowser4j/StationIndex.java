@@ -0,0 +1,435 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Bitmap index over a local collection of stations.
+ * Every station gets an ordinal, its position in name order. For each
+ * value of the facets country code, codec, language and tag there is a
+ * bitmap of the stations carrying the value, and there are bitmaps for
+ * HTTPS, geo information, extended information and working stations.
+ * Bitrate ranges are answered with a binary search over the stations
+ * ordered by bitrate.
+ *
+ * <p>A query intersects and unites the bitmaps of its parameters and
+ * evaluates the remaining conditions, like the name, only on the
+ * resulting candidates. The results are the same as with the server.
+ * The index is immutable and can be used by many threads concurrently.
+ * @see AdvancedSearch
+ * @author Stephan Fuhrmann
+ * */
+public final class StationIndex {
+
+    /** Bitmap without any station. */
+    private static final BitSet EMPTY = new BitSet();
+
+    /** The indexed stations in name order. */
+    private final List<Station> stations;
+
+    /** Stations per case folded country code. */
+    private final Map<String, BitSet> countryCodes = new HashMap<>();
+
+    /** Stations per case folded codec. */
+    private final Map<String, BitSet> codecs = new HashMap<>();
+
+    /** Stations per case folded language. */
+    private final Map<String, BitSet> languages = new HashMap<>();
+
+    /** Stations per case folded tag. */
+    private final Map<String, BitSet> tags = new HashMap<>();
+
+    /** Stations streaming with HTTPS. */
+    private final BitSet https = new BitSet();
+
+    /** Stations with geo coordinates. */
+    private final BitSet geoInfo = new BitSet();
+
+    /** Stations with extended information. */
+    private final BitSet extendedInfo = new BitSet();
+
+    /** Stations that passed their last check. */
+    private final BitSet working = new BitSet();
+
+    /** Ordinals of the stations with a bitrate, ordered by bitrate. */
+    private final int[] byBitrate;
+
+    /** The bitrates of {@link #byBitrate} in the same order. */
+    private final int[] bitrates;
+
+    /** Creates a new index.
+     * @param myStations the stations in name order.
+     * */
+    private StationIndex(final List<Station> myStations) {
+        this.stations = Collections.unmodifiableList(myStations);
+        long[] keys = new long[myStations.size()];
+        int withBitrate = 0;
+        for (int i = 0; i < myStations.size(); i++) {
+            Station station = myStations.get(i);
+            add(countryCodes, station.getCountryCode(), i);
+            add(codecs, station.getCodec(), i);
+            if (station.getLanguageList() != null) {
+                for (String language : station.getLanguageList()) {
+                    add(languages, language, i);
+                }
+            }
+            if (station.getTagList() != null) {
+                for (String tag : station.getTagList()) {
+                    add(tags, tag, i);
+                }
+            }
+            https.set(i, StationQuery.isHttps(station));
+            geoInfo.set(i, StationQuery.hasGeoInfo(station));
+            extendedInfo.set(i,
+                    Boolean.TRUE.equals(station.getHasExtendedInfo()));
+            working.set(i, !StationQuery.isBroken(station));
+            if (station.getBitrate() != null) {
+                keys[withBitrate++] =
+                        ((long) station.getBitrate() << Integer.SIZE) | i;
+            }
+        }
+        Arrays.sort(keys, 0, withBitrate);
+        byBitrate = new int[withBitrate];
+        bitrates = new int[withBitrate];
+        for (int i = 0; i < withBitrate; i++) {
+            byBitrate[i] = (int) keys[i];
+            bitrates[i] = (int) (keys[i] >> Integer.SIZE);
+        }
+    }
+
+    /** Builds an index over stations.
+     * @param stations the stations to index.
+     * @return the index.
+     * */
+    public static StationIndex of(@NonNull final Collection<Station> stations) {
+        List<Station> list = new ArrayList<>(stations);
+        list.sort(StationQuery.BY_NAME);
+        return new StationIndex(list);
+    }
+
+    /** Adds a station to the bitmap of a facet value.
+     * @param facet the facet bitmaps.
+     * @param value the value of the station, may be {@code null}.
+     * @param ordinal the ordinal of the station.
+     * */
+    private static void add(final Map<String, BitSet> facet,
+                            final String value,
+                            final int ordinal) {
+        if (value == null) {
+            return;
+        }
+        facet.computeIfAbsent(StationQuery.normalize(value),
+                k -> new BitSet()).set(ordinal);
+    }
+
+    /** Gets the number of indexed stations.
+     * @return the number of stations.
+     * */
+    public int size() {
+        return stations.size();
+    }
+
+    /** Gets the indexed stations.
+     * @return an unmodifiable list of the stations in name order.
+     * */
+    List<Station> stations() {
+        return stations;
+    }
+
+    /** Get the stations matching a certain search criteria.
+     * @param searchMode the field to match.
+     * @param searchTerm the term to search for.
+     * @param listParam the optional listing parameters.
+     * @return the list of matching stations.
+     */
+    public List<Station> search(@NonNull final SearchMode searchMode,
+                                @NonNull final String searchTerm,
+                                final Parameter...listParam) {
+        return query(searchMode, searchTerm,
+                toRequestParams(null, listParam));
+    }
+
+    /** Get the stations matching a certain search criteria.
+     * @param advancedSearch the advanced search query object.
+     * @param listParam the optional listing parameters.
+     * @return the list of matching stations.
+     */
+    public List<Station> search(@NonNull final AdvancedSearch advancedSearch,
+                                final Parameter...listParam) {
+        return query(null, null, toRequestParams(advancedSearch, listParam));
+    }
+
+    /** Queries the index.
+     * @param searchMode the search mode or {@code null} for none.
+     * @param searchTerm the term of the search mode.
+     * @param requestParams the request parameters as they would
+     *                      be sent to the server.
+     * @return the page of matching stations.
+     * @throws IllegalArgumentException if a parameter is not supported.
+     * */
+    List<Station> query(final SearchMode searchMode,
+                        final String searchTerm,
+                        final Map<String, String> requestParams) {
+        StationQuery query = StationQuery.of(requestParams);
+        Candidates candidates = new Candidates();
+        if (searchMode != null) {
+            query = query.and(
+                    StationQuery.searchModeFilter(searchMode, searchTerm));
+            narrow(candidates, searchMode, searchTerm);
+        }
+        narrow(candidates, requestParams);
+        return query.apply(stations, candidates.bits);
+    }
+
+    /** Collects query parameters into a request parameter map.
+     * @param advancedSearch the advanced search or {@code null}.
+     * @param listParam the listing parameters.
+     * @return the request parameters.
+     * */
+    static Map<String, String> toRequestParams(
+            final AdvancedSearch advancedSearch,
+            final Parameter...listParam) {
+        Map<String, String> requestParams = new HashMap<>();
+        if (advancedSearch != null) {
+            advancedSearch.apply(requestParams);
+        }
+        for (Parameter parameter : listParam) {
+            parameter.apply(requestParams);
+        }
+        return requestParams;
+    }
+
+    /** The candidate stations of a query. */
+    private final class Candidates {
+        /** The candidate ordinals, {@code null} for all stations. */
+        private BitSet bits;
+
+        /** Keeps only the candidates in the given bitmap.
+         * @param other the bitmap to intersect with. Is not modified.
+         * */
+        void and(final BitSet other) {
+            if (bits == null) {
+                bits = (BitSet) other.clone();
+            } else {
+                bits.and(other);
+            }
+        }
+
+        /** Removes the candidates in the given bitmap.
+         * @param other the bitmap to remove. Is not modified.
+         * */
+        void andNot(final BitSet other) {
+            if (bits == null) {
+                bits = new BitSet(stations.size());
+                bits.set(0, stations.size());
+            }
+            bits.andNot(other);
+        }
+
+        /** Keeps only the candidates in the given bitmap or removes
+         * them.
+         * @param other the bitmap to intersect with or remove.
+         * @param keep {@code true} to intersect, {@code false} to remove.
+         * */
+        void filter(final BitSet other, final boolean keep) {
+            if (keep) {
+                and(other);
+            } else {
+                andNot(other);
+            }
+        }
+    }
+
+    /** Narrows the candidates by a search mode.
+     * @param candidates the candidates to narrow.
+     * @param searchMode the search mode.
+     * @param searchTerm the search term.
+     * */
+    private void narrow(final Candidates candidates,
+                        final SearchMode searchMode,
+                        final String searchTerm) {
+        switch (searchMode) {
+            case BYCODEC:
+                candidates.and(containing(codecs, searchTerm));
+                break;
+            case BYCODECEXACT:
+                candidates.and(exact(codecs, searchTerm));
+                break;
+            case BYCOUNTRYCODEEXACT:
+                candidates.and(exact(countryCodes, searchTerm));
+                break;
+            case BYLANGUAGE:
+                candidates.and(containing(languages, searchTerm));
+                break;
+            case BYLANGUAGEEXACT:
+                candidates.and(exact(languages, searchTerm));
+                break;
+            case BYTAG:
+                candidates.and(containing(tags, searchTerm));
+                break;
+            case BYTAGEXACT:
+                candidates.and(exact(tags, searchTerm));
+                break;
+            default:
+                // evaluated on the candidates
+                break;
+        }
+    }
+
+    /** Narrows the candidates by request parameters.
+     * @param candidates the candidates to narrow.
+     * @param requestParams the request parameters.
+     * */
+    private void narrow(final Candidates candidates,
+                        final Map<String, String> requestParams) {
+        int bitrateMin = Integer.MIN_VALUE;
+        int bitrateMax = Integer.MAX_VALUE;
+        boolean bitrate = false;
+        for (Map.Entry<String, String> entry : requestParams.entrySet()) {
+            String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "countrycode":
+                    candidates.and(exact(countryCodes, value));
+                    break;
+                case "codec":
+                    candidates.and(exact(codecs, value));
+                    break;
+                case "language":
+                    candidates.and(isTrue(requestParams, "languageExact")
+                            ? exact(languages, value)
+                            : containing(languages, value));
+                    break;
+                case "tag":
+                    candidates.and(isTrue(requestParams, "tagExact")
+                            ? exact(tags, value)
+                            : containing(tags, value));
+                    break;
+                case "tagList":
+                    for (String tag : value.split(",")) {
+                        candidates.and(exact(tags, tag.trim()));
+                    }
+                    break;
+                case "bitrateMin":
+                    bitrateMin = Integer.parseInt(value);
+                    bitrate = true;
+                    break;
+                case "bitrateMax":
+                    bitrateMax = Integer.parseInt(value);
+                    bitrate = true;
+                    break;
+                case "is_https":
+                    candidates.filter(https, Boolean.parseBoolean(value));
+                    break;
+                case "has_geo_info":
+                    candidates.filter(geoInfo, Boolean.parseBoolean(value));
+                    break;
+                case "has_extended_info":
+                    candidates.filter(extendedInfo,
+                            Boolean.parseBoolean(value));
+                    break;
+                case "hidebroken":
+                    if (Boolean.parseBoolean(value)) {
+                        candidates.and(working);
+                    }
+                    break;
+                default:
+                    // evaluated on the candidates
+                    break;
+            }
+        }
+        if (bitrate) {
+            candidates.and(bitrateRange(bitrateMin, bitrateMax));
+        }
+    }
+
+    /** Gets whether a boolean parameter is set to true.
+     * @param requestParams the request parameters.
+     * @param key the parameter name.
+     * @return {@code true} if the parameter is {@code "true"}.
+     * */
+    private static boolean isTrue(final Map<String, String> requestParams,
+                                  final String key) {
+        return Boolean.parseBoolean(requestParams.get(key));
+    }
+
+    /** Gets the stations with a facet value.
+     * @param facet the facet bitmaps.
+     * @param value the value to look up ignoring the case.
+     * @return the bitmap of the stations. Must not be modified.
+     * */
+    private static BitSet exact(final Map<String, BitSet> facet,
+                                final String value) {
+        return facet.getOrDefault(StationQuery.normalize(value), EMPTY);
+    }
+
+    /** Gets the stations with a facet value containing a term.
+     * @param facet the facet bitmaps.
+     * @param term the term to look for ignoring the case.
+     * @return the bitmap of the stations.
+     * */
+    private static BitSet containing(final Map<String, BitSet> facet,
+                                     final String term) {
+        BitSet result = new BitSet();
+        for (Map.Entry<String, BitSet> entry : facet.entrySet()) {
+            if (StationQuery.matches(entry.getKey(), term, false)) {
+                result.or(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /** Gets the stations with a bitrate in a range.
+     * @param min the minimum bitrate, inclusive.
+     * @param max the maximum bitrate, inclusive.
+     * @return the bitmap of the stations.
+     * */
+    private BitSet bitrateRange(final int min, final int max) {
+        BitSet result = new BitSet(stations.size());
+        for (int i = lowerBound(min); i < bitrates.length
+                && bitrates[i] <= max; i++) {
+            result.set(byBitrate[i]);
+        }
+        return result;
+    }
+
+    /** Finds the first position with a bitrate not below a value.
+     * @param value the bitrate to look for.
+     * @return the first position in {@link #bitrates} with a
+     * bitrate {@code >= value}.
+     * */
+    private int lowerBound(final int value) {
+        int low = 0;
+        int high = bitrates.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bitrates[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,369 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/** In-memory mirror of the complete station catalog.
+ * The catalog is downloaded once with {@link #load()} and then
+ * queried locally. The search modes, the advanced search and the
+ * list parameters are evaluated with the semantics of the server.
+ * With {@link #asRadioBrowser()} the mirror can stand in for the
+ * network in the usual API facade.
+ *
+ * <p>The mirror is thread safe. A reload replaces the catalog atomically,
+ * running queries see either the old or the new catalog.
+ * The returned stations are shared with the mirror and must not be
+ * modified.
+ * @author Stephan Fuhrmann
+ * */
+@Slf4j
+public class StationMirror {
+
+    /** An immutable state of the catalog. */
+    private static final class Snapshot {
+        /** The bitmap index over all stations. */
+        private final StationIndex index;
+
+        /** All stations in name order. */
+        private final List<Station> stations;
+
+        /** All stations by their UUID. */
+        private final Map<UUID, Station> byUUID;
+
+        /** The name index, built on first use. */
+        private TrigramIndex nameIndex;
+
+        /** The geo index, built on first use. */
+        private GeoIndex geoIndex;
+
+        /** Creates a new instance.
+         * @param myStations the stations of the catalog.
+         * */
+        Snapshot(final Collection<Station> myStations) {
+            index = StationIndex.of(myStations);
+            stations = index.stations();
+            byUUID = new HashMap<>(stations.size() * 2);
+            for (Station station : stations) {
+                byUUID.put(station.getStationUUID(), station);
+            }
+        }
+
+        /** Gets the name index and builds it if needed.
+         * @return the name index.
+         * */
+        synchronized TrigramIndex nameIndex() {
+            if (nameIndex == null) {
+                nameIndex = TrigramIndex.of(stations);
+            }
+            return nameIndex;
+        }
+
+        /** Gets the geo index and builds it if needed.
+         * @return the geo index.
+         * */
+        synchronized GeoIndex geoIndex() {
+            if (geoIndex == null) {
+                geoIndex = GeoIndex.of(stations);
+            }
+            return geoIndex;
+        }
+    }
+
+    /** The largest expected catalog size to allocate in advance. */
+    private static final long MAX_PRESIZE = 1_000_000;
+
+    /** Room for stations added since the statistics were computed. */
+    private static final int PRESIZE_SLACK = 256;
+
+    /** The API client to download the catalog with. */
+    private final RadioBrowser source;
+
+    /** The current catalog or {@code null} if not loaded yet. */
+    private volatile Snapshot snapshot;
+
+    /** Creates a new, empty mirror.
+     * @param mySource the API client to download the catalog with.
+     * @see #load()
+     * */
+    public StationMirror(@NonNull final RadioBrowser mySource) {
+        this.source = mySource;
+    }
+
+    /** Downloads the complete catalog and replaces the mirrored one.
+     * @throws RadioBrowserException if the download failed. The
+     * previously mirrored catalog is kept in this case.
+     * */
+    public void load() {
+        List<Station> stations;
+        try (Stream<Station> stream = source.listStations()) {
+            Spliterator<Station> spliterator = stream.spliterator();
+            long expected = spliterator.estimateSize();
+            // presize with the station count of the server statistics
+            stations = new ArrayList<>(expected < MAX_PRESIZE
+                    ? (int) expected + PRESIZE_SLACK : 0);
+            spliterator.forEachRemaining(stations::add);
+        }
+        load(stations);
+    }
+
+    /** Replaces the mirrored catalog.
+     * @param stations the stations of the new catalog.
+     * */
+    synchronized void load(final Collection<Station> stations) {
+        snapshot = new Snapshot(stations);
+        log.debug("Mirrored {} stations", stations.size());
+    }
+
+    /** Inserts or replaces stations in the mirrored catalog.
+     * Stations are identified by their {@link Station#getStationUUID()}.
+     * The catalog is immutable, so a new one is built with all its
+     * indexes. This takes time linear to the size of the catalog,
+     * however few stations changed.
+     * @param stations the new or changed stations.
+     * @throws IllegalStateException if the catalog was not loaded.
+     * */
+    synchronized void upsert(final Collection<Station> stations) {
+        Map<UUID, Station> merged =
+                new HashMap<>(loadedSnapshot().byUUID);
+        for (Station station : stations) {
+            merged.put(station.getStationUUID(), station);
+        }
+        snapshot = new Snapshot(merged.values());
+    }
+
+    /** Gets the API client the catalog is downloaded with.
+     * @return the API client of this mirror.
+     * */
+    RadioBrowser getSource() {
+        return source;
+    }
+
+    /** Whether the catalog was loaded.
+     * @return {@code true} if the catalog can be queried.
+     * */
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /** Gets the number of mirrored stations.
+     * @return the number of stations, zero if not loaded.
+     * */
+    public int size() {
+        Snapshot current = snapshot;
+        return current != null ? current.stations.size() : 0;
+    }
+
+    /** Gets the mirrored stations.
+     * @return an unmodifiable list of the stations in name order.
+     * @throws IllegalStateException if the catalog was not loaded.
+     * */
+    List<Station> stations() {
+        return loadedSnapshot().stations;
+    }
+
+    /** Gets the current catalog.
+     * @return the current catalog.
+     * @throws IllegalStateException if the catalog was not loaded.
+     * */
+    private Snapshot loadedSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("Station catalog not loaded");
+        }
+        return current;
+    }
+
+    /** Get a station referenced by its UUID.
+     * @param uuid the UUID of the station to retrieve.
+     * @return an optional containing either the station or nothing.
+     * @throws IllegalStateException if the catalog was not loaded.
+     */
+    public Optional<Station> getStationByUUID(@NonNull final UUID uuid) {
+        return Optional.ofNullable(loadedSnapshot().byUUID.get(uuid));
+    }
+
+    /** Get a stream of all mirrored stations.
+     * @param listParam the optional listing parameters.
+     * @return the stream of stations.
+     * @throws IllegalStateException if the catalog was not loaded.
+     */
+    public Stream<Station> listStations(final Parameter...listParam) {
+        return query(null, null,
+                StationIndex.toRequestParams(null, listParam)).stream();
+    }
+
+    /** Get a stream of stations matching a certain search criteria.
+     * @param searchMode the field to match.
+     * @param searchTerm the term to search for.
+     * @param listParam the optional listing parameters.
+     * @return the stream of matching stations.
+     * @throws IllegalStateException if the catalog was not loaded.
+     */
+    public Stream<Station> listStationsBy(
+            @NonNull final SearchMode searchMode,
+            @NonNull final String searchTerm,
+            final Parameter...listParam) {
+        return query(searchMode, searchTerm,
+                StationIndex.toRequestParams(null, listParam)).stream();
+    }
+
+    /** Get a stream of stations matching a certain search criteria.
+     * @param advancedSearch the advanced search query object.
+     * @param listParam the optional listing parameters.
+     * @return the stream of matching stations.
+     * @throws IllegalStateException if the catalog was not loaded.
+     */
+    public Stream<Station> listStationsWithAdvancedSearch(
+            @NonNull final AdvancedSearch advancedSearch,
+            final Parameter...listParam) {
+        return query(null, null,
+                StationIndex.toRequestParams(advancedSearch, listParam)).stream();
+    }
+
+    /** Finds the stations with the names most similar to a query.
+     * Other than {@link SearchMode#BYNAME} this tolerates typos.
+     * @param query the name to look for.
+     * @param limit the maximum number of stations to return.
+     * @return the most similar stations, the best match first.
+     * @throws IllegalStateException if the catalog was not loaded.
+     * @see TrigramIndex
+     */
+    public List<Station> searchByName(@NonNull final String query,
+                                      final int limit) {
+        return loadedSnapshot().nameIndex().search(query, limit);
+    }
+
+    /** Finds the stations nearest to a location.
+     * @param latitude the latitude of the location in degrees.
+     * @param longitude the longitude of the location in degrees.
+     * @param limit the maximum number of stations to return.
+     * @return the nearest stations with geo coordinates, the nearest first.
+     * @throws IllegalStateException if the catalog was not loaded.
+     * @see GeoIndex
+     */
+    public List<Station> listStationsNear(final double latitude,
+                                          final double longitude,
+                                          final int limit) {
+        return loadedSnapshot().geoIndex().nearest(
+                latitude, longitude, limit);
+    }
+
+    /** Finds the stations nearest to a location that match a search.
+     * @param latitude the latitude of the location in degrees.
+     * @param longitude the longitude of the location in degrees.
+     * @param limit the maximum number of stations to return.
+     * @param advancedSearch the criteria the stations must match.
+     *                       The order is ignored.
+     * @return the nearest matching stations, the nearest first.
+     * @throws IllegalStateException if the catalog was not loaded.
+     * @see GeoIndex
+     */
+    public List<Station> listStationsNear(
+            final double latitude,
+            final double longitude,
+            final int limit,
+            @NonNull final AdvancedSearch advancedSearch) {
+        StationQuery query = StationQuery.of(
+                StationIndex.toRequestParams(advancedSearch));
+        return loadedSnapshot().geoIndex().nearest(
+                latitude, longitude, limit, query::test);
+    }
+
+    /** Finds the stations within a distance of a location.
+     * @param latitude the latitude of the location in degrees.
+     * @param longitude the longitude of the location in degrees.
+     * @param radiusKm the maximum distance in kilometers.
+     * @return the stations within the distance, the nearest first.
+     * @throws IllegalStateException if the catalog was not loaded.
+     * @see GeoIndex
+     */
+    public List<Station> listStationsWithin(final double latitude,
+                                            final double longitude,
+                                            final double radiusKm) {
+        return loadedSnapshot().geoIndex().within(
+                latitude, longitude, radiusKm);
+    }
+
+    /** Finds the stations within a distance of a location that match
+     * a search.
+     * @param latitude the latitude of the location in degrees.
+     * @param longitude the longitude of the location in degrees.
+     * @param radiusKm the maximum distance in kilometers.
+     * @param advancedSearch the criteria the stations must match.
+     *                       The order is ignored.
+     * @return the matching stations within the distance,
+     * the nearest first.
+     * @throws IllegalStateException if the catalog was not loaded.
+     * @see GeoIndex
+     */
+    public List<Station> listStationsWithin(
+            final double latitude,
+            final double longitude,
+            final double radiusKm,
+            @NonNull final AdvancedSearch advancedSearch) {
+        StationQuery query = StationQuery.of(
+                StationIndex.toRequestParams(advancedSearch));
+        return loadedSnapshot().geoIndex().within(
+                latitude, longitude, radiusKm, query::test);
+    }
+
+    /** Creates an API client that serves station reads from
+     * this mirror. Station lists, search modes and the advanced search
+     * are answered locally once the catalog is loaded; everything else,
+     * like the facet lists, votes or the top and last change lists, goes
+     * to the network.
+     * @return an API client backed by this mirror.
+     * */
+    public RadioBrowser asRadioBrowser() {
+        return new RadioBrowser(new MirrorRestDelegate(this,
+                source.getRest()));
+    }
+
+    /** Queries the mirrored catalog.
+     * @param searchMode the search mode or {@code null} for none.
+     * @param searchTerm the term of the search mode.
+     * @param requestParams the request parameters as they would
+     *                      be sent to the server.
+     * @return the page of matching stations.
+     * @throws IllegalStateException if the catalog was not loaded.
+     * @throws IllegalArgumentException if a parameter is not supported.
+     * */
+    List<Station> query(final SearchMode searchMode,
+                        final String searchTerm,
+                        final Map<String, String> requestParams) {
+        Snapshot current = loadedSnapshot();
+        if (searchMode == SearchMode.BYUUID) {
+            Station station = current.byUUID.get(UUID.fromString(searchTerm));
+            return StationQuery.of(requestParams).apply(station != null
+                    ? Collections.singletonList(station)
+                    : Collections.emptyList());
+        }
+        return current.index.query(searchMode, searchTerm, requestParams);
+    }
+}
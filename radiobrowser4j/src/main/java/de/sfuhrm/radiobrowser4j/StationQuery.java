@@ -0,0 +1,490 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/** A station query evaluated locally with the semantics of the
+ * radio browser server.
+ * The query is built from the same request parameters that are
+ * sent to the server, so every {@link Parameter} and
+ * {@link AdvancedSearch} is understood without further mapping.
+ * String comparisons ignore the case like the server database does.
+ * @author Stephan Fuhrmann
+ * */
+final class StationQuery {
+
+    /** Orders stations by name, the default order of the server. */
+    static final Comparator<Station> BY_NAME =
+            byString(Station::getName);
+
+    /** The filter for matching stations. */
+    private final Predicate<Station> filter;
+
+    /** The requested order or {@code null} for the name order. */
+    private final Comparator<Station> order;
+
+    /** The number of matching stations to skip. */
+    private final int offset;
+
+    /** The maximum number of stations to return. */
+    private final int limit;
+
+    /** Creates a new instance.
+     * @param myFilter the filter for matching stations.
+     * @param myOrder the requested order or {@code null}
+     *                for the name order.
+     * @param myOffset the number of matching stations to skip.
+     * @param myLimit the maximum number of stations to return.
+     * */
+    private StationQuery(final Predicate<Station> myFilter,
+                         final Comparator<Station> myOrder,
+                         final int myOffset,
+                         final int myLimit) {
+        this.filter = myFilter;
+        this.order = myOrder;
+        this.offset = myOffset;
+        this.limit = myLimit;
+    }
+
+    /** Creates a query from request parameters.
+     * @param requestParams the request parameters as they would
+     *                      be sent to the server.
+     * @return the query.
+     * @throws IllegalArgumentException if a parameter is not supported.
+     * */
+    static StationQuery of(final Map<String, String> requestParams) {
+        Predicate<Station> filter = station -> true;
+        Comparator<Station> order = null;
+        boolean reverse = false;
+        int offset = 0;
+        int limit = Integer.MAX_VALUE;
+        for (Map.Entry<String, String> entry : requestParams.entrySet()) {
+            String value = entry.getValue();
+            switch (entry.getKey()) {
+                case "name":
+                    filter = filter.and(textFilter(Station::getName, value,
+                            isTrue(requestParams, "nameExact")));
+                    break;
+                case "state":
+                    filter = filter.and(textFilter(Station::getState, value,
+                            isTrue(requestParams, "stateExact")));
+                    break;
+                case "language":
+                    filter = filter.and(listFilter(Station::getLanguageList,
+                            value, isTrue(requestParams, "languageExact")));
+                    break;
+                case "tag":
+                    filter = filter.and(listFilter(Station::getTagList,
+                            value, isTrue(requestParams, "tagExact")));
+                    break;
+                case "tagList":
+                    for (String tag : value.split(",")) {
+                        filter = filter.and(listFilter(Station::getTagList,
+                                tag.trim(), true));
+                    }
+                    break;
+                case "countrycode":
+                    filter = filter.and(textFilter(Station::getCountryCode,
+                            value, true));
+                    break;
+                case "codec":
+                    filter = filter.and(textFilter(Station::getCodec,
+                            value, true));
+                    break;
+                case "bitrateMin":
+                    int min = Integer.parseInt(value);
+                    filter = filter.and(s -> s.getBitrate() != null
+                            && s.getBitrate() >= min);
+                    break;
+                case "bitrateMax":
+                    int max = Integer.parseInt(value);
+                    filter = filter.and(s -> s.getBitrate() != null
+                            && s.getBitrate() <= max);
+                    break;
+                case "has_geo_info":
+                    boolean geo = Boolean.parseBoolean(value);
+                    filter = filter.and(s -> hasGeoInfo(s) == geo);
+                    break;
+                case "has_extended_info":
+                    boolean extended = Boolean.parseBoolean(value);
+                    filter = filter.and(s ->
+                            Boolean.TRUE.equals(s.getHasExtendedInfo())
+                                    == extended);
+                    break;
+                case "is_https":
+                    boolean https = Boolean.parseBoolean(value);
+                    filter = filter.and(s -> isHttps(s) == https);
+                    break;
+                case "hidebroken":
+                    if (Boolean.parseBoolean(value)) {
+                        filter = filter.and(s -> !isBroken(s));
+                    }
+                    break;
+                case "order":
+                    order = comparatorFor(value);
+                    break;
+                case "reverse":
+                    reverse = Boolean.parseBoolean(value);
+                    break;
+                case "offset":
+                    offset = Integer.parseInt(value);
+                    break;
+                case "limit":
+                    limit = Integer.parseInt(value);
+                    break;
+                case "nameExact":
+                case "stateExact":
+                case "languageExact":
+                case "tagExact":
+                    // evaluated together with the search term
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                            "Unsupported parameter " + entry.getKey());
+            }
+        }
+        if (reverse) {
+            order = (order != null ? order : BY_NAME).reversed();
+        }
+        return new StationQuery(filter, order, offset, limit);
+    }
+
+    /** Creates the filter of a search mode.
+     * @param searchMode the search mode.
+     * @param searchTerm the search term.
+     * @return the filter for stations matching the search term.
+     * */
+    static Predicate<Station> searchModeFilter(final SearchMode searchMode,
+                                               final String searchTerm) {
+        switch (searchMode) {
+            case BYUUID:
+                UUID uuid = UUID.fromString(searchTerm);
+                return s -> uuid.equals(s.getStationUUID());
+            case BYNAME:
+                return textFilter(Station::getName, searchTerm, false);
+            case BYNAMEEXACT:
+                return textFilter(Station::getName, searchTerm, true);
+            case BYCODEC:
+                return textFilter(Station::getCodec, searchTerm, false);
+            case BYCODECEXACT:
+                return textFilter(Station::getCodec, searchTerm, true);
+            case BYCOUNTRYCODEEXACT:
+                return textFilter(Station::getCountryCode, searchTerm, true);
+            case BYSTATE:
+                return textFilter(Station::getState, searchTerm, false);
+            case BYSTATEEXACT:
+                return textFilter(Station::getState, searchTerm, true);
+            case BYLANGUAGE:
+                return listFilter(Station::getLanguageList, searchTerm, false);
+            case BYLANGUAGEEXACT:
+                return listFilter(Station::getLanguageList, searchTerm, true);
+            case BYTAG:
+                return listFilter(Station::getTagList, searchTerm, false);
+            case BYTAGEXACT:
+                return listFilter(Station::getTagList, searchTerm, true);
+            default:
+                throw new IllegalArgumentException(
+                        "Unsupported search mode " + searchMode);
+        }
+    }
+
+    /** Creates a copy of this query with an additional filter.
+     * @param additional the filter that must match additionally.
+     * @return the combined query.
+     * */
+    StationQuery and(final Predicate<Station> additional) {
+        return new StationQuery(filter.and(additional), order, offset, limit);
+    }
+
+    /** Tests whether a station matches the filter of this query.
+     * Order, offset and limit are not considered.
+     * @param station the station to test.
+     * @return {@code true} if the station matches.
+     * */
+    boolean test(final Station station) {
+        return filter.test(station);
+    }
+
+    /** Evaluates the query.
+     * @param stations the stations to query, ordered by {@link #BY_NAME}.
+     * @return the page of matching stations in the requested order.
+     * */
+    List<Station> apply(final List<Station> stations) {
+        return apply(stations, null);
+    }
+
+    /** Evaluates the query on candidate stations.
+     * @param stations the stations to query, ordered by {@link #BY_NAME}.
+     * @param candidates the indexes of the stations that may match,
+     *                   {@code null} for all stations.
+     * @return the page of matching stations in the requested order.
+     * */
+    List<Station> apply(final List<Station> stations,
+                        final BitSet candidates) {
+        List<Station> result = new ArrayList<>();
+        int skip = order == null ? offset : 0;
+        int max = order == null ? limit : Integer.MAX_VALUE;
+        int i = next(candidates, -1);
+        while (i >= 0 && i < stations.size() && result.size() < max) {
+            Station station = stations.get(i);
+            if (filter.test(station) && skip-- <= 0) {
+                result.add(station);
+            }
+            i = next(candidates, i);
+        }
+        if (order == null) {
+            return result;
+        }
+        result.sort(order);
+        int from = Math.min(offset, result.size());
+        int to = (int) Math.min((long) from + limit, result.size());
+        return new ArrayList<>(result.subList(from, to));
+    }
+
+    /** Gets the next candidate index.
+     * @param candidates the candidate indexes, {@code null} for all.
+     * @param index the current index.
+     * @return the next candidate index after the current one,
+     * or {@code -1} if the candidates are exhausted.
+     * */
+    private static int next(final BitSet candidates, final int index) {
+        if (candidates == null) {
+            return index + 1;
+        }
+        return candidates.nextSetBit(index + 1);
+    }
+
+    /** Whether the station failed its last check.
+     * @param station the station to check.
+     * @return {@code true} if the last check was not ok.
+     * */
+    static boolean isBroken(final Station station) {
+        return station.getLastcheckok() == null
+                || station.getLastcheckok() != 1;
+    }
+
+    /** Whether the station has geo coordinates.
+     * @param station the station to check.
+     * @return {@code true} if latitude and longitude are known.
+     * */
+    static boolean hasGeoInfo(final Station station) {
+        return station.getGeoLatitude() != null
+                && station.getGeoLongitude() != null;
+    }
+
+    /** Whether the station streams with HTTPS.
+     * Like the server this looks at the resolved URL.
+     * @param station the station to check.
+     * @return {@code true} if the resolved URL is a HTTPS URL.
+     * */
+    static boolean isHttps(final Station station) {
+        String url = station.getUrlResolved() != null
+                ? station.getUrlResolved() : station.getUrl();
+        return url != null && url.regionMatches(true, 0, "https:", 0, 6);
+    }
+
+    /** Gets whether a boolean parameter is set to true.
+     * @param requestParams the request parameters.
+     * @param key the parameter name.
+     * @return {@code true} if the parameter is {@code "true"}.
+     * */
+    private static boolean isTrue(final Map<String, String> requestParams,
+                                  final String key) {
+        return Boolean.parseBoolean(requestParams.get(key));
+    }
+
+    /** Creates a filter on a text field.
+     * @param getter the getter of the field.
+     * @param term the term to match.
+     * @param exact whether the field must be equal to the term,
+     *              or only contain it.
+     * @return the filter.
+     * */
+    private static Predicate<Station> textFilter(
+            final Function<Station, String> getter,
+            final String term,
+            final boolean exact) {
+        return s -> matches(getter.apply(s), term, exact);
+    }
+
+    /** Creates a filter on a list field.
+     * @param getter the getter of the field.
+     * @param term the term to match one of the list entries.
+     * @param exact whether an entry must be equal to the term,
+     *              or only contain it.
+     * @return the filter.
+     * */
+    private static Predicate<Station> listFilter(
+            final Function<Station, List<String>> getter,
+            final String term,
+            final boolean exact) {
+        return s -> {
+            List<String> values = getter.apply(s);
+            if (values == null) {
+                return false;
+            }
+            for (String value : values) {
+                if (matches(value, term, exact)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /** Folds the case of a character. Characters that are equal
+     * ignoring the case fold to the same character.
+     * @param c the character to fold.
+     * @return the folded character.
+     * */
+    private static char fold(final char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /** Folds the case of a text. Index keys are folded with this
+     * function, so that looking up a folded term finds the same
+     * values as {@link #matches(String, String, boolean)}.
+     * @param text the text to fold.
+     * @return the folded text of the same length.
+     * */
+    static String normalize(final String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /** Matches a value against a term ignoring the case.
+     * @param value the value, may be {@code null}.
+     * @param term the term to match.
+     * @param exact whether the value must be equal to the term,
+     *              or only contain it.
+     * @return {@code true} if the value matches.
+     * @see #normalize(String)
+     * */
+    static boolean matches(final String value,
+                           final String term,
+                           final boolean exact) {
+        if (value == null) {
+            return false;
+        }
+        if (exact) {
+            return value.length() == term.length()
+                    && regionMatches(value, 0, term);
+        }
+        int last = value.length() - term.length();
+        for (int i = 0; i <= last; i++) {
+            if (regionMatches(value, i, term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Matches a region of a value against a term ignoring the case.
+     * @param value the value.
+     * @param offset the start of the region in the value.
+     * @param term the term to match, fits into the value.
+     * @return {@code true} if the region matches.
+     * */
+    private static boolean regionMatches(final String value,
+                                         final int offset,
+                                         final String term) {
+        for (int i = 0; i < term.length(); i++) {
+            if (fold(value.charAt(offset + i)) != fold(term.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Gets the comparator for an order parameter.
+     * @param order the lower case {@link FieldName}.
+     * @return the comparator.
+     * @throws IllegalArgumentException if the order is not supported.
+     * */
+    private static Comparator<Station> comparatorFor(final String order) {
+        switch (FieldName.valueOf(order.toUpperCase())) {
+            case NAME:
+                return BY_NAME;
+            case URL:
+                return byString(Station::getUrl);
+            case HOMEPAGE:
+                return byString(Station::getHomepage);
+            case FAVICON:
+                return byString(Station::getFavicon);
+            case TAGS:
+                return byString(Station::getTags);
+            case COUNTRY:
+                return byString(Station::getCountryCode);
+            case STATE:
+                return byString(Station::getState);
+            case LANGUAGE:
+                return byString(Station::getLanguage);
+            case VOTES:
+                return by(Station::getVotes);
+            case CODEC:
+                return byString(Station::getCodec);
+            case BITRATE:
+                return by(Station::getBitrate);
+            case LASTCHECKOK:
+                return by(Station::getLastcheckok);
+            case LASTCHECKTIME:
+                return by(Station::getLastchecktime);
+            case CLICKTIMESTAMP:
+                return by(Station::getClicktimestamp);
+            case CLICKCOUNT:
+                return by(Station::getClickcount);
+            case CLICKTREND:
+                return by(Station::getClicktrend);
+            default:
+                throw new IllegalArgumentException(
+                        "Unsupported order " + order + ", supported are "
+                                + Arrays.toString(FieldName.values()));
+        }
+    }
+
+    /** Creates a comparator on a text field ignoring the case.
+     * @param getter the getter of the field.
+     * @return the comparator, ordering {@code null} first.
+     * */
+    private static Comparator<Station> byString(
+            final Function<Station, String> getter) {
+        return Comparator.comparing(getter,
+                Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+    }
+
+    /** Creates a comparator on a comparable field.
+     * @param getter the getter of the field.
+     * @param <T> the type of the field.
+     * @return the comparator, ordering {@code null} first.
+     * */
+    private static <T extends Comparable<? super T>> Comparator<Station> by(
+            final Function<Station, T> getter) {
+        return Comparator.comparing(getter,
+                Comparator.nullsFirst(Comparator.<T>naturalOrder()));
+    }
+}
@@ -0,0 +1,283 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/** Keeps a {@link StationMirror} current with the last change feed.
+ * The feed lists the stations ordered by their last change time,
+ * newest first. A sync reads the feed until it reaches the newest
+ * change it has already seen and applies the newer stations to the
+ * mirror. A refresh therefore only transfers the changed stations.
+ *
+ * <p>The feed does not report deleted stations. Deletions are only
+ * detected by a full reload, which happens on the first sync and
+ * whenever more than {@link #getMaxChanges()} changes are pending.
+ * A full reload takes the newest change of the feed before the
+ * catalog download starts as its watermark, so changes made while the
+ * pages of the catalog are downloaded are picked up by the next sync.
+ *
+ * <p>Each incremental sync that changes stations replaces the
+ * immutable catalog of the mirror. This rebuilds its indexes in time
+ * linear to the size of the catalog, independent of the number of
+ * changes. Syncing often with few changes therefore costs about as
+ * much CPU time as a reload from memory, but transfers only the
+ * changed stations.
+ * @see RadioBrowser#listLastChangedStations()
+ * @author Stephan Fuhrmann
+ * */
+@Slf4j
+public class StationSync {
+
+    /** The default maximum number of changes applied incrementally. */
+    public static final int DEFAULT_MAX_CHANGES = 10_000;
+
+    /** The outcome of a sync. */
+    @Getter
+    @ToString
+    public static final class SyncResult {
+        /** The number of stations that were new. */
+        private final int inserted;
+
+        /** The number of known stations that changed. */
+        private final int changed;
+
+        /** The number of stations that were removed. Only a full
+         * reload can detect removed stations. */
+        private final int removed;
+
+        /** Whether the complete catalog was downloaded. */
+        private final boolean fullReload;
+
+        /** Creates a new instance.
+         * @param myInserted the number of stations that were new.
+         * @param myChanged the number of known stations that changed.
+         * @param myRemoved the number of stations that were removed.
+         * @param myFullReload whether the complete catalog was downloaded.
+         * */
+        SyncResult(final int myInserted,
+                   final int myChanged,
+                   final int myRemoved,
+                   final boolean myFullReload) {
+            this.inserted = myInserted;
+            this.changed = myChanged;
+            this.removed = myRemoved;
+            this.fullReload = myFullReload;
+        }
+    }
+
+    /** The mirror to keep current. */
+    private final StationMirror mirror;
+
+    /** The maximum number of changes applied incrementally. */
+    @Getter
+    private final int maxChanges;
+
+    /** The newest change time seen, {@code null} before the first sync. */
+    private Date watermark;
+
+    /** The change UUIDs seen with the {@link #watermark} change time. */
+    private final Set<UUID> watermarkChanges = new HashSet<>();
+
+    /** Creates a new instance.
+     * @param myMirror the mirror to keep current.
+     * */
+    public StationSync(@NonNull final StationMirror myMirror) {
+        this(myMirror, DEFAULT_MAX_CHANGES);
+    }
+
+    /** Creates a new instance.
+     * @param myMirror the mirror to keep current.
+     * @param myMaxChanges the maximum number of changes to apply
+     *                     incrementally. If more changes are pending,
+     *                     the catalog is reloaded completely.
+     * */
+    public StationSync(@NonNull final StationMirror myMirror,
+                       final int myMaxChanges) {
+        if (myMaxChanges <= 0) {
+            throw new IllegalArgumentException(
+                    "maxChanges must be > 0, but is " + myMaxChanges);
+        }
+        this.mirror = myMirror;
+        this.maxChanges = myMaxChanges;
+    }
+
+    /** Brings the mirror up to date.
+     * The first call loads the complete catalog, later calls only read
+     * the changes since the previous call.
+     * @return the counts of the applied changes.
+     * @throws RadioBrowserException if the server could not be reached.
+     * The mirror is not modified in this case.
+     * */
+    public synchronized SyncResult sync() {
+        if (watermark == null || !mirror.isLoaded()) {
+            return fullReload();
+        }
+        List<Station> changes = readChanges();
+        if (changes == null) {
+            log.debug("More than {} changes pending, reloading", maxChanges);
+            return fullReload();
+        }
+        int inserted = 0;
+        int changed = 0;
+        List<Station> upserts = new ArrayList<>(changes.size());
+        for (Station station : changes) {
+            Station known = mirror.getStationByUUID(
+                    station.getStationUUID()).orElse(null);
+            if (known == null) {
+                inserted++;
+            } else if (!Objects.equals(known.getChangeUUID(),
+                    station.getChangeUUID())) {
+                changed++;
+            } else {
+                continue;
+            }
+            upserts.add(station);
+        }
+        if (!upserts.isEmpty()) {
+            mirror.upsert(upserts);
+        }
+        updateWatermark(changes);
+        return new SyncResult(inserted, changed, 0, false);
+    }
+
+    /** Reads the changes newer than the watermark from the feed.
+     * @return the changed stations, newest first, or {@code null} if
+     * more than {@link #maxChanges} changes are pending.
+     * */
+    private List<Station> readChanges() {
+        List<Station> changes = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+        try (Stream<Station> feed =
+                     mirror.getSource().listLastChangedStations()) {
+            Iterator<Station> iterator = feed.iterator();
+            while (iterator.hasNext()) {
+                Station station = iterator.next();
+                Date changeTime = station.getLastchangetime();
+                if (changeTime == null || changeTime.before(watermark)) {
+                    break;
+                }
+                if (changeTime.equals(watermark)
+                        && watermarkChanges.contains(station.getChangeUUID())) {
+                    continue;
+                }
+                if (!seen.add(station.getStationUUID())) {
+                    continue;
+                }
+                if (changes.size() >= maxChanges) {
+                    return null;
+                }
+                changes.add(station);
+            }
+        }
+        return changes;
+    }
+
+    /** Downloads the complete catalog and compares it with the
+     * mirrored one.
+     * @return the counts of the differences.
+     * */
+    private SyncResult fullReload() {
+        // the download spans many pages, so a station changed after its
+        // page was fetched must still be newer than the watermark
+        List<Station> head = readHead();
+        Map<UUID, UUID> previous = new HashMap<>();
+        if (mirror.isLoaded()) {
+            for (Station station : mirror.stations()) {
+                previous.put(station.getStationUUID(),
+                        station.getChangeUUID());
+            }
+        }
+        mirror.load();
+        List<Station> stations = mirror.stations();
+        int inserted = 0;
+        int changed = 0;
+        for (Station station : stations) {
+            UUID stationUUID = station.getStationUUID();
+            if (!previous.containsKey(stationUUID)) {
+                inserted++;
+            } else if (!Objects.equals(previous.remove(stationUUID),
+                    station.getChangeUUID())) {
+                changed++;
+            }
+        }
+        watermark = null;
+        watermarkChanges.clear();
+        updateWatermark(head);
+        return new SyncResult(inserted, changed, previous.size(), true);
+    }
+
+    /** Reads the newest changes of the feed.
+     * @return the stations sharing the newest change time,
+     * empty if the feed is empty.
+     * */
+    private List<Station> readHead() {
+        List<Station> head = new ArrayList<>();
+        try (Stream<Station> feed =
+                     mirror.getSource().listLastChangedStations()) {
+            Iterator<Station> iterator = feed.iterator();
+            while (iterator.hasNext()) {
+                Station station = iterator.next();
+                Date changeTime = station.getLastchangetime();
+                if (changeTime == null || (!head.isEmpty()
+                        && !changeTime.equals(
+                                head.get(0).getLastchangetime()))) {
+                    break;
+                }
+                head.add(station);
+            }
+        }
+        return head;
+    }
+
+    /** Advances the watermark to the newest change of the stations.
+     * @param stations the stations that were applied.
+     * */
+    private void updateWatermark(final Collection<Station> stations) {
+        for (Station station : stations) {
+            Date changeTime = station.getLastchangetime();
+            if (changeTime == null) {
+                continue;
+            }
+            if (watermark == null || changeTime.after(watermark)) {
+                watermark = new Date(changeTime.getTime());
+                watermarkChanges.clear();
+            }
+            if (changeTime.equals(watermark)) {
+                watermarkChanges.add(station.getChangeUUID());
+            }
+        }
+        if (watermark == null) {
+            watermark = new Date(0);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package de.sfuhrm.radiobrowser4j;
+
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.UUID;
+
+/** Gson type adapter for {@linkplain Station}.
+ * Reads the station fields token by token and writes them
+ * directly into the {@linkplain Station} without building
+ * an intermediate JSON tree.
+ * The adapter is immutable and can be used by many threads concurrently.
+ * @see TimestampParser
+ * @see <a href="https://at1.api.radio-browser.info/">API documentation</a>
+ * @author Stephan Fuhrmann
+ * */
+class StationTypeAdapter extends TypeAdapter<Station> {
+
+    /** The factory to register the adapter with, see
+     * {@link com.google.gson.GsonBuilder#registerTypeAdapterFactory(
+     * TypeAdapterFactory)}. Station objects are written by the
+     * reflective adapter Gson would use without this one.
+     * */
+    static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(final Gson gson,
+                                         final TypeToken<T> type) {
+            if (type.getRawType() != Station.class) {
+                return null;
+            }
+            return (TypeAdapter<T>) new StationTypeAdapter(
+                    gson.getDelegateAdapter(this, TypeToken.get(Station.class)));
+        }
+    };
+
+    /** The adapter writing stations. */
+    private final TypeAdapter<Station> writer;
+
+    /** Creates a new instance.
+     * @param myWriter the adapter writing stations.
+     * */
+    StationTypeAdapter(final TypeAdapter<Station> myWriter) {
+        this.writer = myWriter;
+    }
+
+    @Override
+    public Station read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Station station = new Station();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (key) {
+                case "stationuuid":
+                    station.setStationUUID(readUUID(in));
+                    break;
+                case "changeuuid":
+                    station.setChangeUUID(readUUID(in));
+                    break;
+                case "name":
+                    station.setName(in.nextString());
+                    break;
+                case "url":
+                    station.setUrl(in.nextString());
+                    break;
+                case "url_resolved":
+                    station.setUrlResolved(in.nextString());
+                    break;
+                case "homepage":
+                    station.setHomepage(in.nextString());
+                    break;
+                case "favicon":
+                    station.setFavicon(in.nextString());
+                    break;
+                case "tags":
+                    station.setTags(in.nextString());
+                    break;
+                case "countrycode":
+                    station.setCountryCode(in.nextString());
+                    break;
+                case "state":
+                    station.setState(in.nextString());
+                    break;
+                case "language":
+                    station.setLanguage(in.nextString());
+                    break;
+                case "votes":
+                    station.setVotes(in.nextInt());
+                    break;
+                case "codec":
+                    station.setCodec(in.nextString());
+                    break;
+                case "bitrate":
+                    station.setBitrate(in.nextInt());
+                    break;
+                case "hls":
+                    station.setHls(in.nextString());
+                    break;
+                case "lastcheckok":
+                    station.setLastcheckok(in.nextInt());
+                    break;
+                case "lastchecktime":
+                    station.setLastchecktime(readDate(in));
+                    break;
+                case "lastcheckoktime":
+                    station.setLastcheckoktime(readDate(in));
+                    break;
+                case "lastchangetime":
+                    station.setLastchangetime(readDate(in));
+                    break;
+                case "lastlocalchecktime":
+                    station.setLastlocalchecktime(readDate(in));
+                    break;
+                case "clicktimestamp":
+                    station.setClicktimestamp(readDate(in));
+                    break;
+                case "clickcount":
+                    station.setClickcount(in.nextInt());
+                    break;
+                case "clicktrend":
+                    station.setClicktrend(in.nextInt());
+                    break;
+                case "geo_lat":
+                    station.setGeoLatitude(in.nextDouble());
+                    break;
+                case "geo_long":
+                    station.setGeoLongitude(in.nextDouble());
+                    break;
+                case "has_extended_info":
+                    station.setHasExtendedInfo(readBoolean(in));
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return station;
+    }
+
+    /** Reads an UUID.
+     * @param in the reader to read from.
+     * @return the UUID read or {@code null} if the value was empty.
+     * @throws IOException if reading fails.
+     * */
+    private static UUID readUUID(final JsonReader in) throws IOException {
+        String value = in.nextString();
+        if (value.isEmpty()) {
+            return null;
+        }
+        return UUID.fromString(value);
+    }
+
+    /** Reads a date.
+     * @param in the reader to read from.
+     * @return the date read or {@code null} if the value was empty.
+     * @throws IOException if reading fails.
+     * @throws RadioBrowserException if the date is malformed.
+     * */
+    private static Date readDate(final JsonReader in) throws IOException {
+        String value = in.nextString();
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return new Date(TimestampParser.parse(value));
+        } catch (IllegalArgumentException e) {
+            throw new RadioBrowserException(e);
+        }
+    }
+
+    /** Reads a boolean that might also be transferred as a string.
+     * @param in the reader to read from.
+     * @return the boolean read.
+     * @throws IOException if reading fails.
+     * */
+    private static boolean readBoolean(final JsonReader in)
+            throws IOException {
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return in.nextBoolean();
+        }
+        return Boolean.parseBoolean(in.nextString());
+    }
+
+    @Override
+    public void write(final JsonWriter out, final Station station)
+            throws IOException {
+        writer.write(out, station);
+    }
+}
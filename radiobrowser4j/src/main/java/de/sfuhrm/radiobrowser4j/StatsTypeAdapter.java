@@ -0,0 +1,109 @@
+package de.sfuhrm.radiobrowser4j;
+
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/** Gson type adapter for {@linkplain Stats}.
+ * Reads the statistics fields token by token without building
+ * an intermediate JSON tree.
+ * @see <a href="https://at1.api.radio-browser.info/">API documentation</a>
+ * @author Stephan Fuhrmann
+ * */
+class StatsTypeAdapter extends TypeAdapter<Stats> {
+
+    /** The factory to register the adapter with, see
+     * {@link com.google.gson.GsonBuilder#registerTypeAdapterFactory(
+     * TypeAdapterFactory)}. Stats objects are written by the
+     * reflective adapter Gson would use without this one.
+     * */
+    static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(final Gson gson,
+                                         final TypeToken<T> type) {
+            if (type.getRawType() != Stats.class) {
+                return null;
+            }
+            return (TypeAdapter<T>) new StatsTypeAdapter(
+                    gson.getDelegateAdapter(this, TypeToken.get(Stats.class)));
+        }
+    };
+
+    /** The adapter writing statistics. */
+    private final TypeAdapter<Stats> writer;
+
+    /** Creates a new instance.
+     * @param myWriter the adapter writing statistics.
+     * */
+    StatsTypeAdapter(final TypeAdapter<Stats> myWriter) {
+        this.writer = myWriter;
+    }
+
+    @Override
+    public Stats read(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Stats stats = new Stats();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (key) {
+                case "supported_version":
+                    stats.setSupportedVersion(in.nextInt());
+                    break;
+                case "software_version":
+                    stats.setSoftwareVersion(in.nextString());
+                    break;
+                case "status":
+                    stats.setStatus(in.nextString());
+                    break;
+                case "stations":
+                    stats.setStations(in.nextInt());
+                    break;
+                case "stations_broken":
+                    stats.setStationsBroken(in.nextInt());
+                    break;
+                case "tags":
+                    stats.setTags(in.nextInt());
+                    break;
+                case "clicks_last_hour":
+                    stats.setClicksLastHour(in.nextInt());
+                    break;
+                case "clicks_last_day":
+                    stats.setClicksLastDay(in.nextInt());
+                    break;
+                case "languages":
+                    stats.setLanguages(in.nextInt());
+                    break;
+                case "countries":
+                    stats.setCountries(in.nextInt());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return stats;
+    }
+
+    @Override
+    public void write(final JsonWriter out, final Stats stats)
+            throws IOException {
+        writer.write(out, stats);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+/** Parser for the fixed-layout UTC timestamps of the radio browser API.
+ * The layout is {@code yyyy-MM-dd HH:mm:ss}, the ISO 8601 variant
+ * {@code yyyy-MM-ddTHH:mm:ssZ} is accepted too.
+ * The parser has no state and can be used by many threads
+ * concurrently.
+ * @author Stephan Fuhrmann
+ * */
+final class TimestampParser {
+
+    /** Length of the timestamp layout {@code yyyy-MM-dd HH:mm:ss}. */
+    private static final int LENGTH = 19;
+
+    /** Milliseconds per second. */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /** Seconds per day. */
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    /** Days in a 400 year era of the gregorian calendar. */
+    private static final long DAYS_PER_ERA = 146097L;
+
+    /** Days between 0000-03-01 and 1970-01-01. */
+    private static final long DAYS_0000_TO_1970 = 719468L;
+
+    /** No instance allowed. */
+    private TimestampParser() {
+    }
+
+    /** Parses a timestamp to epoch milliseconds.
+     * @param text the timestamp in the layout {@code yyyy-MM-dd HH:mm:ss}.
+     * @return the milliseconds since the epoch, interpreting the
+     * timestamp as UTC.
+     * @throws IllegalArgumentException if the text does not match
+     * the layout.
+     * */
+    static long parse(final CharSequence text) {
+        int length = text.length();
+        if (length != LENGTH
+                && !(length == LENGTH + 1 && text.charAt(LENGTH) == 'Z')) {
+            throw illegal(text);
+        }
+        char separator = text.charAt(10);
+        if (text.charAt(4) != '-' || text.charAt(7) != '-'
+                || (separator != ' ' && separator != 'T')
+                || text.charAt(13) != ':' || text.charAt(16) != ':') {
+            throw illegal(text);
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (month < 1 || month > 12 || day < 1 || day > 31
+                || hour > 23 || minute > 59 || second > 59) {
+            throw illegal(text);
+        }
+        long days = daysFromCivil(year, month, day);
+        long seconds = days * SECONDS_PER_DAY
+                + hour * 3600L + minute * 60L + second;
+        return seconds * MILLIS_PER_SECOND;
+    }
+
+    /** Formats epoch milliseconds to a timestamp.
+     * @param epochMillis the milliseconds since the epoch.
+     * @return the UTC timestamp in the layout {@code yyyy-MM-dd HH:mm:ss}.
+     * */
+    static String format(final long epochMillis) {
+        long seconds = Math.floorDiv(epochMillis, MILLIS_PER_SECOND);
+        long days = Math.floorDiv(seconds, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(seconds, SECONDS_PER_DAY);
+
+        // civil from days, see Howard Hinnant's date algorithms
+        long z = days + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(z, DAYS_PER_ERA);
+        long dayOfEra = z - era * DAYS_PER_ERA;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+                - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra
+                - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder sb = new StringBuilder(LENGTH);
+        append(sb, year, 4).append('-');
+        append(sb, month, 2).append('-');
+        append(sb, day, 2).append(' ');
+        append(sb, secondOfDay / 3600, 2).append(':');
+        append(sb, secondOfDay / 60 % 60, 2).append(':');
+        append(sb, secondOfDay % 60, 2);
+        return sb.toString();
+    }
+
+    /** Days since 1970-01-01 of a gregorian calendar date.
+     * See Howard Hinnant's date algorithms.
+     * @param year the year.
+     * @param month the month, 1 to 12.
+     * @param day the day of month, 1 to 31.
+     * @return the days since the epoch.
+     * */
+    private static long daysFromCivil(final int year,
+                                      final int month,
+                                      final int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5
+                + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+                + dayOfYear;
+        return era * DAYS_PER_ERA + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /** Parses a fixed number of decimal digits.
+     * @param text the text to parse.
+     * @param offset the offset of the first digit.
+     * @param count the number of digits.
+     * @return the parsed number.
+     * */
+    private static int digits(final CharSequence text,
+                              final int offset,
+                              final int count) {
+        int result = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw illegal(text);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /** Appends a zero-padded number.
+     * @param sb the builder to append to.
+     * @param value the value to append.
+     * @param width the minimum number of digits.
+     * @return the builder.
+     * */
+    private static StringBuilder append(final StringBuilder sb,
+                                        final long value,
+                                        final int width) {
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < width; i++) {
+            sb.append('0');
+        }
+        return sb.append(digits);
+    }
+
+    /** Creates the exception for an illegal timestamp.
+     * @param text the illegal timestamp.
+     * @return the exception to throw.
+     * */
+    private static IllegalArgumentException illegal(final CharSequence text) {
+        return new IllegalArgumentException(
+                "Illegal timestamp: '" + text + "'");
+    }
+}
@@ -0,0 +1,414 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import lombok.NonNull;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/** Trigram index for fuzzy matching of station names.
+ * Names are normalized to lower case letters and digits without
+ * accents and split into words. Each word is padded with two spaces
+ * in front and one behind and cut into overlapping trigrams, like the
+ * PostgreSQL {@code pg_trgm} extension does.
+ * The similarity of a name and a query is the number of shared
+ * trigrams divided by the number of trigrams in either of them.
+ * A typo only spoils the few trigrams around it, so misspelled queries
+ * still find the station.
+ *
+ * <p>A query only visits the stations sharing at least one trigram with
+ * it. It merges the ascending station lists of its trigrams, so the
+ * shared trigrams of a station are counted without memory per indexed
+ * station. The best matches are kept in a bounded heap of primitive
+ * scores. The index is immutable and can be used by many threads
+ * concurrently.
+ * @author Stephan Fuhrmann
+ * */
+public final class TrigramIndex {
+
+    /** The indexed stations in name order. */
+    private final List<Station> stations;
+
+    /** Number of distinct trigrams per station. */
+    private final int[] trigramCounts;
+
+    /** Ordinals of the stations containing a trigram, ascending. */
+    private final Map<Long, int[]> postings;
+
+    /** Creates a new index.
+     * @param myStations the stations in name order.
+     * */
+    private TrigramIndex(final List<Station> myStations) {
+        this.stations = Collections.unmodifiableList(myStations);
+        this.trigramCounts = new int[myStations.size()];
+        long[][] trigrams = new long[myStations.size()][];
+        Map<Long, Integer> sizes = new HashMap<>();
+        for (int i = 0; i < myStations.size(); i++) {
+            trigrams[i] = trigrams(myStations.get(i).getName());
+            trigramCounts[i] = trigrams[i].length;
+            for (long trigram : trigrams[i]) {
+                sizes.merge(trigram, 1, Integer::sum);
+            }
+        }
+        this.postings = new HashMap<>(sizes.size() * 2);
+        Map<Long, Integer> fill = new HashMap<>(sizes.size() * 2);
+        for (Map.Entry<Long, Integer> entry : sizes.entrySet()) {
+            postings.put(entry.getKey(), new int[entry.getValue()]);
+        }
+        for (int i = 0; i < trigrams.length; i++) {
+            for (long trigram : trigrams[i]) {
+                int position = fill.merge(trigram, 1, Integer::sum) - 1;
+                postings.get(trigram)[position] = i;
+            }
+        }
+    }
+
+    /** Builds an index over the names of stations.
+     * @param stations the stations to index.
+     * @return the index.
+     * */
+    public static TrigramIndex of(@NonNull final Collection<Station> stations) {
+        List<Station> list = new ArrayList<>(stations);
+        list.sort(StationQuery.BY_NAME);
+        return new TrigramIndex(list);
+    }
+
+    /** Gets the number of indexed stations.
+     * @return the number of stations.
+     * */
+    public int size() {
+        return stations.size();
+    }
+
+    /** Finds the stations with the names most similar to a query.
+     * @param query the name to look for.
+     * @param limit the maximum number of stations to return.
+     * @return the most similar stations, the best match first.
+     * Stations with equal similarity are in name order.
+     * */
+    public List<Station> search(@NonNull final String query,
+                                final int limit) {
+        return search(query, limit, 0);
+    }
+
+    /** Finds the stations with the names most similar to a query.
+     * @param query the name to look for.
+     * @param limit the maximum number of stations to return.
+     * @param minSimilarity the minimum similarity of a result between
+     *                      0 (any shared trigram) and 1 (same trigrams).
+     * @return the most similar stations, the best match first.
+     * Stations with equal similarity are in name order.
+     * */
+    public List<Station> search(@NonNull final String query,
+                                final int limit,
+                                final double minSimilarity) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException(
+                    "limit must be > 0, but is " + limit);
+        }
+        long[] queryTrigrams = trigrams(query);
+        if (queryTrigrams.length == 0) {
+            return Collections.emptyList();
+        }
+        int[][] lists = new int[queryTrigrams.length][];
+        int listCount = 0;
+        long candidates = 0;
+        for (long trigram : queryTrigrams) {
+            int[] ordinals = postings.get(trigram);
+            if (ordinals != null) {
+                lists[listCount++] = ordinals;
+                candidates += ordinals.length;
+            }
+        }
+        int queryCount = queryTrigrams.length;
+        TopStations best = new TopStations(
+                (int) Math.min(limit, Math.min(candidates, stations.size())));
+        // min-heap of the lists by the ordinal at their cursor
+        int[] heap = new int[listCount];
+        int[] cursors = new int[listCount];
+        for (int i = 0; i < listCount; i++) {
+            heap[i] = i;
+        }
+        int heapSize = listCount;
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, lists, cursors);
+        }
+        while (heapSize > 0) {
+            int ordinal = lists[heap[0]][cursors[heap[0]]];
+            int common = 0;
+            while (heapSize > 0 && lists[heap[0]][cursors[heap[0]]] == ordinal) {
+                common++;
+                if (++cursors[heap[0]] == lists[heap[0]].length) {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heapSize, 0, lists, cursors);
+            }
+            double score = score(queryCount, common, trigramCounts[ordinal]);
+            if (score >= minSimilarity) {
+                best.offer(score, ordinal);
+            }
+        }
+        int[] ordinals = best.drain();
+        List<Station> result = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            result.add(stations.get(ordinal));
+        }
+        return result;
+    }
+
+    /** Moves a list down the merge heap to its place.
+     * @param heap the list indexes ordered by the ordinal at their cursor.
+     * @param size the number of lists in the heap.
+     * @param position the position of the list to move.
+     * @param lists the ascending station lists.
+     * @param cursors the position of the current ordinal per list.
+     * */
+    private static void siftDown(final int[] heap,
+                                 final int size,
+                                 final int position,
+                                 final int[][] lists,
+                                 final int[] cursors) {
+        int i = position;
+        int list = heap[i];
+        int key = size > 0 ? lists[list][cursors[list]] : 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size
+                    && lists[heap[child + 1]][cursors[heap[child + 1]]]
+                    < lists[heap[child]][cursors[heap[child]]]) {
+                child++;
+            }
+            if (key <= lists[heap[child]][cursors[heap[child]]]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = list;
+    }
+
+    /** The stations with the best scores, kept in a min-heap with the
+     * worst of them on top. */
+    private static final class TopStations {
+        /** The scores of the stations in heap order. */
+        private final double[] scores;
+
+        /** The ordinals of the stations in heap order. */
+        private final int[] ordinals;
+
+        /** The number of stations kept. */
+        private int size;
+
+        /** Creates a new instance.
+         * @param capacity the maximum number of stations to keep.
+         * */
+        TopStations(final int capacity) {
+            scores = new double[capacity];
+            ordinals = new int[capacity];
+        }
+
+        /** Offers a station. It is kept if it is one of the best so far.
+         * @param score the similarity of the station.
+         * @param ordinal the ordinal of the station.
+         * */
+        void offer(final double score, final int ordinal) {
+            if (size < scores.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) / 2;
+                    if (!worse(score, ordinal,
+                            scores[parent], ordinals[parent])) {
+                        break;
+                    }
+                    scores[i] = scores[parent];
+                    ordinals[i] = ordinals[parent];
+                    i = parent;
+                }
+                scores[i] = score;
+                ordinals[i] = ordinal;
+            } else if (size > 0
+                    && worse(scores[0], ordinals[0], score, ordinal)) {
+                replaceTop(score, ordinal);
+            }
+        }
+
+        /** Replaces the worst station and restores the heap order.
+         * @param score the similarity of the new station.
+         * @param ordinal the ordinal of the new station.
+         * */
+        private void replaceTop(final double score, final int ordinal) {
+            int i = 0;
+            while (2 * i + 1 < size) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && worse(scores[child + 1],
+                        ordinals[child + 1], scores[child], ordinals[child])) {
+                    child++;
+                }
+                if (!worse(scores[child], ordinals[child], score, ordinal)) {
+                    break;
+                }
+                scores[i] = scores[child];
+                ordinals[i] = ordinals[child];
+                i = child;
+            }
+            scores[i] = score;
+            ordinals[i] = ordinal;
+        }
+
+        /** Removes all stations.
+         * @return the ordinals of the stations, the best first.
+         * */
+        int[] drain() {
+            int[] result = new int[size];
+            while (size > 0) {
+                result[size - 1] = ordinals[0];
+                size--;
+                if (size > 0) {
+                    double score = scores[size];
+                    int ordinal = ordinals[size];
+                    replaceTop(score, ordinal);
+                }
+            }
+            return result;
+        }
+
+        /** Whether a station ranks below another one. Equal scores
+         * rank in name order, which is the order of the ordinals.
+         * @param score the similarity of the first station.
+         * @param ordinal the ordinal of the first station.
+         * @param otherScore the similarity of the other station.
+         * @param otherOrdinal the ordinal of the other station.
+         * @return {@code true} if the first station ranks below.
+         * */
+        private static boolean worse(final double score,
+                                     final int ordinal,
+                                     final double otherScore,
+                                     final int otherOrdinal) {
+            return score < otherScore
+                    || (score == otherScore && ordinal > otherOrdinal);
+        }
+    }
+
+    /** Calculates the similarity from trigram counts.
+     * @param queryCount the number of trigrams of the query.
+     * @param common the number of shared trigrams.
+     * @param nameCount the number of trigrams of the name.
+     * @return the similarity between 0 and 1.
+     * */
+    private static double score(final int queryCount,
+                                final int common,
+                                final int nameCount) {
+        return (double) common / (queryCount + nameCount - common);
+    }
+
+    /** Calculates the similarity of two names.
+     * @param a the first name.
+     * @param b the second name.
+     * @return the similarity between 0 and 1.
+     * */
+    static double similarity(final String a, final String b) {
+        long[] left = trigrams(a);
+        long[] right = trigrams(b);
+        if (left.length == 0 || right.length == 0) {
+            return 0;
+        }
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] == right[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (left[i] < right[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return score(left.length, common, right.length);
+    }
+
+    /** Calculates the distinct trigrams of a name.
+     * @param name the name, may be {@code null}.
+     * @return the sorted, distinct trigrams, each encoded as three
+     * 16 bit characters.
+     * */
+    static long[] trigrams(final String name) {
+        if (name == null) {
+            return new long[0];
+        }
+        String normalized = normalize(name);
+        long[] result = new long[normalized.length() * 2 + 2];
+        int count = 0;
+        char c0 = ' ';
+        char c1 = ' ';
+        for (int i = 0; i <= normalized.length(); i++) {
+            char c2 = i < normalized.length() ? normalized.charAt(i) : ' ';
+            if (c2 == ' ' && c1 == ' ') {
+                continue;
+            }
+            result[count++] = ((long) c0 << 32) | ((long) c1 << 16) | c2;
+            if (c2 == ' ') {
+                // end of word, the next word starts padded
+                c0 = ' ';
+                c1 = ' ';
+            } else {
+                c0 = c1;
+                c1 = c2;
+            }
+        }
+        Arrays.sort(result, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || result[distinct - 1] != result[i]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    /** Normalizes a name to lower case letters and digits separated
+     * by single spaces.
+     * @param name the name to normalize.
+     * @return the normalized name.
+     * */
+    private static String normalize(final String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD)
+                .toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            } else if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+                sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+}
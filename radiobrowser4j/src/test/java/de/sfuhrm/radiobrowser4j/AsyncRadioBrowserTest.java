@@ -0,0 +1,110 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the AsyncRadioBrowser class.
+ * @author Stephan Fuhrmann
+ */
+@ExtendWith(MockitoExtension.class)
+public class AsyncRadioBrowserTest {
+
+    @Mock
+    private RadioBrowser radioBrowser;
+
+    private ExecutorService executorService;
+
+    private AsyncRadioBrowser asyncRadioBrowser;
+
+    @BeforeEach
+    public void create() {
+        executorService = Executors.newSingleThreadExecutor();
+        asyncRadioBrowser = new AsyncRadioBrowser(radioBrowser, executorService);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void listTagsRunsOnExecutor() throws Exception {
+        Thread caller = Thread.currentThread();
+        when(radioBrowser.listTags()).thenAnswer(invocation -> {
+            assertThat(Thread.currentThread(), is(not(caller)));
+            return Collections.singletonMap("jazz", 3);
+        });
+
+        CompletableFuture<Map<String, Integer>> future = asyncRadioBrowser.listTags();
+
+        assertThat(future.get(), is(Collections.singletonMap("jazz", 3)));
+    }
+
+    @Test
+    public void getStationByUUID() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        Station station = new Station();
+        station.setStationUUID(uuid);
+        when(radioBrowser.getStationByUUID(uuid)).thenReturn(Optional.of(station));
+
+        Optional<Station> actual = asyncRadioBrowser.getStationByUUID(uuid).get();
+
+        assertThat(actual, is(Optional.of(station)));
+    }
+
+    @Test
+    public void voteForStation() throws Exception {
+        UUID uuid = UUID.randomUUID();
+
+        asyncRadioBrowser.voteForStation(uuid).get();
+
+        verify(radioBrowser).voteForStation(uuid);
+    }
+
+    @Test
+    public void getServerStatsWithException() {
+        when(radioBrowser.getServerStats()).thenThrow(new RadioBrowserException("fail"));
+
+        CompletableFuture<Stats> future = asyncRadioBrowser.getServerStats();
+
+        ExecutionException exception = assertThrows(ExecutionException.class, future::get);
+        assertThat(exception.getCause(), instanceOf(RadioBrowserException.class));
+    }
+}
@@ -0,0 +1,459 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import com.google.gson.stream.MalformedJsonException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the {@link BalancingRestDelegate}.
+ * @author Stephan Fuhrmann
+ */
+@ExtendWith(MockitoExtension.class)
+public class BalancingRestDelegateTest {
+
+    /** The failure penalty in nanoseconds. */
+    private static final long PENALTY = 1_000_000;
+
+    @Mock
+    private RestDelegate fastDelegate;
+
+    @Mock
+    private RestDelegate slowDelegate;
+
+    /** The fake clock in nanoseconds. */
+    private AtomicLong clock;
+
+    private EndpointBalancer.Endpoint fast;
+
+    private EndpointBalancer.Endpoint slow;
+
+    private BalancingRestDelegate delegate;
+
+    private ScheduledExecutorService timer;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void create() {
+        clock = new AtomicLong();
+        fast = new EndpointBalancer.Endpoint("https://fast/", fastDelegate);
+        slow = new EndpointBalancer.Endpoint("https://slow/", slowDelegate);
+        delegate = new BalancingRestDelegate(
+                new EndpointBalancer(Arrays.asList(fast, slow), PENALTY),
+                clock::get);
+        timer = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void shutdown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /** Creates a delegate that hedges after the median response time.
+     * @param hedgeRatio the hedged requests allowed per request.
+     * @param fastNanos the response times of the fast endpoint.
+     * */
+    private BalancingRestDelegate hedging(final double hedgeRatio,
+                                          final long fastNanos) {
+        for (int i = 0; i < EndpointBalancer.MIN_SAMPLES; i++) {
+            fast.observe(fastNanos);
+            slow.observe(fastNanos * 10);
+        }
+        return new BalancingRestDelegate(
+                new EndpointBalancer(Arrays.asList(fast, slow), PENALTY),
+                System::nanoTime, 0, 0, 0.5, hedgeRatio, timer, executor);
+    }
+
+    /** Answers like a connection that hangs until it is disconnected. */
+    private static Stats hangUntilCancelled() throws InterruptedException {
+        while (!Cancellation.isCurrentCancelled()) {
+            Thread.sleep(1);
+        }
+        throw new RadioBrowserException("disconnected");
+    }
+
+    @Test
+    public void requestsGoToFasterEndpoint() {
+        Stats stats = new Stats();
+        lenient().when(fastDelegate.get("json/stats", Stats.class))
+                .thenAnswer(invocation -> {
+                    clock.addAndGet(100);
+                    return stats;
+                });
+        lenient().when(slowDelegate.get("json/stats", Stats.class))
+                .thenAnswer(invocation -> {
+                    clock.addAndGet(10_000);
+                    return stats;
+                });
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(delegate.get("json/stats", Stats.class), is(stats));
+        }
+
+        // each endpoint is tried once, then the fast one wins
+        verify(fastDelegate, times(9)).get("json/stats", Stats.class);
+        verify(slowDelegate, times(1)).get("json/stats", Stats.class);
+        assertThat(fast.getLatency(), is(100.0));
+        assertThat(slow.getLatency(), is(10_000.0));
+    }
+
+    @Test
+    public void serverErrorCountsPenalty() {
+        fast.observe(100);
+        slow.observe(100_000);
+        when(fastDelegate.get("json/stats", Stats.class))
+                .thenThrow(new RestDelegateImpl.HttpException(503, "busy"));
+
+        assertThrows(RadioBrowserException.class,
+                () -> delegate.get("json/stats", Stats.class));
+
+        assertThat(fast.getLatency(), is(100 + EndpointBalancer.EWMA_WEIGHT
+                * (PENALTY - 100)));
+        assertThat(fast.getInFlight(), is(0));
+    }
+
+    @Test
+    public void clientErrorIsAnAnswer() {
+        fast.observe(100);
+        slow.observe(100_000);
+        when(fastDelegate.get("json/url/x", UrlResponse.class))
+                .thenThrow(new RestDelegateImpl.HttpException(404, "not found"));
+
+        assertThrows(RadioBrowserException.class,
+                () -> delegate.get("json/url/x", UrlResponse.class));
+
+        assertThat(fast.getLatency(), is(100 - EndpointBalancer.EWMA_WEIGHT
+                * 100));
+    }
+
+    @Test
+    public void hedgeWinsOverSlowEndpoint() {
+        BalancingRestDelegate hedging = hedging(1.0, 1_000_000);
+        Stats stats = new Stats();
+        when(fastDelegate.get("json/stats", Stats.class))
+                .thenAnswer(invocation -> hangUntilCancelled());
+        when(slowDelegate.get("json/stats", Stats.class)).thenReturn(stats);
+
+        assertThat(hedging.get("json/stats", Stats.class), is(stats));
+
+        verify(fastDelegate).get("json/stats", Stats.class);
+        verify(slowDelegate).get("json/stats", Stats.class);
+        assertThat(fast.getInFlight(), is(0));
+    }
+
+    @Test
+    public void rejectedHedgeReleasesEndpoint() {
+        for (int i = 0; i < EndpointBalancer.MIN_SAMPLES; i++) {
+            fast.observe(1_000_000);
+            slow.observe(10_000_000);
+        }
+        BalancingRestDelegate hedging = new BalancingRestDelegate(
+                new EndpointBalancer(Arrays.asList(fast, slow), PENALTY),
+                System::nanoTime, 0, 0, 0.5, 1.0, timer,
+                command -> {
+                    throw new RejectedExecutionException("shut down");
+                });
+        RadioBrowserException failure = new RadioBrowserException(
+                new SocketTimeoutException("timeout"));
+        when(fastDelegate.get("json/stats", Stats.class))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(20);
+                    throw failure;
+                });
+
+        RadioBrowserException thrown = assertTimeoutPreemptively(
+                Duration.ofSeconds(5),
+                () -> assertThrows(RadioBrowserException.class,
+                        () -> hedging.get("json/stats", Stats.class)));
+
+        assertThat(thrown, is(sameInstance(failure)));
+        verify(slowDelegate, never()).get("json/stats", Stats.class);
+        assertThat(fast.getInFlight(), is(0));
+        assertThat(slow.getInFlight(), is(0));
+        assertThat(slow.getBreaker().getState(),
+                is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void noHedgeForTimelyAnswer() {
+        BalancingRestDelegate hedging = hedging(1.0, 1_000_000_000);
+        Stats stats = new Stats();
+        when(fastDelegate.get("json/stats", Stats.class)).thenReturn(stats);
+
+        assertThat(hedging.get("json/stats", Stats.class), is(stats));
+
+        verify(slowDelegate, never()).get("json/stats", Stats.class);
+    }
+
+    @Test
+    public void noHedgeWithoutBudget() {
+        BalancingRestDelegate hedging = hedging(0, 1_000_000);
+        Stats stats = new Stats();
+        when(fastDelegate.get("json/stats", Stats.class))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(20);
+                    return stats;
+                });
+
+        assertThat(hedging.get("json/stats", Stats.class), is(stats));
+
+        verify(slowDelegate, never()).get("json/stats", Stats.class);
+    }
+
+    @Test
+    public void noHedgeForWrites() {
+        BalancingRestDelegate hedging = hedging(1.0, 1_000_000);
+        UrlResponse response = new UrlResponse();
+        when(fastDelegate.post(eq("json/vote/x"), anyMap(), eq(UrlResponse.class)))
+                .thenAnswer(invocation -> {
+                    Thread.sleep(20);
+                    return response;
+                });
+
+        assertThat(hedging.post("json/vote/x", Collections.emptyMap(),
+                UrlResponse.class), is(response));
+
+        verify(slowDelegate, never()).post(eq("json/vote/x"), anyMap(),
+                eq(UrlResponse.class));
+    }
+
+    @Test
+    public void isIdempotent() {
+        assertThat(BalancingRestDelegate.isIdempotent("json/stations/search"), is(true));
+        assertThat(BalancingRestDelegate.isIdempotent("json/stats"), is(true));
+        assertThat(BalancingRestDelegate.isIdempotent("json/vote/abc"), is(false));
+        assertThat(BalancingRestDelegate.isIdempotent("/json/add"), is(false));
+        assertThat(BalancingRestDelegate.isIdempotent("json/url/abc"), is(false));
+    }
+
+    /** Creates a delegate that fails over, with breakers opening after
+     * the first failure. */
+    private BalancingRestDelegate failingOver() {
+        fast = new EndpointBalancer.Endpoint("https://fast/", fastDelegate,
+                new CircuitBreaker(1, 60_000, System::currentTimeMillis));
+        slow = new EndpointBalancer.Endpoint("https://slow/", slowDelegate,
+                new CircuitBreaker(1, 60_000, System::currentTimeMillis));
+        fast.observe(100);
+        slow.observe(10_000);
+        return new BalancingRestDelegate(
+                new EndpointBalancer(Arrays.asList(fast, slow), PENALTY),
+                clock::get, 3, 1, 0, 0, null, null);
+    }
+
+    @Test
+    public void failOverToNextEndpoint() {
+        BalancingRestDelegate failingOver = failingOver();
+        Stats stats = new Stats();
+        when(fastDelegate.get("json/stats", Stats.class)).thenThrow(
+                new RadioBrowserException(new ConnectException("refused")));
+        when(slowDelegate.get("json/stats", Stats.class)).thenReturn(stats);
+
+        assertThat(failingOver.get("json/stats", Stats.class), is(stats));
+        assertThat(fast.getBreaker().getState(), is(CircuitBreaker.State.OPEN));
+
+        // the open breaker skips the failing endpoint right away
+        assertThat(failingOver.get("json/stats", Stats.class), is(stats));
+        verify(fastDelegate, times(1)).get("json/stats", Stats.class);
+        verify(slowDelegate, times(2)).get("json/stats", Stats.class);
+    }
+
+    @Test
+    public void failWithoutAvailableEndpoint() {
+        BalancingRestDelegate failingOver = failingOver();
+        when(fastDelegate.get("json/stats", Stats.class)).thenThrow(
+                new RestDelegateImpl.HttpException(503, "busy"));
+        when(slowDelegate.get("json/stats", Stats.class)).thenThrow(
+                new RadioBrowserException(new SocketTimeoutException("read")));
+
+        assertThrows(RadioBrowserException.class,
+                () -> failingOver.get("json/stats", Stats.class));
+        RadioBrowserException e = assertThrows(RadioBrowserException.class,
+                () -> failingOver.get("json/stats", Stats.class));
+
+        assertThat(e.getMessage(), is("No API endpoint available"));
+        verify(fastDelegate, times(1)).get("json/stats", Stats.class);
+        verify(slowDelegate, times(1)).get("json/stats", Stats.class);
+    }
+
+    @Test
+    public void noFailOverForWriteAfterServerError() {
+        BalancingRestDelegate failingOver = failingOver();
+        when(fastDelegate.post(eq("json/vote/x"), anyMap(), eq(UrlResponse.class)))
+                .thenThrow(new RestDelegateImpl.HttpException(503, "busy"));
+
+        assertThrows(RadioBrowserException.class,
+                () -> failingOver.post("json/vote/x", Collections.emptyMap(),
+                        UrlResponse.class));
+
+        verify(slowDelegate, never()).post(eq("json/vote/x"), anyMap(),
+                eq(UrlResponse.class));
+    }
+
+    @Test
+    public void canFailOver() {
+        RadioBrowserException refused =
+                new RadioBrowserException(new ConnectException("refused"));
+        RadioBrowserException timeout =
+                new RadioBrowserException(new SocketTimeoutException("read"));
+        RadioBrowserException serverError =
+                new RestDelegateImpl.HttpException(500, "error");
+        RadioBrowserException clientError =
+                new RestDelegateImpl.HttpException(404, "not found");
+
+        assertThat(BalancingRestDelegate.canFailOver(refused, false), is(true));
+        assertThat(BalancingRestDelegate.canFailOver(timeout, true), is(true));
+        assertThat(BalancingRestDelegate.canFailOver(timeout, false), is(false));
+        assertThat(BalancingRestDelegate.canFailOver(serverError, true), is(true));
+        assertThat(BalancingRestDelegate.canFailOver(serverError, false), is(false));
+        assertThat(BalancingRestDelegate.canFailOver(clientError, true), is(false));
+    }
+
+    @Test
+    public void streamFailsOverBeforeFirstStation() {
+        BalancingRestDelegate failingOver = failingOver();
+        Station station = new Station();
+        doThrow(new RestDelegateImpl.HttpException(503, "busy"))
+                .when(fastDelegate).postWithStations(eq("json/stations"),
+                        anyMap(), any());
+        doAnswer(invocation -> {
+            invocation.<Consumer<Station>>getArgument(2)
+                    .accept(station);
+            return null;
+        }).when(slowDelegate).postWithStations(eq("json/stations"),
+                anyMap(), any());
+        List<Station> received = new ArrayList<>();
+
+        failingOver.postWithStations("json/stations",
+                Collections.emptyMap(), received::add);
+
+        assertThat(received, is(Collections.singletonList(station)));
+    }
+
+    @Test
+    public void noStreamFailOverAfterFirstStation() {
+        BalancingRestDelegate failingOver = failingOver();
+        doAnswer(invocation -> {
+            invocation.<Consumer<Station>>getArgument(2)
+                    .accept(new Station());
+            throw new RadioBrowserException(
+                    new SocketTimeoutException("read"));
+        }).when(fastDelegate).postWithStations(eq("json/stations"),
+                anyMap(), any());
+        List<Station> received = new ArrayList<>();
+
+        assertThrows(RadioBrowserException.class,
+                () -> failingOver.postWithStations("json/stations",
+                        Collections.emptyMap(), received::add));
+
+        assertThat(received.size(), is(1));
+        verify(slowDelegate, never()).postWithStations(eq("json/stations"),
+                anyMap(), any());
+    }
+
+    @Test
+    public void retryAfterAllEndpointsFailed() {
+        BalancingRestDelegate retrying = new BalancingRestDelegate(
+                new EndpointBalancer(Arrays.asList(fast, slow), PENALTY),
+                clock::get, 3, 1, 0, 0, null, null);
+        Stats stats = new Stats();
+        when(fastDelegate.get("json/stats", Stats.class))
+                .thenThrow(new RestDelegateImpl.HttpException(503, "busy"))
+                .thenReturn(stats);
+        when(slowDelegate.get("json/stats", Stats.class))
+                .thenThrow(new RestDelegateImpl.HttpException(503, "busy"));
+
+        assertThat(retrying.get("json/stats", Stats.class), is(stats));
+        verify(fastDelegate, times(2)).get("json/stats", Stats.class);
+    }
+
+    @Test
+    public void consumerFailureKeepsBreakerClosed() {
+        BalancingRestDelegate failingOver = failingOver();
+        doAnswer(invocation -> {
+            invocation.<Consumer<Station>>getArgument(2)
+                    .accept(new Station());
+            return null;
+        }).when(fastDelegate).postWithStations(eq("json/stations"),
+                anyMap(), any());
+
+        assertThrows(IllegalStateException.class,
+                () -> failingOver.postWithStations("json/stations",
+                        Collections.emptyMap(), station -> {
+                            throw new IllegalStateException("consumer");
+                        }));
+
+        assertThat(fast.getBreaker().getState(),
+                is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void isEndpointFailure() {
+        assertThat(BalancingRestDelegate.isEndpointFailure(
+                new RadioBrowserException(new ConnectException("refused"))),
+                is(true));
+        assertThat(BalancingRestDelegate.isEndpointFailure(
+                new RadioBrowserException(new SocketTimeoutException("read"))),
+                is(true));
+        assertThat(BalancingRestDelegate.isEndpointFailure(
+                new RestDelegateImpl.HttpException(503, "busy")), is(true));
+        assertThat(BalancingRestDelegate.isEndpointFailure(
+                new RestDelegateImpl.HttpException(404, "not found")),
+                is(false));
+        assertThat(BalancingRestDelegate.isEndpointFailure(
+                new RadioBrowserException(new MalformedJsonException("x"))),
+                is(false));
+        assertThat(BalancingRestDelegate.isEndpointFailure(
+                new IllegalStateException("consumer")), is(false));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the {@link CircuitBreaker}.
+ * @author Stephan Fuhrmann
+ */
+public class CircuitBreakerTest {
+
+    /** The open time in milliseconds. */
+    private static final long OPEN_TIME = 1000;
+
+    /** The fake clock in milliseconds. */
+    private AtomicLong clock;
+
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    public void create() {
+        clock = new AtomicLong(10_000);
+        breaker = new CircuitBreaker(2, OPEN_TIME, clock::get);
+    }
+
+    private long acquire() {
+        long permit = breaker.tryAcquire();
+        assertThat(permit, is(not(CircuitBreaker.REJECTED)));
+        return permit;
+    }
+
+    private void fail() {
+        breaker.onFailure(acquire());
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        fail();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+        fail();
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(breaker.isAvailable(), is(false));
+        assertThat(breaker.tryAcquire(), is(CircuitBreaker.REJECTED));
+    }
+
+    @Test
+    public void successResetsFailures() {
+        fail();
+        breaker.onSuccess(acquire());
+        fail();
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void halfOpenLetsSingleProbePass() {
+        fail();
+        fail();
+        clock.addAndGet(OPEN_TIME);
+
+        assertThat(breaker.isAvailable(), is(true));
+        acquire();
+        assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+        assertThat(breaker.tryAcquire(), is(CircuitBreaker.REJECTED));
+    }
+
+    @Test
+    public void successfulProbeCloses() {
+        fail();
+        fail();
+        clock.addAndGet(OPEN_TIME);
+        long probe = acquire();
+
+        breaker.onSuccess(probe);
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.CLOSED));
+        acquire();
+    }
+
+    @Test
+    public void failedProbeOpensAgain() {
+        fail();
+        fail();
+        clock.addAndGet(OPEN_TIME);
+        long probe = acquire();
+
+        breaker.onFailure(probe);
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        clock.addAndGet(OPEN_TIME - 1);
+        assertThat(breaker.isAvailable(), is(false));
+        clock.addAndGet(1);
+        assertThat(breaker.isAvailable(), is(true));
+    }
+
+    @Test
+    public void lateSuccessKeepsBreakerOpen() {
+        long late = acquire();
+        fail();
+        fail();
+
+        breaker.onSuccess(late);
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        clock.addAndGet(OPEN_TIME);
+        breaker.onFailure(acquire());
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void lateFailureKeepsOpenTime() {
+        long late = acquire();
+        fail();
+        fail();
+        clock.addAndGet(OPEN_TIME - 1);
+
+        breaker.onFailure(late);
+
+        clock.addAndGet(1);
+        assertThat(breaker.isAvailable(), is(true));
+    }
+
+    @Test
+    public void lateOutcomeLeavesProbeRunning() {
+        long late = acquire();
+        fail();
+        fail();
+        clock.addAndGet(OPEN_TIME);
+        acquire();
+
+        breaker.onCancel(late);
+        breaker.onSuccess(late);
+
+        assertThat(breaker.getState(), is(CircuitBreaker.State.HALF_OPEN));
+        assertThat(breaker.tryAcquire(), is(CircuitBreaker.REJECTED));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for the CompletionIndex class.
+ * @author Stephan Fuhrmann
+ */
+public class CompletionIndexTest {
+
+    private static CompletionIndex tags() {
+        Map<String, Integer> tags = new HashMap<>();
+        tags.put("pop", 500);
+        tags.put("pop rock", 40);
+        tags.put("polka", 12);
+        tags.put("podcast", 40);
+        tags.put("rock", 300);
+        tags.put("jazz", 80);
+        tags.put("Jazz", 3);
+        tags.put("", 7);
+        return CompletionIndex.of(tags);
+    }
+
+    @Test
+    public void completeByCount() {
+        assertThat(tags().complete("po", 10),
+                is(Arrays.asList("pop", "podcast", "pop rock", "polka")));
+    }
+
+    @Test
+    public void completeWithLimit() {
+        assertThat(tags().complete("po", 2),
+                is(Arrays.asList("pop", "podcast")));
+    }
+
+    @Test
+    public void completeIgnoresCase() {
+        assertThat(tags().complete("ROC", 10),
+                is(Collections.singletonList("rock")));
+    }
+
+    @Test
+    public void completeWithLengthChangingLowerCase() {
+        // the lower case of the dotted capital I has two chars
+        CompletionIndex index = CompletionIndex.of(
+                Collections.singletonMap("\u0130stanbul", 5));
+
+        assertThat(index.complete("\u0130st", 10),
+                is(Collections.singletonList("\u0130stanbul")));
+        assertThat(index.complete("ist", 10),
+                is(Collections.singletonList("\u0130stanbul")));
+    }
+
+    @Test
+    public void completeWithoutMatch() {
+        assertThat(tags().complete("x", 10), is(Collections.emptyList()));
+        assertThat(tags().complete("rockabilly", 10),
+                is(Collections.emptyList()));
+    }
+
+    @Test
+    public void completeEmptyPrefix() {
+        assertThat(tags().complete("", 3),
+                is(Arrays.asList("pop", "rock", "jazz")));
+    }
+
+    @Test
+    public void mergeCaseVariants() {
+        CompletionIndex index = tags();
+
+        assertThat(index.size(), is(6));
+        assertThat(index.complete("j", 10),
+                is(Collections.singletonList("jazz")));
+    }
+
+    @Test
+    public void completeNames() {
+        List<Station> catalog = StationMirrorTest.catalog();
+        CompletionIndex index = CompletionIndex.ofNames(catalog);
+
+        for (Station station : catalog) {
+            String prefix = station.getName().substring(0, 3);
+            assertThat(index.complete(prefix, catalog.size())
+                    .contains(station.getName().trim()), is(true));
+        }
+    }
+
+    @Test
+    public void completeWithIllegalLimit() {
+        assertThrows(IllegalArgumentException.class,
+                () -> tags().complete("po", 0));
+    }
+}
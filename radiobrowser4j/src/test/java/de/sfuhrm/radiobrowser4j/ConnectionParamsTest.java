@@ -0,0 +1,76 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for the {@link ConnectionParams}.
+ * @author Stephan Fuhrmann
+ */
+public class ConnectionParamsTest {
+
+    private ConnectionParams.ConnectionParamsBuilder builder() {
+        return ConnectionParams.builder()
+                .apiUrl("http://localhost/")
+                .timeout(5000)
+                .userAgent("test");
+    }
+
+    @Test
+    public void checkWithValidCacheTtlPerPath() {
+        builder().cacheTtlForPath("json/tags", 0L)
+                .cacheTtlForPath("json/stats", 1000L)
+                .build().check();
+    }
+
+    @Test
+    public void checkWithNegativeCacheTtlPerPath() {
+        ConnectionParams params = builder()
+                .cacheTtlForPath("json/tags", -1L).build();
+
+        assertThrows(IllegalArgumentException.class, params::check);
+    }
+
+    @Test
+    public void checkWithNullCacheTtlPerPath() {
+        ConnectionParams params = builder()
+                .cacheTtlPerPath(Collections.singletonMap("json/tags", null))
+                .build();
+
+        assertThrows(IllegalArgumentException.class, params::check);
+    }
+
+    @Test
+    public void cacheTtlForPathKeepsBuiltParams() {
+        ConnectionParams.ConnectionParamsBuilder builder = builder()
+                .cacheTtlForPath("json/tags", 1000L);
+        ConnectionParams params = builder.build();
+
+        builder.cacheTtlForPath("json/stats", 2000L);
+
+        assertThat(params.getCacheTtlPerPath(),
+                is(Collections.singletonMap("json/tags", 1000L)));
+        assertThat(builder.build().getCacheTtlPerPath().size(), is(2));
+        assertThat(builder().build().getCacheTtlPerPath().isEmpty(), is(true));
+    }
+}
@@ -0,0 +1,155 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for the {@link EndpointBalancer}.
+ * @author Stephan Fuhrmann
+ */
+public class EndpointBalancerTest {
+
+    /** The failure penalty in nanoseconds. */
+    private static final long PENALTY = 5_000;
+
+    private EndpointBalancer.Endpoint fast;
+
+    private EndpointBalancer.Endpoint slow;
+
+    private EndpointBalancer balancer;
+
+    @BeforeEach
+    public void create() {
+        fast = new EndpointBalancer.Endpoint("https://fast/", null);
+        slow = new EndpointBalancer.Endpoint("https://slow/", null);
+        balancer = new EndpointBalancer(Arrays.asList(slow, fast), PENALTY);
+    }
+
+    @Test
+    public void createWithoutEndpoints() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new EndpointBalancer(Collections.emptyList(), PENALTY));
+    }
+
+    @Test
+    public void movingAverage() {
+        fast.observe(100);
+        assertThat(fast.getLatency(), is(100.0));
+        fast.observe(200);
+        assertThat(fast.getLatency(), is(120.0));
+    }
+
+    @Test
+    public void acquirePrefersFasterEndpoint() {
+        fast.observe(100);
+        slow.observe(1_000);
+
+        for (int i = 0; i < 10; i++) {
+            EndpointBalancer.Lease lease = balancer.acquire();
+            assertThat(lease.getEndpoint(), is(sameInstance(fast)));
+            balancer.release(lease, 100, true);
+        }
+    }
+
+    @Test
+    public void acquirePrefersUnmeasuredEndpoint() {
+        fast.observe(100);
+
+        assertThat(balancer.acquire().getEndpoint(), is(sameInstance(slow)));
+    }
+
+    @Test
+    public void acquireCountsRequestsInFlight() {
+        fast.observe(100);
+        slow.observe(350);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(balancer.acquire().getEndpoint(),
+                    is(sameInstance(fast)));
+        }
+        assertThat(fast.getInFlight(), is(3));
+        // four requests on the fast endpoint take longer than one more
+        // on the slow endpoint
+        assertThat(balancer.acquire().getEndpoint(), is(sameInstance(slow)));
+    }
+
+    @Test
+    public void releaseWithFailureCountsPenalty() {
+        EndpointBalancer single = new EndpointBalancer(
+                Collections.singletonList(fast), PENALTY);
+
+        EndpointBalancer.Lease lease = single.acquire();
+        assertThat(fast.getInFlight(), is(1));
+        single.release(lease, 10, false);
+
+        assertThat(fast.getInFlight(), is(0));
+        assertThat(fast.getLatency(), is((double) PENALTY));
+    }
+
+    @Test
+    public void percentile() {
+        for (int i = 1; i < EndpointBalancer.MIN_SAMPLES; i++) {
+            fast.observe(i * 100);
+        }
+        assertThat(fast.percentile(0.5), is(-1L));
+
+        fast.observe(EndpointBalancer.MIN_SAMPLES * 100);
+        assertThat(fast.percentile(0.5), is(400L));
+        assertThat(fast.percentile(1.0), is(800L));
+        assertThat(fast.percentile(0), is(100L));
+    }
+
+    @Test
+    public void acquireSkipsOpenBreaker() {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD_DEFAULT; i++) {
+            EndpointBalancer.Lease lease =
+                    balancer.acquire(Collections.singleton(slow));
+            assertThat(lease.getEndpoint(), is(sameInstance(fast)));
+            balancer.release(lease, 100, false);
+        }
+
+        assertThat(fast.getBreaker().getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(balancer.acquire().getEndpoint(), is(sameInstance(slow)));
+        assertThat(balancer.acquire(Collections.singleton(slow)), is(nullValue()));
+    }
+
+    @Test
+    public void lateReleaseKeepsBreakerOpen() {
+        EndpointBalancer single = new EndpointBalancer(
+                Collections.singletonList(fast), PENALTY);
+        EndpointBalancer.Lease late = single.acquire();
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD_DEFAULT; i++) {
+            single.release(single.acquire(), 100, false);
+        }
+
+        single.release(late, 100, true);
+
+        assertThat(fast.getInFlight(), is(0));
+        assertThat(fast.getBreaker().getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(single.acquire(), is(nullValue()));
+    }
+}
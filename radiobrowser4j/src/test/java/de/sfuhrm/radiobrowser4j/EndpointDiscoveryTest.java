@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -133,4 +134,25 @@ public class EndpointDiscoveryTest {
         verify(executorService, times(1)).shutdown();
     }
 
+    @Test
+    public void discoverAll() throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        EndpointDiscovery.DiscoveryResult slow = new EndpointDiscovery.DiscoveryResult("https://127.0.0.1/", 300, new Stats());
+        EndpointDiscovery.DiscoveryResult fast = new EndpointDiscovery.DiscoveryResult("https://127.0.0.2/", 100, new Stats());
+
+        InetAddress[] inetAddresses = new InetAddress[] {inetAddress, inetAddress};
+        when(inetAddressHelper.getAllByName(EndpointDiscovery.DNS_API_ADDRESS)).thenReturn(inetAddresses);
+        when(executorService.submit(ArgumentMatchers.any(Callable.class))).thenReturn(future);
+        when(future.get(anyLong(), any())).thenReturn(slow, fast);
+
+        List<EndpointDiscovery.DiscoveryResult> results = endpointDiscovery.discoverAll();
+        assertThat(results, is(Arrays.asList(fast, slow)));
+
+        ConnectionParams params = ConnectionParams.builder()
+                .endpoints(results)
+                .userAgent("my useragent")
+                .timeout(1000)
+                .build();
+        assertThat(params.getApiUrl(), is("https://127.0.0.2/"));
+        assertThat(params.apiUrls(), is(Arrays.asList("https://127.0.0.2/", "https://127.0.0.1/")));
+    }
 }
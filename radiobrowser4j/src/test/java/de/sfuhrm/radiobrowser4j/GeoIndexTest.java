@@ -0,0 +1,165 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for the GeoIndex class.
+ * @author Stephan Fuhrmann
+ */
+public class GeoIndexTest {
+
+    private static Station located(final int id,
+                                   final Double latitude,
+                                   final Double longitude) {
+        Station station = StationMirrorTest.station(id, "Station " + id,
+                "DE", "pop", id % 2 == 0 ? "MP3" : "AAC", 128, true,
+                "http://example.com/" + id);
+        station.setGeoLatitude(latitude);
+        station.setGeoLongitude(longitude);
+        return station;
+    }
+
+    private static List<Station> randomCatalog(final int size) {
+        Random random = new Random(42);
+        List<Station> stations = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            double latitude = Math.toDegrees(
+                    Math.asin(2 * random.nextDouble() - 1));
+            double longitude = random.nextDouble() * 360 - 180;
+            stations.add(located(i, latitude, longitude));
+        }
+        return stations;
+    }
+
+    private static double distance(final Station station,
+                                   final double latitude,
+                                   final double longitude) {
+        return GeoIndex.distanceKm(latitude, longitude,
+                station.getGeoLatitude(), station.getGeoLongitude());
+    }
+
+    private static List<Station> scan(final List<Station> stations,
+                                      final double latitude,
+                                      final double longitude,
+                                      final Predicate<Station> filter) {
+        return stations.stream()
+                .filter(filter)
+                .sorted(Comparator.comparingDouble(
+                        s -> distance(s, latitude, longitude)))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void distanceBerlinMunich() {
+        assertThat(GeoIndex.distanceKm(52.52, 13.405, 48.137, 11.575),
+                closeTo(504, 2));
+        assertThat(GeoIndex.distanceKm(0, 0, 0, 180),
+                closeTo(Math.PI * GeoIndex.EARTH_RADIUS_KM, 0.001));
+    }
+
+    @Test
+    public void nearestLikeScan() {
+        List<Station> stations = randomCatalog(2000);
+        GeoIndex index = GeoIndex.of(stations);
+        Random random = new Random(7);
+
+        for (int i = 0; i < 50; i++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+            assertThat(index.nearest(latitude, longitude, 10),
+                    is(scan(stations, latitude, longitude, s -> true)
+                            .subList(0, 10)));
+        }
+    }
+
+    @Test
+    public void nearestWithFilter() {
+        List<Station> stations = randomCatalog(2000);
+        GeoIndex index = GeoIndex.of(stations);
+        Predicate<Station> mp3 = s -> s.getCodec().equals("MP3");
+
+        assertThat(index.nearest(50, 8, 5, mp3),
+                is(scan(stations, 50, 8, mp3).subList(0, 5)));
+    }
+
+    @Test
+    public void nearestAcrossDateLine() {
+        List<Station> stations = new ArrayList<>();
+        stations.add(located(1, 0.0, 179.9));
+        stations.add(located(2, 0.0, 170.0));
+        stations.add(located(3, 0.0, -179.0));
+
+        List<Station> list = GeoIndex.of(stations).nearest(0, -179.95, 2);
+
+        assertThat(list.get(0).getStationUUID(),
+                is(stations.get(0).getStationUUID()));
+        assertThat(list.get(1).getStationUUID(),
+                is(stations.get(2).getStationUUID()));
+    }
+
+    @Test
+    public void withinLikeScan() {
+        List<Station> stations = randomCatalog(2000);
+        GeoIndex index = GeoIndex.of(stations);
+        Predicate<Station> aac = s -> s.getCodec().equals("AAC");
+
+        List<Station> expected = scan(stations, 10, 20,
+                s -> distance(s, 10, 20) <= 1500 && aac.test(s));
+        assertThat(index.within(10, 20, 1500, aac), is(expected));
+        assertThat(index.within(10, 20, 50000).size(), is(stations.size()));
+    }
+
+    @Test
+    public void ignoreStationsWithoutLocation() {
+        List<Station> stations = new ArrayList<>();
+        stations.add(located(1, null, null));
+        stations.add(located(2, 95.0, 10.0));
+        stations.add(located(3, 50.0, 10.0));
+
+        GeoIndex index = GeoIndex.of(stations);
+
+        assertThat(index.size(), is(1));
+        assertThat(index.nearest(0, 0, 10).size(), is(1));
+        assertThat(GeoIndex.of(new ArrayList<>()).nearest(0, 0, 10).size(),
+                is(0));
+    }
+
+    @Test
+    public void illegalArguments() {
+        GeoIndex index = GeoIndex.of(randomCatalog(10));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> index.nearest(91, 0, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.nearest(0, 0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.within(0, 0, -1));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for the PageSizePolicy class.
+ * @author Stephan Fuhrmann
+ */
+public class PageSizePolicyTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    public void growWithConstantLatency() {
+        PageSizePolicy policy = new PageSizePolicy(16, 100);
+
+        int[] sizes = new int[6];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = policy.nextPageSize();
+            policy.observe(sizes[i], sizes[i], 50 * MILLIS);
+        }
+
+        assertThat(sizes, is(new int[] {16, 32, 64, 100, 100, 100}));
+    }
+
+    @Test
+    public void stopGrowingWithoutImprovement() {
+        PageSizePolicy policy = new PageSizePolicy(16, 1024);
+
+        policy.observe(16, 16, 16 * MILLIS);
+        policy.observe(32, 32, 32 * MILLIS);
+
+        assertThat(policy.nextPageSize(), is(32));
+    }
+
+    @Test
+    public void ignoreShortAndOutdatedPages() {
+        PageSizePolicy policy = new PageSizePolicy(16, 1024);
+
+        policy.observe(16, 3, MILLIS);
+        assertThat(policy.nextPageSize(), is(16));
+
+        policy.observe(8, 8, MILLIS);
+        assertThat(policy.nextPageSize(), is(16));
+    }
+
+    @Test
+    public void fixed() {
+        PageSizePolicy policy = PageSizePolicy.fixed(128);
+
+        policy.observe(128, 128, MILLIS);
+
+        assertThat(policy.nextPageSize(), is(128));
+    }
+
+    @Test
+    public void copyKeepsPageSize() {
+        PageSizePolicy policy = new PageSizePolicy(16, 1024);
+        policy.observe(16, 16, MILLIS);
+
+        PageSizePolicy copy = policy.copy();
+
+        assertThat(copy.nextPageSize(), is(32));
+        assertThat(copy.getMaxPageSize(), is(1024));
+    }
+
+    @Test
+    public void illegalSizes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PageSizePolicy(0, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PageSizePolicy(20, 10));
+    }
+}
@@ -0,0 +1,202 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the PagingPublisher.
+ * @author Stephan Fuhrmann
+ */
+public class PagingPublisherTest {
+
+    /** Records all signals. */
+    private static class RecordingSubscriber implements Subscriber<Integer> {
+        private Subscription subscription;
+        private final List<Integer> elements = new ArrayList<>();
+        private boolean completed;
+        private Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+        }
+
+        @Override
+        public void onNext(Integer integer) {
+            elements.add(integer);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static Stream<Integer> pagedStream(int total, AtomicInteger fetchCount) {
+        return StreamSupport.stream(new PagingSpliterator<>(
+                paging -> {
+                    fetchCount.incrementAndGet();
+                    if (paging.getOffset() >= total) {
+                        return Collections.<Integer>emptyList();
+                    }
+                    return IntStream.range(paging.getOffset(),
+                                    Math.min(total, paging.getOffset() + paging.getLimit()))
+                            .boxed()
+                            .collect(Collectors.toList());
+                }, null), false);
+    }
+
+    @Test
+    public void noFetchWithoutDemand() {
+        AtomicInteger fetchCount = new AtomicInteger();
+        PagingPublisher<Integer> publisher = new PagingPublisher<>(
+                () -> pagedStream(1000, fetchCount), Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+
+        publisher.subscribe(subscriber);
+
+        assertThat(fetchCount.get(), is(0));
+        assertThat(subscriber.elements.isEmpty(), is(true));
+    }
+
+    @Test
+    public void fetchesPagesOnlyOnDemand() {
+        AtomicInteger fetchCount = new AtomicInteger();
+        PagingPublisher<Integer> publisher = new PagingPublisher<>(
+                () -> pagedStream(1000, fetchCount), Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(10);
+        assertThat(subscriber.elements.size(), is(10));
+        assertThat(fetchCount.get(), is(1));
+
+        subscriber.subscription.request(118);
+        assertThat(subscriber.elements.size(), is(128));
+        // the element after the demand is pulled ahead
+        assertThat(fetchCount.get(), is(2));
+
+        subscriber.subscription.request(1);
+        assertThat(subscriber.elements.size(), is(129));
+        assertThat(fetchCount.get(), is(2));
+        assertThat(subscriber.completed, is(false));
+    }
+
+    @Test
+    public void completesAfterAllElements() {
+        AtomicInteger fetchCount = new AtomicInteger();
+        PagingPublisher<Integer> publisher = new PagingPublisher<>(
+                () -> pagedStream(300, fetchCount), Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertThat(subscriber.elements, is(IntStream.range(0, 300).boxed().collect(Collectors.toList())));
+        assertThat(subscriber.completed, is(true));
+        assertThat(subscriber.error, is(nullValue()));
+    }
+
+    @Test
+    public void cancelStopsEmission() {
+        AtomicInteger fetchCount = new AtomicInteger();
+        PagingPublisher<Integer> publisher = new PagingPublisher<>(
+                () -> pagedStream(1000, fetchCount), Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(5);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(5);
+
+        assertThat(subscriber.elements.size(), is(5));
+        assertThat(subscriber.completed, is(false));
+    }
+
+    @Test
+    public void illegalRequestSignalsError() {
+        AtomicInteger fetchCount = new AtomicInteger();
+        PagingPublisher<Integer> publisher = new PagingPublisher<>(
+                () -> pagedStream(1000, fetchCount), Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+
+        assertThat(subscriber.error, instanceOf(IllegalArgumentException.class));
+        assertThat(fetchCount.get(), is(0));
+    }
+
+    @Test
+    public void completesWithExactDemand() {
+        for (int total : new int[] {300, 256}) {
+            AtomicInteger fetchCount = new AtomicInteger();
+            PagingPublisher<Integer> publisher = new PagingPublisher<>(
+                    () -> pagedStream(total, fetchCount), Runnable::run);
+            RecordingSubscriber subscriber = new RecordingSubscriber();
+            publisher.subscribe(subscriber);
+
+            subscriber.subscription.request(total);
+
+            assertThat(subscriber.elements.size(), is(total));
+            assertThat(subscriber.completed, is(true));
+        }
+    }
+
+    @Test
+    public void failingOnNextCancels() {
+        AtomicInteger fetchCount = new AtomicInteger();
+        PagingPublisher<Integer> publisher = new PagingPublisher<>(
+                () -> pagedStream(1000, fetchCount), Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(Integer integer) {
+                super.onNext(integer);
+                throw new IllegalStateException("subscriber");
+            }
+        };
+        publisher.subscribe(subscriber);
+
+        subscriber.subscription.request(5);
+        subscriber.subscription.request(5);
+
+        assertThat(subscriber.elements.size(), is(1));
+        assertThat(subscriber.error, is(nullValue()));
+        assertThat(subscriber.completed, is(false));
+    }
+}
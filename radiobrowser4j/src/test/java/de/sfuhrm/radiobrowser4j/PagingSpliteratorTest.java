@@ -15,10 +15,17 @@
 */
 package de.sfuhrm.radiobrowser4j;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
@@ -27,6 +34,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * Test for the spliterator.
@@ -148,4 +156,260 @@ public class PagingSpliteratorTest {
         assertThat(actual, is(sourceData));
         assertThat("partial page should not trigger a second fetch", fetchCount.get(), is(1));
     }
+
+    private static Function<Paging, List<Integer>> range(final int size,
+                                                        final AtomicInteger fetchCount) {
+        return paging -> {
+            fetchCount.incrementAndGet();
+            return IntStream.range(paging.getOffset(),
+                    Math.min(size, paging.getOffset() + paging.getLimit()))
+                    .boxed()
+                    .collect(Collectors.toList());
+        };
+    }
+
+    @Test
+    public void testPrefetchKeepsOrder() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                    range(1000, new AtomicInteger()), null, 3, executor);
+
+            List<Integer> actual = StreamSupport.stream(spliterator, false)
+                    .collect(Collectors.toList());
+
+            assertThat(actual, is(IntStream.range(0, 1000)
+                    .boxed()
+                    .collect(Collectors.toList())));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPrefetchStopsAtViewEnd() {
+        AtomicInteger fetchCount = new AtomicInteger();
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                range(1000, fetchCount), Paging.at(10, 200), 5, Runnable::run);
+
+        List<Integer> actual = StreamSupport.stream(spliterator, false)
+                .collect(Collectors.toList());
+
+        assertThat(actual, is(IntStream.range(10, 210)
+                .boxed()
+                .collect(Collectors.toList())));
+        assertThat(fetchCount.get(), is(2));
+    }
+
+    @Test
+    public void testCloseCancelsPrefetches() {
+        List<Runnable> pending = new ArrayList<>();
+        AtomicInteger fetchCount = new AtomicInteger();
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                range(1000, fetchCount), null, 2, pending::add);
+
+        spliterator.tryAdvance(i -> { });
+        assertThat(pending.size(), is(2));
+
+        spliterator.close();
+
+        for (Runnable task : pending) {
+            assertThat(((Future<?>) task).isCancelled(), is(true));
+            task.run();
+        }
+        assertThat(fetchCount.get(), is(1));
+        assertThat(spliterator.tryAdvance(i -> { }), is(false));
+    }
+
+    @Test
+    public void testPrefetchFailure() {
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                paging -> {
+                    if (paging.getOffset() > 0) {
+                        throw new RadioBrowserException("failed");
+                    }
+                    return IntStream.range(0, paging.getLimit())
+                            .boxed()
+                            .collect(Collectors.toList());
+                }, null, 2, Runnable::run);
+
+        assertThrows(RadioBrowserException.class, () ->
+                StreamSupport.stream(spliterator, false)
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSplitViewIntoPages() {
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                range(1000, new AtomicInteger()), Paging.at(10, 600));
+
+        Spliterator<Integer> prefix = spliterator.trySplit();
+
+        assertThat(prefix.estimateSize(), is(256L));
+        assertThat(spliterator.estimateSize(), is(344L));
+        List<Integer> actual = new ArrayList<>();
+        prefix.forEachRemaining(actual::add);
+        spliterator.forEachRemaining(actual::add);
+        assertThat(actual, is(IntStream.range(10, 610)
+                .boxed()
+                .collect(Collectors.toList())));
+    }
+
+    @Test
+    public void testEstimateSizeAfterAdvance() {
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                range(1000, new AtomicInteger()), Paging.at(0, 100));
+
+        spliterator.tryAdvance(i -> { });
+
+        assertThat(spliterator.estimateSize(), is(99L));
+    }
+
+    @Test
+    public void testParallelStreamWithView() {
+        AtomicInteger fetchCount = new AtomicInteger();
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                range(5000, fetchCount), Paging.at(0, 3000));
+
+        List<Integer> actual = StreamSupport.stream(spliterator, true)
+                .collect(Collectors.toList());
+
+        assertThat(actual, is(IntStream.range(0, 3000)
+                .boxed()
+                .collect(Collectors.toList())));
+        assertThat(fetchCount.get(), is(24));
+    }
+
+    @Test
+    public void testParallelStreamWithSizeHint() {
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                range(3100, new AtomicInteger()), null, 0, null, () -> 3000);
+
+        assertThat(spliterator.estimateSize(), is(3000L));
+        List<Integer> actual = StreamSupport.stream(spliterator, true)
+                .collect(Collectors.toList());
+
+        assertThat(actual, is(IntStream.range(0, 3100)
+                .boxed()
+                .collect(Collectors.toList())));
+    }
+
+    @Test
+    public void testUnknownSizeHint() {
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                range(300, new AtomicInteger()), null, 0, null, () -> -1);
+
+        assertThat(spliterator.estimateSize(), is(Long.MAX_VALUE));
+        assertThat(StreamSupport.stream(spliterator, true).count(), is(300L));
+    }
+
+    @Test
+    public void testAdaptivePageSize() {
+        List<Paging> requested = new ArrayList<>();
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                paging -> {
+                    requested.add(paging);
+                    return range(1000, new AtomicInteger()).apply(paging);
+                }, null, 0, null, null, new PageSizePolicy(4, 64));
+
+        List<Integer> actual = StreamSupport.stream(spliterator, false)
+                .collect(Collectors.toList());
+
+        assertThat(actual, is(IntStream.range(0, 1000)
+                .boxed()
+                .collect(Collectors.toList())));
+        assertThat(requested.get(0), is(Paging.at(0, 4)));
+        for (int i = 1; i < requested.size(); i++) {
+            Paging previous = requested.get(i - 1);
+            assertThat(requested.get(i).getOffset(),
+                    is(previous.getOffset() + previous.getLimit()));
+            assertThat(requested.get(i).getLimit()
+                    >= previous.getLimit(), is(true));
+            assertThat(requested.get(i).getLimit() <= 64, is(true));
+        }
+    }
+
+    @Test
+    public void testForEachRemainingWhileReading() {
+        List<Integer> seen = new ArrayList<>();
+        List<Integer> fetchedPages = new ArrayList<>();
+        List<Integer> readPages = new ArrayList<>();
+        PagingSpliterator.PageReader<Integer> reader =
+                new PagingSpliterator.PageReader<Integer>() {
+            @Override
+            public List<Integer> fetch(final Paging paging) {
+                fetchedPages.add(paging.getOffset());
+                List<Integer> data = new ArrayList<>();
+                elements(paging, data::add);
+                return data;
+            }
+
+            @Override
+            public void read(final Paging paging,
+                             final Consumer<? super Integer> consumer) {
+                readPages.add(paging.getOffset());
+                elements(paging, consumer);
+            }
+
+            private void elements(final Paging paging,
+                                  final Consumer<? super Integer> consumer) {
+                int end = Math.min(paging.getOffset() + paging.getLimit(), 25);
+                for (int i = paging.getOffset(); i < end; i++) {
+                    consumer.accept(i);
+                }
+            }
+        };
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                reader, Paging.at(3, 17), 0, null, null,
+                new PageSizePolicy(4, 8));
+
+        spliterator.tryAdvance(seen::add);
+        spliterator.forEachRemaining(seen::add);
+
+        assertThat(seen, is(IntStream.range(3, 20)
+                .boxed()
+                .collect(Collectors.toList())));
+        assertThat(fetchedPages, is(Collections.singletonList(3)));
+        assertThat(readPages.isEmpty(), is(false));
+        assertThat(spliterator.estimateSize(), is(0L));
+        assertThat(spliterator.tryAdvance(seen::add), is(false));
+    }
+
+    @Test
+    public void testSlowConsumerKeepsPagesGrowing() {
+        List<Integer> pageSizes = new ArrayList<>();
+        PagingSpliterator.PageReader<Integer> reader =
+                new PagingSpliterator.PageReader<Integer>() {
+            @Override
+            public List<Integer> fetch(final Paging paging) {
+                throw new IllegalStateException("pages are read");
+            }
+
+            @Override
+            public void read(final Paging paging,
+                             final Consumer<? super Integer> consumer) {
+                pageSizes.add(paging.getLimit());
+                sleep(2);
+                int end = Math.min(paging.getOffset() + paging.getLimit(), 200);
+                for (int i = paging.getOffset(); i < end; i++) {
+                    consumer.accept(i);
+                }
+            }
+        };
+        PagingSpliterator<Integer> spliterator = new PagingSpliterator<>(
+                reader, null, 0, null, null, new PageSizePolicy(4, 64));
+
+        spliterator.forEachRemaining(element -> sleep(2));
+
+        // the consumer is as slow per element as the server per page
+        assertThat(pageSizes.contains(64), is(true));
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
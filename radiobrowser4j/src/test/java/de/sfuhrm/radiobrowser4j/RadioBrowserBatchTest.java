@@ -0,0 +1,146 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Test for the batched lookups of the RadioBrowser class.
+ * @author Stephan Fuhrmann
+ */
+@ExtendWith(MockitoExtension.class)
+public class RadioBrowserBatchTest {
+
+    /** The number of stations known to the server. */
+    private static final int KNOWN = 200;
+
+    @Mock
+    private RestDelegate rest;
+
+    private RadioBrowser browser;
+
+    /** The UUIDs of each request. */
+    private List<List<String>> requested;
+
+    @BeforeEach
+    public void create() {
+        requested = Collections.synchronizedList(new ArrayList<>());
+        lenient().when(rest.postWithListOfStation(
+                eq("json/stations/byuuid"), anyMap()))
+                .thenAnswer(invocation -> {
+                    Map<String, String> params = invocation.getArgument(1);
+                    List<String> uuids = Arrays.asList(
+                            params.get("uuids").split(","));
+                    requested.add(uuids);
+                    return uuids.stream()
+                            .map(UUID::fromString)
+                            .filter(uuid -> uuid.getLeastSignificantBits() < KNOWN)
+                            .map(uuid -> station((int) uuid.getLeastSignificantBits()))
+                            .collect(Collectors.toList());
+                });
+        browser = new RadioBrowser(rest);
+    }
+
+    private static Station station(final int id) {
+        return StationMirrorTest.station(id, "Station " + id, "DE", "pop",
+                "MP3", 128, true, "http://example.com/" + id);
+    }
+
+    private static List<UUID> uuids(final int from, final int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> new UUID(0, i))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void getStationsByUUIDsWithOneBatch() {
+        Map<UUID, Station> stations = browser.getStationsByUUIDs(uuids(0, 3));
+
+        assertThat(stations.size(), is(3));
+        assertThat(stations.get(new UUID(0, 2)).getName(), is("Station 2"));
+        assertThat(requested.size(), is(1));
+        assertThat(requested.get(0), is(Arrays.asList(
+                new UUID(0, 0).toString(),
+                new UUID(0, 1).toString(),
+                new UUID(0, 2).toString())));
+    }
+
+    @Test
+    public void getStationsByUUIDsSplitsBatches() {
+        Map<UUID, Station> stations = browser.getStationsByUUIDs(uuids(0, 250));
+
+        assertThat(stations.size(), is(KNOWN));
+        assertThat(stations.containsKey(new UUID(0, 199)), is(true));
+        assertThat(stations.containsKey(new UUID(0, 200)), is(false));
+        List<Integer> sizes = requested.stream()
+                .map(List::size)
+                .sorted()
+                .collect(Collectors.toList());
+        assertThat(sizes, is(Arrays.asList(50, 100, 100)));
+    }
+
+    @Test
+    public void getStationsByUUIDsLooksUpDuplicatesOnce() {
+        List<UUID> uuids = new ArrayList<>(uuids(0, 5));
+        uuids.addAll(uuids(0, 5));
+
+        Map<UUID, Station> stations = browser.getStationsByUUIDs(uuids);
+
+        assertThat(stations.size(), is(5));
+        assertThat(requested.size(), is(1));
+        assertThat(requested.get(0).size(), is(5));
+    }
+
+    @Test
+    public void getStationsByUUIDsWithNone() {
+        Map<UUID, Station> stations = browser.getStationsByUUIDs(
+                Collections.emptyList());
+
+        assertThat(stations.isEmpty(), is(true));
+        verifyNoInteractions(rest);
+    }
+
+    @Test
+    public void getStationsByUUIDsFailsWithBatch() {
+        lenient().when(rest.postWithListOfStation(
+                eq("json/stations/byuuid"), anyMap()))
+                .thenThrow(new RadioBrowserException("down"));
+
+        assertThrows(RadioBrowserException.class,
+                () -> browser.getStationsByUUIDs(uuids(0, 250)));
+    }
+}
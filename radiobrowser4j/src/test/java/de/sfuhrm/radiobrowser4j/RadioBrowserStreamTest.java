@@ -0,0 +1,222 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the streams of the RadioBrowser class.
+ * @author Stephan Fuhrmann
+ */
+@ExtendWith(MockitoExtension.class)
+public class RadioBrowserStreamTest {
+
+    @Mock
+    private RestDelegate rest;
+
+    private RadioBrowser browser;
+
+    /** The pages requested from the server as offset and limit. */
+    private List<Paging> requested;
+
+    /** Lets a mocked delegate pass the stations of its lists on to
+     * the consumer of {@link RestDelegate#postWithStations}, which
+     * bulk stream operations read the pages with.
+     * @param rest the mocked delegate.
+     * */
+    static void streamStationLists(final RestDelegate rest) {
+        lenient().doAnswer(invocation -> {
+            Consumer<Station> consumer = invocation.getArgument(2);
+            rest.postWithListOfStation(invocation.getArgument(0),
+                    invocation.getArgument(1)).forEach(consumer);
+            return null;
+        }).when(rest).postWithStations(anyString(), anyMap(), any());
+    }
+
+    @BeforeEach
+    public void create() {
+        requested = new ArrayList<>();
+        streamStationLists(rest);
+        lenient().when(rest.postWithListOfStation(anyString(), anyMap()))
+                .thenAnswer(invocation -> {
+                    Map<String, String> params = invocation.getArgument(1);
+                    int offset = Integer.parseInt(params.get("offset"));
+                    int limit = Integer.parseInt(params.get("limit"));
+                    requested.add(Paging.at(offset, limit));
+                    return IntStream.range(offset, Math.min(1000, offset + limit))
+                            .mapToObj(i -> StationMirrorTest.station(i,
+                                    "Station " + i, "DE", "pop", "MP3",
+                                    128, true, "http://example.com/" + i))
+                            .collect(Collectors.toList());
+                });
+        browser = new RadioBrowser(rest);
+    }
+
+    @Test
+    public void listStationsWithLimit() {
+        List<Station> stations = browser.listStations(Limit.of(5))
+                .collect(Collectors.toList());
+
+        assertThat(stations.size(), is(5));
+        assertThat(requested, is(Arrays.asList(Paging.at(0, 5))));
+    }
+
+    @Test
+    public void listStationsWithLimitAndPaging() {
+        long count = browser.listStations(Limit.of(150), Paging.at(10, 500))
+                .count();
+
+        assertThat(count, is(150L));
+        assertThat(requested, is(Arrays.asList(
+                Paging.at(10, 128), Paging.at(138, 22))));
+    }
+
+    @Test
+    public void listStationsWithPagingSmallerThanLimit() {
+        long count = browser.listStations(Limit.of(150), Paging.at(10, 20))
+                .count();
+
+        assertThat(count, is(20L));
+        assertThat(requested, is(Arrays.asList(Paging.at(10, 20))));
+    }
+
+    @Test
+    public void listStationsByWithLimit() {
+        List<Station> stations = browser.listStationsBy(Limit.of(3),
+                SearchMode.BYTAG, "pop").collect(Collectors.toList());
+
+        assertThat(stations.size(), is(3));
+        assertThat(requested, is(Arrays.asList(Paging.at(0, 3))));
+    }
+
+    @Test
+    public void listStationsWithAdvancedSearchWithLimit() {
+        List<Station> stations = browser.listStationsWithAdvancedSearch(
+                Limit.of(200), AdvancedSearch.builder().tag("pop").build())
+                .collect(Collectors.toList());
+
+        assertThat(stations.size(), is(200));
+        assertThat(requested, is(Arrays.asList(
+                Paging.at(0, 128), Paging.at(128, 72))));
+    }
+
+    private static Stats stats(final int stations) {
+        Stats stats = new Stats();
+        stats.setStations(stations);
+        return stats;
+    }
+
+    @Test
+    public void listStationsEstimatesWithStats() {
+        when(rest.get("json/stats", Stats.class)).thenReturn(stats(900));
+
+        Spliterator<Station> spliterator = browser.listStations().spliterator();
+
+        assertThat(spliterator.estimateSize(), is(900L));
+        assertThat(spliterator.hasCharacteristics(
+                Spliterator.ORDERED | Spliterator.NONNULL), is(true));
+        assertThat(spliterator.hasCharacteristics(Spliterator.SIZED), is(false));
+        assertThat(requested.isEmpty(), is(true));
+    }
+
+    @Test
+    public void listStationsWithLimitEstimatesWithStats() {
+        when(rest.get("json/stats", Stats.class)).thenReturn(stats(900));
+
+        assertThat(browser.listStations(Limit.of(500)).spliterator()
+                .estimateSize(), is(500L));
+        assertThat(browser.listStations(Limit.of(500), Paging.at(800, 500))
+                .spliterator().estimateSize(), is(100L));
+    }
+
+    @Test
+    public void listStationsParallelWithStats() {
+        when(rest.get("json/stats", Stats.class)).thenReturn(stats(900));
+
+        List<String> names = browser.listStations().parallel()
+                .map(Station::getName)
+                .collect(Collectors.toList());
+
+        assertThat(names, is(IntStream.range(0, 1000)
+                .mapToObj(i -> "Station " + i)
+                .collect(Collectors.toList())));
+    }
+
+    @Test
+    public void listStationsByEstimatesWithFacet() {
+        when(rest.postWithListOfMapOfString(eq("json/tags/Pop"), anyMap()))
+                .thenReturn(Arrays.asList(facet("pop", 700),
+                        facet("pop rock", 50)));
+
+        assertThat(browser.listStationsBy(SearchMode.BYTAGEXACT, "Pop")
+                .spliterator().estimateSize(), is(700L));
+        assertThat(browser.listStationsBy(SearchMode.BYTAG, "pop")
+                .spliterator().estimateSize(), is(Long.MAX_VALUE));
+        verify(rest, never()).postWithListOfMapOfString(eq("json/tags"), anyMap());
+    }
+
+    @Test
+    public void filteredStreamsHaveNoEstimate() {
+        Parameter hideBroken = new Parameter() {
+            @Override
+            protected void apply(final Map<String, String> requestParams) {
+                requestParams.put("hidebroken", "true");
+            }
+        };
+        lenient().when(rest.get("json/stats", Stats.class)).thenReturn(stats(900));
+
+        assertThat(browser.listStations(hideBroken)
+                .spliterator().estimateSize(), is(Long.MAX_VALUE));
+        assertThat(browser.listStationsBy(SearchMode.BYTAGEXACT, "pop",
+                hideBroken).spliterator().estimateSize(), is(Long.MAX_VALUE));
+        assertThat(browser.listStations(ListParameter.create()
+                .order(FieldName.NAME)).spliterator().estimateSize(), is(900L));
+    }
+
+    private static Map<String, String> facet(final String name,
+                                             final int stationCount) {
+        Map<String, String> facet = new HashMap<>();
+        facet.put("name", name);
+        facet.put("stationcount", Integer.toString(stationCount));
+        return facet;
+    }
+}
@@ -17,11 +17,16 @@ package de.sfuhrm.radiobrowser4j;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -116,6 +121,53 @@ public class RadioBrowserTest {
         }
     }
 
+    @Test
+    public void closeShutsDownExecutors() {
+        RadioBrowser closing = new RadioBrowser(ConnectionParams.builder()
+                .apiUrl(MOCK_URL_TO_USE).timeout(20000).userAgent(USER_AGENT)
+                .cacheTtl(60_000).uuidBatchWindow(10).build());
+        List<ExecutorService> executors = closing.ownedExecutors();
+        assertThat(executors.size(), is(2));
+
+        closing.close();
+
+        for (ExecutorService executor : executors) {
+            assertThat(executor.isShutdown(), is(true));
+        }
+    }
+
+    @Test
+    public void closeEndsLookupInOpenBatchWindow() throws Exception {
+        RadioBrowser closing = new RadioBrowser(ConnectionParams.builder()
+                .apiUrl(MOCK_URL_TO_USE).timeout(20000).userAgent(USER_AGENT)
+                .uuidBatchWindow(60_000).build());
+        CompletableFuture<Optional<Station>> lookup = CompletableFuture
+                .supplyAsync(() -> closing.getStationByUUID(UUID.randomUUID()));
+        // the lookup is waiting in the window of its batch
+        Thread.sleep(200);
+        assertThat(lookup.isDone(), is(false));
+
+        closing.close();
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> lookup.get(10, TimeUnit.SECONDS));
+        assertThat(e.getCause(), is(instanceOf(RadioBrowserException.class)));
+    }
+
+    @Test
+    public void closeShutsDownHedgeTimer() {
+        RadioBrowser closing = new RadioBrowser(ConnectionParams.builder()
+                .apiUrl(MOCK_URL_TO_USE).additionalApiUrl(REAL_URL_TO_USE)
+                .timeout(20000).userAgent(USER_AGENT)
+                .hedgePercentile(0.95).build());
+        List<ExecutorService> executors = closing.ownedExecutors();
+        assertThat(executors.size(), is(1));
+
+        closing.close();
+
+        assertThat(executors.get(0).isShutdown(), is(true));
+    }
+
     @Test
     public void listCountries() {
         Map<String, Integer> countries = browser.listCountries();
@@ -234,6 +286,14 @@ public class RadioBrowserTest {
         assertThat(stations.size(), is(FIVE.getSize()));
     }
 
+    @Test
+    public void listTopClickStationsWithConsumer() {
+        List<Station> stations = new ArrayList<>();
+        browser.listTopClickStations(FIVE, stations::add);
+        assertThat(stations, is(browser.listTopClickStations(FIVE)));
+        assertThat(stations.size(), is(FIVE.getSize()));
+    }
+
     @Test
     public void listTopClickStationsWithStream() {
         List<Station> stations = browser
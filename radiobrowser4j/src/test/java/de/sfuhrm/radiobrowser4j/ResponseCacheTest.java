@@ -0,0 +1,163 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for the ResponseCache.
+ * @author Stephan Fuhrmann
+ */
+public class ResponseCacheTest {
+
+    private final AtomicLong clock = new AtomicLong(1000);
+
+    private final List<Runnable> refreshes = new ArrayList<>();
+
+    private ResponseCache newCache(long ttl, long maxWeight) {
+        return new ResponseCache(ttl,
+                Collections.singletonMap("json/tags", 0L),
+                maxWeight,
+                refreshes::add,
+                clock::get);
+    }
+
+    @Test
+    public void freshEntryIsNotReloaded() {
+        ResponseCache cache = newCache(100, 10);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("json/stats", "a", loads::incrementAndGet, v -> 1);
+        clock.addAndGet(99);
+        int value = cache.get("json/stats", "a", loads::incrementAndGet, v -> 1);
+
+        assertThat(value, is(1));
+        assertThat(loads.get(), is(1));
+        assertThat(refreshes.isEmpty(), is(true));
+    }
+
+    @Test
+    public void staleEntryIsReturnedAndRefreshedInBackground() {
+        ResponseCache cache = newCache(100, 10);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("json/stats", "a", loads::incrementAndGet, v -> 1);
+        clock.addAndGet(100);
+        int stale = cache.get("json/stats", "a", loads::incrementAndGet, v -> 1);
+        int staleAgain = cache.get("json/stats", "a", loads::incrementAndGet, v -> 1);
+
+        assertThat(stale, is(1));
+        assertThat(staleAgain, is(1));
+        assertThat("only one refresh is scheduled", refreshes.size(), is(1));
+
+        refreshes.get(0).run();
+        int refreshed = cache.get("json/stats", "a", loads::incrementAndGet, v -> 1);
+
+        assertThat(refreshed, is(2));
+    }
+
+    @Test
+    public void failedRefreshKeepsStaleEntry() {
+        ResponseCache cache = newCache(100, 10);
+
+        cache.get("json/stats", "a", () -> 1, v -> 1);
+        clock.addAndGet(100);
+        cache.get("json/stats", "a", () -> {
+            throw new RadioBrowserException("down");
+        }, v -> 1);
+        refreshes.get(0).run();
+        int value = cache.get("json/stats", "a", () -> 2, v -> 1);
+
+        assertThat(value, is(1));
+        assertThat("refresh is retried", refreshes.size(), is(2));
+    }
+
+    @Test
+    public void pathWithZeroTtlIsNotCached() {
+        ResponseCache cache = newCache(100, 10);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("json/tags", "t", loads::incrementAndGet, v -> 1);
+        int value = cache.get("json/tags", "t", loads::incrementAndGet, v -> 1);
+
+        assertThat(value, is(2));
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        ResponseCache cache = newCache(100, 10);
+
+        cache.get("json/codecs", "a", () -> "a", v -> 4);
+        cache.get("json/codecs", "b", () -> "b", v -> 4);
+        cache.get("json/codecs", "a", () -> "a2", v -> 4);
+        cache.get("json/codecs", "c", () -> "c", v -> 4);
+
+        assertThat(cache.get("json/codecs", "a", () -> "a3", v -> 4), is("a"));
+        assertThat(cache.get("json/codecs", "b", () -> "b2", v -> 4), is("b2"));
+    }
+
+    @Test
+    public void concurrentMissesShareOneLoad() throws Exception {
+        ResponseCache cache = newCache(100, 10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Integer> loader = () -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RadioBrowserException(e);
+            }
+            return loads.incrementAndGet();
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> first = executor.submit(
+                    () -> cache.get("json/stats", "a", loader, v -> 1));
+            entered.await();
+            Future<Integer> second = executor.submit(
+                    () -> cache.get("json/stats", "a", loader, v -> 1));
+            // the second caller waits for the load in flight
+            assertThrows(TimeoutException.class,
+                    () -> second.get(100, TimeUnit.MILLISECONDS));
+            release.countDown();
+
+            assertThat(first.get(), is(1));
+            assertThat(second.get(), is(1));
+            assertThat(loads.get(), is(1));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
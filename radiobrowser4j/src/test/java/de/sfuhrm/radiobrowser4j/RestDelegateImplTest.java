@@ -15,13 +15,39 @@
 */
 package de.sfuhrm.radiobrowser4j;
 
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.absent;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -31,6 +57,201 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
  */
 public class RestDelegateImplTest {
 
+    private static final String STATS_JSON = "{\"supported_version\":1,"
+            + "\"software_version\":\"0.7.24\",\"status\":\"OK\","
+            + "\"stations\":100,\"stations_broken\":1,\"tags\":2,"
+            + "\"clicks_last_hour\":3,\"clicks_last_day\":4,"
+            + "\"languages\":5,\"countries\":6}";
+
+    private static final String STATIONS_JSON = "["
+            + "{\"stationuuid\":\"96062a7b-0601-11e8-ae97-52543be04c81\","
+            + "\"name\":\"First\",\"lastcheckok\":1,\"bitrate\":128},"
+            + "{\"stationuuid\":\"960e57c5-0601-11e8-ae97-52543be04c81\","
+            + "\"name\":\"Second\",\"lastcheckok\":0,\"bitrate\":64}"
+            + "]";
+
+    /** Forwards TCP connections to another local port and
+     * counts them. */
+    private static final class ConnectionCounter implements AutoCloseable {
+        private final ServerSocket serverSocket;
+        private final AtomicInteger accepted = new AtomicInteger();
+        private final List<Socket> sockets =
+                Collections.synchronizedList(new ArrayList<>());
+        private final ExecutorService executor =
+                Executors.newCachedThreadPool();
+
+        ConnectionCounter(final int targetPort) throws IOException {
+            serverSocket = new ServerSocket(0, 50,
+                    InetAddress.getLoopbackAddress());
+            executor.execute(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket client = serverSocket.accept();
+                        accepted.incrementAndGet();
+                        Socket target = new Socket(
+                                InetAddress.getLoopbackAddress(), targetPort);
+                        sockets.add(client);
+                        sockets.add(target);
+                        executor.execute(() -> pump(client, target));
+                        executor.execute(() -> pump(target, client));
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        private static void pump(final Socket from, final Socket to) {
+            byte[] buffer = new byte[4096];
+            try {
+                InputStream in = from.getInputStream();
+                OutputStream out = to.getOutputStream();
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                    out.flush();
+                }
+                to.shutdownOutput();
+            } catch (IOException e) {
+                // connection closed
+            }
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+        }
+
+        int accepted() {
+            return accepted.get();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    private WireMockServer wireMockServer;
+
+    private RestDelegateImpl restDelegate;
+
+    @BeforeEach
+    public void startServer() {
+        wireMockServer = new WireMockServer(
+                WireMockConfiguration.options().dynamicPort());
+        wireMockServer.start();
+        restDelegate = new RestDelegateImpl(ConnectionParams.builder()
+                .apiUrl("http://localhost:" + wireMockServer.port() + "/")
+                .timeout(5000)
+                .userAgent("test")
+                .retries(1)
+                .retryInterval(1)
+                .build());
+    }
+
+    @AfterEach
+    public void stopServer() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void getRepeatedOnKeptAliveConnection() {
+        wireMockServer.stubFor(get(urlEqualTo("/json/stats"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(STATS_JSON)));
+
+        for (int i = 0; i < 10; i++) {
+            Stats stats = restDelegate.get("json/stats", Stats.class);
+            assertThat(stats.getStations(), is(100));
+        }
+        wireMockServer.verify(10, getRequestedFor(urlEqualTo("/json/stats")));
+    }
+
+    private RestDelegateImpl newDelegate(final String apiUrl) {
+        return new RestDelegateImpl(ConnectionParams.builder()
+                .apiUrl(apiUrl)
+                .timeout(5000)
+                .userAgent("test")
+                .retries(1)
+                .retryInterval(1)
+                .build());
+    }
+
+    @Test
+    public void getRepeatedReusesOneConnection() throws IOException {
+        wireMockServer.stubFor(get(urlEqualTo("/json/stats"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(STATS_JSON)));
+
+        try (ConnectionCounter counter =
+                     new ConnectionCounter(wireMockServer.port())) {
+            RestDelegateImpl delegate = newDelegate(counter.url());
+            for (int i = 0; i < 10; i++) {
+                delegate.get("json/stats", Stats.class);
+            }
+
+            assertThat(counter.accepted(), is(1));
+        }
+        wireMockServer.verify(10, getRequestedFor(urlEqualTo("/json/stats")));
+    }
+
+    @Test
+    public void httpErrorKeepsConnection() throws IOException {
+        wireMockServer.stubFor(get(urlEqualTo("/json/missing"))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBody("not found")));
+        wireMockServer.stubFor(post(urlEqualTo("/json/stations/topclick/2"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(STATIONS_JSON)));
+
+        try (ConnectionCounter counter =
+                     new ConnectionCounter(wireMockServer.port())) {
+            RestDelegateImpl delegate = newDelegate(counter.url());
+            assertThrows(RestDelegateImpl.HttpException.class,
+                    () -> delegate.get("json/missing", Stats.class));
+            delegate.postWithListOfStation("json/stations/topclick/2",
+                    Collections.emptyMap());
+            delegate.postWithListOfStation("json/stations/topclick/2",
+                    Collections.emptyMap());
+
+            assertThat(counter.accepted(), is(1));
+        }
+    }
+
+    @Test
+    public void getAfterHttpErrorOnSameDelegate() {
+        wireMockServer.stubFor(get(urlEqualTo("/json/missing"))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withBody("not found")));
+        wireMockServer.stubFor(get(urlEqualTo("/json/stats"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(STATS_JSON)));
+
+        RestDelegateImpl.HttpException exception = assertThrows(
+                RestDelegateImpl.HttpException.class,
+                () -> restDelegate.get("json/missing", Stats.class));
+        assertThat(exception.getCode(), is(404));
+
+        Stats stats = restDelegate.get("json/stats", Stats.class);
+        assertThat(stats.getStations(), is(100));
+    }
+
     @Test
     public void guessCharsetForWithUnknown() {
         Charset actual = RestDelegateImpl.guessCharsetFor("text/plain; charset=-");
@@ -60,4 +281,123 @@ public class RestDelegateImplTest {
         Charset actual = RestDelegateImpl.guessCharsetFor("text/plain;charset=UTF-16");
         assertThat(actual, is(StandardCharsets.UTF_16));
     }
+
+    @Test
+    public void postWithStationsPassesEachStation() {
+        wireMockServer.stubFor(post(urlEqualTo("/json/stations/topclick/2"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(STATIONS_JSON)));
+
+        List<Station> stations = new ArrayList<>();
+        restDelegate.postWithStations("json/stations/topclick/2",
+                Collections.emptyMap(), stations::add);
+
+        assertThat(stations.size(), is(2));
+        assertThat(stations.get(0).getName(), is("First"));
+        assertThat(stations.get(0).getStationUUID(),
+                is(UUID.fromString("96062a7b-0601-11e8-ae97-52543be04c81")));
+        assertThat(stations.get(1).getName(), is("Second"));
+        assertThat(stations.get(1).getBitrate(), is(64));
+    }
+
+    private RestDelegateImpl newConditionalDelegate() {
+        return new RestDelegateImpl(ConnectionParams.builder()
+                .apiUrl("http://localhost:" + wireMockServer.port() + "/")
+                .timeout(5000)
+                .userAgent("test")
+                .retries(1)
+                .retryInterval(1)
+                .conditionalRequestCacheSize(16)
+                .build());
+    }
+
+    @Test
+    public void getWithETagServesNotModifiedFromCache() {
+        wireMockServer.stubFor(get(urlEqualTo("/json/stats"))
+                .withHeader("If-None-Match", absent())
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("ETag", "\"v1\"")
+                        .withBody(STATS_JSON)));
+        wireMockServer.stubFor(get(urlEqualTo("/json/stats"))
+                .withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse()
+                        .withStatus(304)));
+        RestDelegateImpl conditional = newConditionalDelegate();
+
+        Stats first = conditional.get("json/stats", Stats.class);
+        Stats second = conditional.get("json/stats", Stats.class);
+
+        assertThat(second.getStations(), is(100));
+        assertThat(second, is(not(sameInstance(first))));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/json/stats"))
+                .withHeader("If-None-Match", equalTo("\"v1\"")));
+    }
+
+    @Test
+    public void postWithLastModifiedServesNotModifiedFromCache() {
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        wireMockServer.stubFor(post(urlEqualTo("/json/stations/topclick/2"))
+                .withHeader("If-Modified-Since", absent())
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("Last-Modified", lastModified)
+                        .withBody(STATIONS_JSON)));
+        wireMockServer.stubFor(post(urlEqualTo("/json/stations/topclick/2"))
+                .withHeader("If-Modified-Since", equalTo(lastModified))
+                .willReturn(aResponse()
+                        .withStatus(304)));
+        RestDelegateImpl conditional = newConditionalDelegate();
+
+        List<Station> first = conditional.postWithListOfStation(
+                "json/stations/topclick/2", Collections.emptyMap());
+        first.get(1).setName("Changed");
+        List<Station> second = new ArrayList<>();
+        conditional.postWithStations("json/stations/topclick/2",
+                Collections.emptyMap(), second::add);
+
+        assertThat(second.size(), is(2));
+        assertThat(second.get(1).getName(), is("Second"));
+        assertThat(second.get(1), is(not(sameInstance(first.get(1)))));
+        wireMockServer.verify(1, postRequestedFor(
+                urlEqualTo("/json/stations/topclick/2"))
+                .withHeader("If-Modified-Since", equalTo(lastModified)));
+    }
+
+    @Test
+    public void getWithoutValidatorsIsNotConditional() {
+        wireMockServer.stubFor(get(urlEqualTo("/json/stats"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(STATS_JSON)));
+        RestDelegateImpl conditional = newConditionalDelegate();
+
+        conditional.get("json/stats", Stats.class);
+        conditional.get("json/stats", Stats.class);
+
+        wireMockServer.verify(2, getRequestedFor(urlEqualTo("/json/stats"))
+                .withHeader("If-None-Match", absent()));
+    }
+
+    @Test
+    public void voteIsNotConditional() {
+        wireMockServer.stubFor(get(urlEqualTo("/json/vote/x"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("ETag", "\"v1\"")
+                        .withBody("{\"ok\":true,\"message\":\"voted\"}")));
+        RestDelegateImpl conditional = newConditionalDelegate();
+
+        conditional.get("json/vote/x", UrlResponse.class);
+        conditional.get("json/vote/x", UrlResponse.class);
+
+        wireMockServer.verify(2, getRequestedFor(urlEqualTo("/json/vote/x"))
+                .withHeader("If-None-Match", absent()));
+    }
 }
@@ -0,0 +1,242 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the {@link SingleFlightRestDelegate}.
+ * @author Stephan Fuhrmann
+ */
+@ExtendWith(MockitoExtension.class)
+public class SingleFlightRestDelegateTest {
+
+    /** The number of concurrent callers. */
+    private static final int CALLERS = 5;
+
+    @Mock
+    private RestDelegate network;
+
+    private SingleFlightRestDelegate delegate;
+
+    /** Opened when the first request reached the network. */
+    private CountDownLatch entered;
+
+    /** Opened to let the network answer. */
+    private CountDownLatch release;
+
+    @BeforeEach
+    public void create() {
+        delegate = new SingleFlightRestDelegate(network);
+        entered = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+    }
+
+    /** Runs concurrent callers while the first request is in flight.
+     * @param call the call of each caller.
+     * @return the futures of the callers, the first one first.
+     * */
+    private <T> List<Future<T>> concurrently(
+            final Callable<T> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        Callable<T> tracked = () -> {
+            threads.add(Thread.currentThread());
+            return call.call();
+        };
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            futures.add(executor.submit(tracked));
+            entered.await();
+            for (int i = 1; i < CALLERS; i++) {
+                futures.add(executor.submit(tracked));
+            }
+            // wait until all callers are blocked
+            while (threads.size() < CALLERS || threads.stream().anyMatch(
+                    t -> t.getState() != Thread.State.WAITING)) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<T> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // checked by the caller
+                }
+            }
+            return futures;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, String> params(final String... keyValues) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            result.put(keyValues[i], keyValues[i + 1]);
+        }
+        return result;
+    }
+
+    @Test
+    public void identicalRequestsShareOneCall() throws Exception {
+        Stats stats = new Stats();
+        when(network.get("json/stats", Stats.class)).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return stats;
+        });
+
+        List<Future<Stats>> futures = concurrently(
+                () -> delegate.get("json/stats", Stats.class));
+
+        for (Future<Stats> future : futures) {
+            assertThat(future.get(), is(sameInstance(stats)));
+        }
+        verify(network, times(1)).get("json/stats", Stats.class);
+    }
+
+    @Test
+    public void parameterOrderDoesNotMatter() throws Exception {
+        List<Station> stations = Collections.singletonList(new Station());
+        when(network.postWithListOfStation(eq("json/stations/search"), anyMap()))
+                .thenAnswer(invocation -> {
+                    entered.countDown();
+                    release.await();
+                    return stations;
+                });
+
+        List<Future<List<Station>>> futures = concurrently(() ->
+                delegate.postWithListOfStation("json/stations/search",
+                        Thread.currentThread().getId() % 2 == 0
+                                ? params("tag", "jazz", "limit", "10")
+                                : params("limit", "10", "tag", "jazz")));
+
+        for (Future<List<Station>> future : futures) {
+            assertThat(future.get(), is(stations));
+            assertThat(future.get(), is(not(sameInstance(stations))));
+        }
+        verify(network, times(1)).postWithListOfStation(
+                eq("json/stations/search"), anyMap());
+    }
+
+    @Test
+    public void failureIsShared() throws Exception {
+        when(network.get("json/stats", Stats.class)).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            throw new RadioBrowserException("down");
+        });
+
+        List<Future<Stats>> futures = concurrently(
+                () -> delegate.get("json/stats", Stats.class));
+
+        for (Future<Stats> future : futures) {
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    future::get);
+            assertThat(e.getCause(), is(instanceOf(RadioBrowserException.class)));
+        }
+        verify(network, times(1)).get("json/stats", Stats.class);
+    }
+
+    @Test
+    public void differentRequestsAreNotShared() {
+        when(network.post(eq("json/stations/search"), anyMap(), eq(Stats.class)))
+                .thenAnswer(invocation -> new Stats());
+
+        delegate.post("json/stations/search", params("tag", "jazz"), Stats.class);
+        delegate.post("json/stations/search", params("tag", "rock"), Stats.class);
+
+        verify(network, times(2)).post(
+                eq("json/stations/search"), anyMap(), eq(Stats.class));
+    }
+
+    @Test
+    public void sequentialRequestsAreNotShared() {
+        when(network.postWithListOfMapOfString(eq("json/tags"), anyMap()))
+                .thenReturn(Collections.emptyList());
+
+        delegate.postWithListOfMapOfString("json/tags", new HashMap<>());
+        delegate.postWithListOfMapOfString("json/tags", new HashMap<>());
+
+        verify(network, times(2)).postWithListOfMapOfString(
+                eq("json/tags"), anyMap());
+    }
+
+    @Test
+    public void concurrentVotesAreNotShared() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        UrlResponse ok = mock(UrlResponse.class);
+        when(ok.isOk()).thenReturn(true);
+        // answers only once every vote reached the network
+        CountDownLatch allVotes = new CountDownLatch(CALLERS);
+        when(network.get("json/vote/" + uuid, UrlResponse.class))
+                .thenAnswer(invocation -> {
+                    allVotes.countDown();
+                    assertThat(allVotes.await(10, TimeUnit.SECONDS), is(true));
+                    return ok;
+                });
+        RadioBrowser radioBrowser = new RadioBrowser(delegate);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                futures.add(executor.submit(
+                        () -> radioBrowser.voteForStation(uuid)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(network, times(CALLERS)).get(
+                "json/vote/" + uuid, UrlResponse.class);
+    }
+}
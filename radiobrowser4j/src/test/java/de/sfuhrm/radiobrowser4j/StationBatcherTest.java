@@ -0,0 +1,206 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for the {@link StationBatcher}.
+ * @author Stephan Fuhrmann
+ */
+public class StationBatcherTest {
+
+    /** The number of stations known to the server. */
+    private static final int KNOWN = 10;
+
+    private ScheduledExecutorService timer;
+
+    /** The UUIDs of each requested batch. */
+    private List<List<UUID>> requested;
+
+    @BeforeEach
+    public void create() {
+        timer = Executors.newSingleThreadScheduledExecutor();
+        requested = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @AfterEach
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    private List<Station> fetch(final List<UUID> uuids) {
+        requested.add(uuids);
+        return uuids.stream()
+                .filter(uuid -> uuid.getLeastSignificantBits() < KNOWN)
+                .map(uuid -> StationMirrorTest.station(
+                        (int) uuid.getLeastSignificantBits(),
+                        "Station " + uuid.getLeastSignificantBits(),
+                        "DE", "pop", "MP3", 128, true, "http://example.com/"))
+                .collect(Collectors.toList());
+    }
+
+    private StationBatcher batcher(final long windowMillis,
+                                   final int maxBatchSize) {
+        return new StationBatcher(this::fetch, windowMillis, maxBatchSize,
+                timer, Runnable::run);
+    }
+
+    @Test
+    public void loadsWithinWindowShareOneRequest() {
+        StationBatcher batcher = batcher(100, 100);
+
+        CompletableFuture<Optional<Station>> first = batcher.load(new UUID(0, 1));
+        CompletableFuture<Optional<Station>> second = batcher.load(new UUID(0, 2));
+        CompletableFuture<Optional<Station>> missing = batcher.load(new UUID(0, 99));
+
+        assertThat(first.join().get().getName(), is("Station 1"));
+        assertThat(second.join().get().getName(), is("Station 2"));
+        assertThat(missing.join().isPresent(), is(false));
+        assertThat(requested, is(Collections.singletonList(Arrays.asList(
+                new UUID(0, 1), new UUID(0, 2), new UUID(0, 99)))));
+    }
+
+    @Test
+    public void fullBatchIsRequestedWithoutWaiting() {
+        StationBatcher batcher = batcher(60_000, 2);
+
+        CompletableFuture<Optional<Station>> first = batcher.load(new UUID(0, 1));
+        assertThat(first.isDone(), is(false));
+        CompletableFuture<Optional<Station>> second = batcher.load(new UUID(0, 2));
+
+        assertThat(first.isDone(), is(true));
+        assertThat(second.isDone(), is(true));
+        assertThat(requested.size(), is(1));
+    }
+
+    @Test
+    public void loadAfterFullBatchStartsNewBatch() {
+        StationBatcher batcher = batcher(50, 2);
+
+        batcher.load(new UUID(0, 1));
+        batcher.load(new UUID(0, 2));
+        CompletableFuture<Optional<Station>> third = batcher.load(new UUID(0, 3));
+
+        assertThat(third.join().get().getName(), is("Station 3"));
+        assertThat(requested, is(Arrays.asList(
+                Arrays.asList(new UUID(0, 1), new UUID(0, 2)),
+                Collections.singletonList(new UUID(0, 3)))));
+    }
+
+    @Test
+    public void duplicateLoadsShareResult() {
+        StationBatcher batcher = batcher(50, 100);
+
+        CompletableFuture<Optional<Station>> first = batcher.load(new UUID(0, 1));
+        CompletableFuture<Optional<Station>> second = batcher.load(new UUID(0, 1));
+
+        assertThat(second, is(sameInstance(first)));
+        first.join();
+        assertThat(requested.get(0).size(), is(1));
+    }
+
+    @Test
+    public void failedRequestFailsAllLoads() {
+        StationBatcher batcher = new StationBatcher(uuids -> {
+            throw new RadioBrowserException("down");
+        }, 50, 100, timer, Runnable::run);
+
+        CompletableFuture<Optional<Station>> first = batcher.load(new UUID(0, 1));
+        CompletableFuture<Optional<Station>> second = batcher.load(new UUID(0, 2));
+
+        CompletionException e = assertThrows(CompletionException.class,
+                first::join);
+        assertThat(e.getCause(), is(instanceOf(RadioBrowserException.class)));
+        assertThrows(CompletionException.class, second::join);
+    }
+
+    @Test
+    public void errorFailsAllLoads() {
+        StationBatcher batcher = new StationBatcher(uuids -> {
+            throw new StackOverflowError();
+        }, 50, 100, timer, Runnable::run);
+
+        CompletableFuture<Optional<Station>> first = batcher.load(new UUID(0, 1));
+        CompletableFuture<Optional<Station>> second = batcher.load(new UUID(0, 2));
+
+        CompletionException e = assertThrows(CompletionException.class,
+                first::join);
+        assertThat(e.getCause(), is(instanceOf(StackOverflowError.class)));
+        assertThrows(CompletionException.class, second::join);
+    }
+
+    @Test
+    public void closeFailsLoadsInOpenWindow() {
+        StationBatcher batcher = batcher(60_000, 100);
+        CompletableFuture<Optional<Station>> pending = batcher.load(new UUID(0, 1));
+
+        batcher.close();
+
+        CompletionException e = assertThrows(CompletionException.class,
+                pending::join);
+        assertThat(e.getCause(), is(instanceOf(RadioBrowserException.class)));
+        assertThrows(CompletionException.class,
+                () -> batcher.load(new UUID(0, 2)).join());
+        assertThat(requested.isEmpty(), is(true));
+    }
+
+    @Test
+    public void rejectedBatchFailsLoads() {
+        StationBatcher batcher = new StationBatcher(this::fetch, 10, 100,
+                timer, runnable -> {
+                    throw new RejectedExecutionException("shut down");
+                });
+
+        CompletableFuture<Optional<Station>> pending = batcher.load(new UUID(0, 1));
+
+        CompletionException e = assertThrows(CompletionException.class,
+                pending::join);
+        assertThat(e.getCause(), is(instanceOf(RadioBrowserException.class)));
+        assertThat(requested.isEmpty(), is(true));
+    }
+
+    @Test
+    public void shutDownTimerFailsLoad() {
+        timer.shutdownNow();
+        StationBatcher batcher = batcher(10, 100);
+
+        CompletableFuture<Optional<Station>> pending = batcher.load(new UUID(0, 1));
+
+        assertThrows(CompletionException.class, pending::join);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Test for the StationIndex class.
+ * @author Stephan Fuhrmann
+ */
+public class StationIndexTest {
+
+    private static final String[] COUNTRIES = {"DE", "GB", "US", "FR"};
+    private static final String[] CODECS = {"MP3", "AAC", "AAC+", "OGG"};
+    private static final String[] TAGS = {"jazz", "smooth jazz", "rock", "pop", "news"};
+
+    private static List<Station> stations;
+
+    private static StationIndex index;
+
+    @BeforeAll
+    public static void createIndex() {
+        Random random = new Random(42);
+        stations = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Station station = StationMirrorTest.station(i,
+                    "Station " + random.nextInt(500),
+                    COUNTRIES[random.nextInt(COUNTRIES.length)],
+                    TAGS[random.nextInt(TAGS.length)] + ","
+                            + TAGS[random.nextInt(TAGS.length)],
+                    CODECS[random.nextInt(CODECS.length)],
+                    32 * random.nextInt(10),
+                    random.nextBoolean(),
+                    (random.nextBoolean() ? "https" : "http") + "://example.com/");
+            if (random.nextBoolean()) {
+                station.setGeoLatitude(1.0);
+                station.setGeoLongitude(2.0);
+            }
+            if (random.nextInt(10) == 0) {
+                station.setBitrate(null);
+            }
+            stations.add(station);
+        }
+        index = StationIndex.of(stations);
+    }
+
+    /** Evaluates a query by a linear scan. */
+    private static List<Station> scan(final AdvancedSearch search,
+                                      final Parameter...listParam) {
+        Map<String, String> params = StationIndex.toRequestParams(search, listParam);
+        List<Station> sorted = new ArrayList<>(stations);
+        sorted.sort(StationQuery.BY_NAME);
+        return StationQuery.of(params).apply(sorted);
+    }
+
+    private static void assertSameAsScan(final AdvancedSearch search,
+                                         final Parameter...listParam) {
+        assertThat(index.search(search, listParam), is(scan(search, listParam)));
+    }
+
+    @Test
+    public void size() {
+        assertThat(index.size(), is(2000));
+    }
+
+    @Test
+    public void searchByFacets() {
+        assertSameAsScan(AdvancedSearch.builder().countryCode("de").build());
+        assertSameAsScan(AdvancedSearch.builder().codec("aac").build());
+        assertSameAsScan(AdvancedSearch.builder().tag("jazz").build());
+        assertSameAsScan(AdvancedSearch.builder().tag("jazz").tagExact(true).build());
+        assertSameAsScan(AdvancedSearch.builder().tagList(Arrays.asList("jazz", "pop")).build());
+        assertSameAsScan(AdvancedSearch.builder().language("GERMAN").languageExact(true).build());
+        assertSameAsScan(AdvancedSearch.builder().countryCode("XX").build());
+    }
+
+    @Test
+    public void searchByFlags() {
+        assertSameAsScan(AdvancedSearch.builder().isHttps(true).build());
+        assertSameAsScan(AdvancedSearch.builder().isHttps(false).hasGeoInfo(true).build());
+        assertSameAsScan(AdvancedSearch.builder().hasGeoInfo(false).hideBroken(true).build());
+        assertSameAsScan(AdvancedSearch.builder().hasExtendedInfo(false).build());
+    }
+
+    @Test
+    public void searchByBitrate() {
+        assertSameAsScan(AdvancedSearch.builder().bitrateMin(64).build());
+        assertSameAsScan(AdvancedSearch.builder().bitrateMax(64).build());
+        assertSameAsScan(AdvancedSearch.builder().bitrateMin(64).bitrateMax(128).build());
+        assertSameAsScan(AdvancedSearch.builder().bitrateMin(1000).build());
+    }
+
+    @Test
+    public void searchCombinedWithPagingAndOrder() {
+        AdvancedSearch search = AdvancedSearch.builder()
+                .countryCode("GB")
+                .tag("pop")
+                .bitrateMin(96)
+                .hideBroken(true)
+                .name("station 1")
+                .build();
+        assertSameAsScan(search);
+        assertSameAsScan(search, Paging.at(3, 5));
+        assertSameAsScan(search, Paging.at(2, 4),
+                ListParameter.create().order(FieldName.BITRATE).reverseOrder(true));
+    }
+
+    @Test
+    public void searchByMode() {
+        List<Station> expected = scan(AdvancedSearch.builder()
+                .tag("rock").tagExact(true).build());
+        assertThat(index.search(SearchMode.BYTAGEXACT, "ROCK"), is(expected));
+
+        List<String> names = index.search(SearchMode.BYCODEC, "aac").stream()
+                .map(Station::getCodec).distinct().sorted()
+                .collect(Collectors.toList());
+        assertThat(names, is(Arrays.asList("AAC", "AAC+")));
+    }
+
+    @Test
+    public void searchByModeWithEdgeTermsSameAsScan() {
+        List<Station> edge = Arrays.asList(
+                StationMirrorTest.station(1, "Empty", "", "", "",
+                        128, true, "http://example.com/"),
+                StationMirrorTest.station(2, "Sigma", "\u0130T", "\u03c2,jazz",
+                        "MP3", 128, true, "http://example.com/"),
+                StationMirrorTest.station(3, "Capital", "IT", "\u03a3,,pop",
+                        "\u212a", 128, true, "http://example.com/"),
+                StationMirrorTest.station(4, "Plain", "it", "stra\u00dfe",
+                        "k", 128, true, "http://example.com/"));
+        StationIndex edgeIndex = StationIndex.of(edge);
+        List<Station> sorted = new ArrayList<>(edge);
+        sorted.sort(StationQuery.BY_NAME);
+        String[] terms = {"", "\u03c2", "\u03a3", "\u03c3", "\u0130t",
+                "it", "I", "\u212a", "K", "STRASSE", "STRA\u00df"};
+        SearchMode[] modes = {SearchMode.BYCODEC, SearchMode.BYCODECEXACT,
+                SearchMode.BYCOUNTRYCODEEXACT, SearchMode.BYTAG,
+                SearchMode.BYTAGEXACT};
+
+        for (SearchMode mode : modes) {
+            for (String term : terms) {
+                List<Station> scanned = StationQuery.of(Collections.emptyMap())
+                        .and(StationQuery.searchModeFilter(mode, term))
+                        .apply(sorted);
+                assertThat(mode + " " + term,
+                        edgeIndex.search(mode, term), is(scanned));
+            }
+        }
+        assertThat(edgeIndex.search(SearchMode.BYCODECEXACT, "").size(), is(1));
+        assertThat(edgeIndex.search(SearchMode.BYTAGEXACT, "\u03c3").size(), is(2));
+    }
+
+    @Test
+    public void emptyIndex() {
+        StationIndex empty = StationIndex.of(Collections.emptyList());
+        assertThat(empty.search(AdvancedSearch.builder().isHttps(false)
+                .bitrateMin(1).build()).isEmpty(), is(true));
+    }
+}
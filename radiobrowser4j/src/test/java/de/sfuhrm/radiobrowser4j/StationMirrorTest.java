@@ -0,0 +1,261 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for the StationMirror class.
+ * @author Stephan Fuhrmann
+ */
+@ExtendWith(MockitoExtension.class)
+public class StationMirrorTest {
+
+    @Mock
+    private RestDelegate network;
+
+    private StationMirror mirror;
+
+    static Station station(final int id,
+                           final String name,
+                           final String countryCode,
+                           final String tags,
+                           final String codec,
+                           final int bitrate,
+                           final boolean ok,
+                           final String url) {
+        Station station = new Station();
+        station.setStationUUID(new UUID(0, id));
+        station.setChangeUUID(new UUID(1, id));
+        station.setName(name);
+        station.setCountryCode(countryCode);
+        station.setTags(tags);
+        station.setLanguage("german");
+        station.setCodec(codec);
+        station.setBitrate(bitrate);
+        station.setLastcheckok(ok ? 1 : 0);
+        station.setUrl(url);
+        station.setUrlResolved(url);
+        station.setVotes(id * 10);
+        return station;
+    }
+
+    static List<Station> catalog() {
+        return Arrays.asList(
+                station(1, "Jazz Radio", "DE", "jazz,blues", "MP3", 128,
+                        true, "https://jazz.example.com/"),
+                station(2, "Rock Antenne", "DE", "rock", "AAC", 64,
+                        true, "http://rock.example.com/"),
+                station(3, "BBC Radio 1", "GB", "pop,news", "MP3", 320,
+                        false, "https://bbc.example.com/"),
+                station(4, "Smooth Jazz", "US", "jazz,smooth jazz", "AAC+",
+                        96, true, "http://smooth.example.com/"));
+    }
+
+    private static List<String> names(final List<Station> stations) {
+        return stations.stream().map(Station::getName)
+                .collect(Collectors.toList());
+    }
+
+    @BeforeEach
+    public void create() {
+        RadioBrowserStreamTest.streamStationLists(network);
+        mirror = new StationMirror(new RadioBrowser(network));
+        mirror.load(catalog());
+    }
+
+    @Test
+    public void loadDownloadsAllPages() {
+        when(network.postWithListOfStation(eq("json/stations"), anyMap()))
+                .thenAnswer(invocation -> {
+                    Map<String, String> params = invocation.getArgument(1);
+                    return params.get("offset").equals("0")
+                            ? catalog() : Collections.emptyList();
+                });
+        StationMirror fresh = new StationMirror(new RadioBrowser(network));
+
+        fresh.load();
+
+        assertThat(fresh.isLoaded(), is(true));
+        assertThat(fresh.size(), is(4));
+    }
+
+    @Test
+    public void queryBeforeLoadFails() {
+        StationMirror fresh = new StationMirror(new RadioBrowser(network));
+        assertThrows(IllegalStateException.class,
+                () -> fresh.getStationByUUID(new UUID(0, 1)));
+    }
+
+    @Test
+    public void listStationsInNameOrder() {
+        List<Station> list = mirror.listStations().collect(Collectors.toList());
+        assertThat(names(list), is(Arrays.asList(
+                "BBC Radio 1", "Jazz Radio", "Rock Antenne", "Smooth Jazz")));
+    }
+
+    @Test
+    public void listStationsWithPagingAndOrder() {
+        List<Station> list = mirror.listStations(Paging.at(1, 2),
+                ListParameter.create().order(FieldName.VOTES).reverseOrder(true))
+                .collect(Collectors.toList());
+        assertThat(names(list), is(Arrays.asList(
+                "BBC Radio 1", "Rock Antenne")));
+    }
+
+    @Test
+    public void getStationByUUID() {
+        assertThat(mirror.getStationByUUID(new UUID(0, 2)).get().getName(),
+                is("Rock Antenne"));
+        assertThat(mirror.getStationByUUID(new UUID(0, 9)).isPresent(),
+                is(false));
+    }
+
+    @Test
+    public void listStationsByNameIsSubstringIgnoringCase() {
+        List<Station> list = mirror.listStationsBy(SearchMode.BYNAME, "jAzZ")
+                .collect(Collectors.toList());
+        assertThat(names(list), is(Arrays.asList("Jazz Radio", "Smooth Jazz")));
+    }
+
+    @Test
+    public void listStationsByTagExact() {
+        List<Station> list = mirror.listStationsBy(SearchMode.BYTAGEXACT, "jazz")
+                .collect(Collectors.toList());
+        assertThat(names(list), is(Arrays.asList("Jazz Radio", "Smooth Jazz")));
+
+        list = mirror.listStationsBy(SearchMode.BYTAGEXACT, "smooth")
+                .collect(Collectors.toList());
+        assertThat(list.isEmpty(), is(true));
+    }
+
+    @Test
+    public void listStationsByCodecIsSubstring() {
+        List<Station> list = mirror.listStationsBy(SearchMode.BYCODEC, "aac")
+                .collect(Collectors.toList());
+        assertThat(names(list), is(Arrays.asList("Rock Antenne", "Smooth Jazz")));
+
+        list = mirror.listStationsBy(SearchMode.BYCODECEXACT, "aac")
+                .collect(Collectors.toList());
+        assertThat(names(list), is(Collections.singletonList("Rock Antenne")));
+    }
+
+    @Test
+    public void advancedSearchCombinesFilters() {
+        List<Station> list = mirror.listStationsWithAdvancedSearch(
+                AdvancedSearch.builder()
+                        .tag("jazz")
+                        .bitrateMin(96)
+                        .bitrateMax(128)
+                        .isHttps(false)
+                        .build())
+                .collect(Collectors.toList());
+        assertThat(names(list), is(Collections.singletonList("Smooth Jazz")));
+    }
+
+    @Test
+    public void advancedSearchHidesBroken() {
+        List<Station> list = mirror.listStationsWithAdvancedSearch(
+                AdvancedSearch.builder()
+                        .codec("mp3")
+                        .hideBroken(true)
+                        .build())
+                .collect(Collectors.toList());
+        assertThat(names(list), is(Collections.singletonList("Jazz Radio")));
+    }
+
+    @Test
+    public void advancedSearchWithTagList() {
+        List<Station> list = mirror.listStationsWithAdvancedSearch(
+                AdvancedSearch.builder()
+                        .tagList(Arrays.asList("jazz", "blues"))
+                        .build())
+                .collect(Collectors.toList());
+        assertThat(names(list), is(Collections.singletonList("Jazz Radio")));
+    }
+
+    @Test
+    public void listStationsNear() {
+        List<Station> stations = catalog();
+        double[][] locations = {{53.55, 9.99}, {48.14, 11.58},
+                {51.51, -0.13}, {40.71, -74.01}};
+        for (int i = 0; i < locations.length; i++) {
+            stations.get(i).setGeoLatitude(locations[i][0]);
+            stations.get(i).setGeoLongitude(locations[i][1]);
+        }
+        mirror.load(stations);
+
+        assertThat(names(mirror.listStationsNear(52.52, 13.40, 2)),
+                is(Arrays.asList("Jazz Radio", "Rock Antenne")));
+        assertThat(names(mirror.listStationsNear(52.52, 13.40, 2,
+                AdvancedSearch.builder().codec("mp3").build())),
+                is(Arrays.asList("Jazz Radio", "BBC Radio 1")));
+        assertThat(names(mirror.listStationsWithin(52.52, 13.40, 1000)),
+                is(Arrays.asList("Jazz Radio", "Rock Antenne", "BBC Radio 1")));
+        assertThat(names(mirror.listStationsWithin(52.52, 13.40, 1000,
+                AdvancedSearch.builder().hideBroken(true).build())),
+                is(Arrays.asList("Jazz Radio", "Rock Antenne")));
+    }
+
+    @Test
+    public void asRadioBrowserServesStationsLocally() {
+        RadioBrowser local = mirror.asRadioBrowser();
+
+        List<Station> list = local.listStationsBy(Paging.at(0, 10),
+                SearchMode.BYCOUNTRYCODEEXACT, "de");
+        assertThat(names(list), is(Arrays.asList("Jazz Radio", "Rock Antenne")));
+        assertThat(local.getStationByUUID(new UUID(0, 3)).get().getName(),
+                is("BBC Radio 1"));
+        assertThat(local.listStations().count(), is(4L));
+        assertThat(local.getStationsByUUIDs(Arrays.asList(
+                new UUID(0, 1), new UUID(0, 9))).keySet(),
+                is(Collections.singleton(new UUID(0, 1))));
+
+        verify(network, never()).postWithListOfStation(any(), anyMap());
+    }
+
+    @Test
+    public void asRadioBrowserPassesOtherRequestsToNetwork() {
+        when(network.postWithListOfStation(eq("json/stations/topvote"), anyMap()))
+                .thenReturn(Collections.emptyList());
+        RadioBrowser local = mirror.asRadioBrowser();
+
+        local.listTopVoteStations().count();
+
+        verify(network).postWithListOfStation(eq("json/stations/topvote"), anyMap());
+    }
+}
@@ -0,0 +1,199 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for the StationSync class.
+ * @author Stephan Fuhrmann
+ */
+@ExtendWith(MockitoExtension.class)
+public class StationSyncTest {
+
+    @Mock
+    private RestDelegate network;
+
+    /** The stations known to the simulated server. */
+    private List<Station> server;
+
+    private StationMirror mirror;
+
+    private StationSync sync;
+
+    private static Station station(final int id, final int change,
+                                   final long changeTime) {
+        Station station = StationMirrorTest.station(id, "Station " + id,
+                "DE", "pop", "MP3", 128, true, "http://example.com/" + id);
+        station.setChangeUUID(new UUID(1, change));
+        station.setLastchangetime(new Date(changeTime));
+        return station;
+    }
+
+    private static List<Station> page(final List<Station> stations,
+                                      final Map<String, String> params) {
+        int offset = Integer.parseInt(params.get("offset"));
+        int limit = Integer.parseInt(params.get("limit"));
+        int from = Math.min(offset, stations.size());
+        int to = Math.min(offset + limit, stations.size());
+        return new ArrayList<>(stations.subList(from, to));
+    }
+
+    @BeforeEach
+    public void create() {
+        server = new ArrayList<>();
+        server.add(station(1, 1, 1000));
+        server.add(station(2, 2, 2000));
+        server.add(station(3, 3, 3000));
+        RadioBrowserStreamTest.streamStationLists(network);
+        lenient().when(network.postWithListOfStation(eq("json/stations"), anyMap()))
+                .thenAnswer(invocation -> page(server, invocation.getArgument(1)));
+        lenient().when(network.postWithListOfStation(
+                eq("json/stations/lastchange"), anyMap()))
+                .thenAnswer(invocation -> {
+                    List<Station> feed = new ArrayList<>(server);
+                    feed.sort(Comparator.comparing(
+                            Station::getLastchangetime).reversed());
+                    return page(feed, invocation.getArgument(1));
+                });
+        mirror = new StationMirror(new RadioBrowser(network));
+        sync = new StationSync(mirror);
+    }
+
+    private void replace(final Station station) {
+        server.removeIf(s -> s.getStationUUID().equals(station.getStationUUID()));
+        server.add(station);
+    }
+
+    @Test
+    public void firstSyncLoadsCatalog() {
+        StationSync.SyncResult result = sync.sync();
+
+        assertThat(result.isFullReload(), is(true));
+        assertThat(result.getInserted(), is(3));
+        assertThat(mirror.size(), is(3));
+    }
+
+    @Test
+    public void syncWithoutChanges() {
+        sync.sync();
+
+        StationSync.SyncResult result = sync.sync();
+
+        assertThat(result.isFullReload(), is(false));
+        assertThat(result.getInserted(), is(0));
+        assertThat(result.getChanged(), is(0));
+        // the head of the feed on the reload and the sync
+        verify(network, times(2)).postWithListOfStation(
+                eq("json/stations/lastchange"), anyMap());
+    }
+
+    @Test
+    public void syncAppliesInsertsAndChanges() {
+        sync.sync();
+        replace(station(2, 20, 4000));
+        replace(station(4, 4, 5000));
+
+        StationSync.SyncResult result = sync.sync();
+
+        assertThat(result.isFullReload(), is(false));
+        assertThat(result.getInserted(), is(1));
+        assertThat(result.getChanged(), is(1));
+        assertThat(result.getRemoved(), is(0));
+        assertThat(mirror.size(), is(4));
+        assertThat(mirror.getStationByUUID(new UUID(0, 2)).get().getChangeUUID(),
+                is(new UUID(1, 20)));
+    }
+
+    @Test
+    public void syncWithEqualChangeTimes() {
+        sync.sync();
+        replace(station(4, 4, 3000));
+
+        StationSync.SyncResult result = sync.sync();
+
+        assertThat(result.getInserted(), is(1));
+        assertThat(sync.sync().getInserted(), is(0));
+    }
+
+    @Test
+    public void changeDuringDownloadIsSyncedLater() {
+        lenient().when(network.postWithListOfStation(eq("json/stations"), anyMap()))
+                .thenAnswer(invocation -> {
+                    // station 1 was fetched before it changed,
+                    // station 3 after it changed
+                    List<Station> catalog = new ArrayList<>(server);
+                    replace(station(1, 10, 3500));
+                    replace(station(3, 30, 3600));
+                    catalog.set(2, station(3, 30, 3600));
+                    return page(catalog, invocation.getArgument(1));
+                });
+        sync.sync();
+
+        StationSync.SyncResult result = sync.sync();
+
+        assertThat(result.getChanged(), is(1));
+        assertThat(mirror.getStationByUUID(new UUID(0, 1)).get().getChangeUUID(),
+                is(new UUID(1, 10)));
+    }
+
+    @Test
+    public void tooManyChangesReloadAndDetectRemovals() {
+        sync = new StationSync(mirror, 1);
+        sync.sync();
+        server.remove(0);
+        replace(station(2, 20, 4000));
+        replace(station(5, 5, 5000));
+
+        StationSync.SyncResult result = sync.sync();
+
+        assertThat(result.isFullReload(), is(true));
+        assertThat(result.getInserted(), is(1));
+        assertThat(result.getChanged(), is(1));
+        assertThat(result.getRemoved(), is(1));
+        assertThat(mirror.getStationByUUID(new UUID(0, 1)).isPresent(), is(false));
+    }
+
+    @Test
+    public void emptyCatalog() {
+        server.clear();
+
+        assertThat(sync.sync().getInserted(), is(0));
+        assertThat(sync.sync().isFullReload(), is(false));
+        assertThat(mirror.listStations().count(), is(0L));
+        assertThat(mirror.getStationByUUID(new UUID(0, 1)).isPresent(),
+                is(false));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Test for the StationTypeAdapter.
+ * @author Stephan Fuhrmann
+ */
+public class StationTypeAdapterTest {
+
+    private static final String STATION_JSON = "{"
+            + "\"changeuuid\":\"4f450d89-0cd5-4b61-9faa-d2d2af29deb5\","
+            + "\"stationuuid\":\"96062a7b-0601-11e8-ae97-52543be04c81\","
+            + "\"serveruuid\":null,"
+            + "\"name\":\"Test Radio\","
+            + "\"url\":\"http://example.com/stream\","
+            + "\"url_resolved\":\"http://example.com/stream.mp3\","
+            + "\"homepage\":\"http://example.com/\","
+            + "\"favicon\":\"\","
+            + "\"tags\":\"jazz,blues\","
+            + "\"country\":\"Germany\","
+            + "\"countrycode\":\"DE\","
+            + "\"state\":\"Berlin\","
+            + "\"language\":\"german,english\","
+            + "\"votes\":17,"
+            + "\"lastchangetime\":\"2023-01-02 03:04:05\","
+            + "\"codec\":\"MP3\","
+            + "\"bitrate\":\"128\","
+            + "\"hls\":0,"
+            + "\"lastcheckok\":1,"
+            + "\"lastchecktime\":\"\","
+            + "\"clickcount\":42,"
+            + "\"clicktrend\":-3,"
+            + "\"geo_lat\":52.5,"
+            + "\"geo_long\":13.4,"
+            + "\"has_extended_info\":false,"
+            + "\"unknown_object\":{\"a\":[1,2,3]}"
+            + "}";
+
+    /** Number of stations in the page of the allocation measurement. */
+    private static final int PAGE_SIZE = 1000;
+
+    /** Upper bound for the bytes allocated per station read. */
+    private static final long MAX_BYTES_PER_STATION = 5000;
+
+    private Gson gson;
+
+    @BeforeEach
+    public void createGson() {
+        gson = new GsonBuilder()
+                .registerTypeAdapterFactory(StationTypeAdapter.FACTORY)
+                .create();
+    }
+
+    @Test
+    public void readStation() {
+        Station station = gson.fromJson(STATION_JSON, Station.class);
+
+        assertThat(station.getChangeUUID(), is(UUID.fromString("4f450d89-0cd5-4b61-9faa-d2d2af29deb5")));
+        assertThat(station.getStationUUID(), is(UUID.fromString("96062a7b-0601-11e8-ae97-52543be04c81")));
+        assertThat(station.getName(), is("Test Radio"));
+        assertThat(station.getUrl(), is("http://example.com/stream"));
+        assertThat(station.getUrlResolved(), is("http://example.com/stream.mp3"));
+        assertThat(station.getFavicon(), is(""));
+        assertThat(station.getTagList(), is(Arrays.asList("jazz", "blues")));
+        assertThat(station.getCountryCode(), is("DE"));
+        assertThat(station.getLanguageList(), is(Arrays.asList("german", "english")));
+        assertThat(station.getVotes(), is(17));
+        assertThat(station.getLastchangetimeInstant(), is(Instant.parse("2023-01-02T03:04:05Z")));
+        assertThat(station.getLastchecktime(), is(nullValue()));
+        assertThat(station.getCodec(), is("MP3"));
+        assertThat(station.getBitrate(), is(128));
+        assertThat(station.getHls(), is("0"));
+        assertThat(station.getLastcheckok(), is(1));
+        assertThat(station.getClickcount(), is(42));
+        assertThat(station.getClicktrend(), is(-3));
+        assertThat(station.getGeoLatitude(), is(52.5));
+        assertThat(station.getGeoLongitude(), is(13.4));
+        assertThat(station.getHasExtendedInfo(), is(false));
+    }
+
+    @Test
+    public void readNullStation() {
+        Station station = gson.fromJson("null", Station.class);
+
+        assertThat(station, is(nullValue()));
+    }
+
+    @Test
+    public void readStationWithMalformedDate() {
+        String json = "{\"name\":\"Test Radio\","
+                + "\"lastchangetime\":\"yesterday\"}";
+
+        assertThrows(RadioBrowserException.class,
+                () -> gson.fromJson(json, Station.class));
+    }
+
+    @Test
+    public void writeStationLikeReflectiveGson() {
+        Station station = gson.fromJson(STATION_JSON, Station.class);
+
+        assertThat(gson.toJson(station), is(new Gson().toJson(station)));
+    }
+
+    /** Measures the bytes the current thread allocates while running.
+     * @param threads the bean for reading the allocated bytes.
+     * @param runnable the code to measure.
+     * @return the bytes allocated per station of a page.
+     * */
+    private static long allocatedPerStation(
+            final com.sun.management.ThreadMXBean threads,
+            final Runnable runnable) {
+        long id = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(id);
+        runnable.run();
+        return (threads.getThreadAllocatedBytes(id) - before) / PAGE_SIZE;
+    }
+
+    @Test
+    public void readPageAllocatesLessThanJsonTree() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean)
+                .isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) bean;
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            sb.append(i > 0 ? "," : "").append(STATION_JSON);
+        }
+        String page = sb.append(']').toString();
+        // warm up, class loading and compilation are not measured
+        for (int i = 0; i < 10; i++) {
+            JsonParser.parseString(page);
+            gson.fromJson(page, Station[].class);
+        }
+
+        // the former deserializers got this tree for every station
+        long tree = allocatedPerStation(threads,
+                () -> JsonParser.parseString(page));
+        long streamed = allocatedPerStation(threads,
+                () -> gson.fromJson(page, Station[].class));
+
+        assertThat(streamed, lessThan(tree));
+        assertThat(streamed, lessThan(MAX_BYTES_PER_STATION));
+    }
+}
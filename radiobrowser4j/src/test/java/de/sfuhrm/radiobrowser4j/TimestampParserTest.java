@@ -0,0 +1,98 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for the TimestampParser.
+ * @author Stephan Fuhrmann
+ */
+public class TimestampParserTest {
+
+    private static final DateTimeFormatter FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Test
+    public void parseEpoch() {
+        assertThat(TimestampParser.parse("1970-01-01 00:00:00"), is(0L));
+    }
+
+    @Test
+    public void parseAfternoon() {
+        assertThat(TimestampParser.parse("2023-01-02 13:04:05"),
+                is(Instant.parse("2023-01-02T13:04:05Z").toEpochMilli()));
+    }
+
+    @Test
+    public void parseNoon() {
+        assertThat(TimestampParser.parse("2024-02-29 12:00:00"),
+                is(Instant.parse("2024-02-29T12:00:00Z").toEpochMilli()));
+    }
+
+    @Test
+    public void parseIso8601() {
+        assertThat(TimestampParser.parse("2023-01-02T03:04:05Z"),
+                is(Instant.parse("2023-01-02T03:04:05Z").toEpochMilli()));
+    }
+
+    @Test
+    public void parseAndFormatRandom() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long seconds = random.nextInt(Integer.MAX_VALUE) * 2L;
+            LocalDateTime dateTime = LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+            String text = FORMATTER.format(dateTime);
+
+            assertThat(TimestampParser.parse(text), is(seconds * 1000L));
+            assertThat(TimestampParser.format(seconds * 1000L), is(text));
+        }
+    }
+
+    @Test
+    public void parseWithWrongLength() {
+        assertThrows(IllegalArgumentException.class,
+                () -> TimestampParser.parse("2023-01-02 03:04"));
+    }
+
+    @Test
+    public void parseWithWrongSeparator() {
+        assertThrows(IllegalArgumentException.class,
+                () -> TimestampParser.parse("2023/01/02 03:04:05"));
+    }
+
+    @Test
+    public void parseWithNonDigit() {
+        assertThrows(IllegalArgumentException.class,
+                () -> TimestampParser.parse("2023-01-0x 03:04:05"));
+    }
+
+    @Test
+    public void parseWithIllegalMonth() {
+        assertThrows(IllegalArgumentException.class,
+                () -> TimestampParser.parse("2023-13-02 03:04:05"));
+    }
+}
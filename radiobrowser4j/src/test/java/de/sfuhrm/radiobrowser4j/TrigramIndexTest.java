@@ -0,0 +1,116 @@
+/*
+* Copyright 2017 Stephan Fuhrmann
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+*     http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+package de.sfuhrm.radiobrowser4j;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Test for the TrigramIndex class.
+ * @author Stephan Fuhrmann
+ */
+public class TrigramIndexTest {
+
+    private TrigramIndex index;
+
+    private static Station station(final int id, final String name) {
+        Station station = new Station();
+        station.setStationUUID(new UUID(0, id));
+        station.setName(name);
+        return station;
+    }
+
+    @BeforeEach
+    public void create() {
+        List<Station> stations = new ArrayList<>();
+        String[] names = {"Jazz Radio", "Smooth Jazz Berlin", "Radio Bremen Eins",
+                "Rock Antenne", "Deutschlandfunk", "Radio Münster", "BBC Radio 1"};
+        for (int i = 0; i < names.length; i++) {
+            stations.add(station(i, names[i]));
+        }
+        stations.add(station(99, null));
+        index = TrigramIndex.of(stations);
+    }
+
+    private List<String> search(final String query, final int limit) {
+        return index.search(query, limit).stream()
+                .map(Station::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void trigramsArePaddedPerWord() {
+        assertThat(TrigramIndex.trigrams("ab cd").length, is(6));
+        assertThat(TrigramIndex.trigrams("  --  ").length, is(0));
+        assertThat(TrigramIndex.trigrams("Jazz").length, is(5));
+    }
+
+    @Test
+    public void similarity() {
+        assertThat(TrigramIndex.similarity("Jazz", "jazz"), is(1.0));
+        assertThat(TrigramIndex.similarity("jazz", "rock"), is(0.0));
+        assertThat(TrigramIndex.similarity("jaz", "jazz"), is(0.5));
+    }
+
+    @Test
+    public void exactNameRanksFirst() {
+        assertThat(search("jazz radio", 3),
+                is(Arrays.asList("Jazz Radio", "BBC Radio 1", "Radio Münster")));
+    }
+
+    @Test
+    public void toleratesTypos() {
+        assertThat(search("deutschlndfunk", 1),
+                is(Arrays.asList("Deutschlandfunk")));
+        assertThat(search("rock antene", 1),
+                is(Arrays.asList("Rock Antenne")));
+    }
+
+    @Test
+    public void ignoresAccentsAndCase() {
+        assertThat(search("MUNSTER", 1), is(Arrays.asList("Radio Münster")));
+    }
+
+    @Test
+    public void limitsResults() {
+        // "Rock Antenne" shares the word start trigram of "radio"
+        assertThat(search("radio", 10).size(), is(5));
+        assertThat(search("radio", 2).size(), is(2));
+        assertThat(index.search("radio", 10, 0.9).isEmpty(), is(true));
+        assertThat(search("xyzzy", 10).isEmpty(), is(true));
+        assertThrows(IllegalArgumentException.class, () -> index.search("radio", 0));
+    }
+
+    @Test
+    public void keepsBestMatchesInNameOrder() {
+        assertThat(search("radio", 2),
+                is(Arrays.asList("Jazz Radio", "BBC Radio 1")));
+        index = TrigramIndex.of(Arrays.asList(station(0, "Radio C"),
+                station(1, "Radio B"), station(2, "Radio A"),
+                station(3, "Radio Bremen Eins")));
+        assertThat(search("radio", 2),
+                is(Arrays.asList("Radio A", "Radio B")));
+    }
+}